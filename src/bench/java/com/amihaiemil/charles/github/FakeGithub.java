@@ -0,0 +1,554 @@
+/*
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of mention-notifications-ejb nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.github;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang3.time.FastDateFormat;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Local stand-in for Github's /notifications endpoint, used by the
+ * {@link LoadTest}. Every account (token) has its own inbox of unread
+ * mentions, which is paginated, answers 304 to a matching If-None-Match,
+ * is emptied by PUT with last_read_at (exactly like Github does it, by
+ * time) or thread by thread with PATCH and has its own rate limit. Latency and 5xx errors can be added.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 2.1.0
+ */
+public final class FakeGithub implements HttpHandler {
+
+    /**
+     * Format of Github's timestamps.
+     */
+    private static final FastDateFormat TIME = FastDateFormat.getInstance(
+        "yyyy-MM-dd'T'HH:mm:ss'Z'", TimeZone.getTimeZone("UTC")
+    );
+
+    /**
+     * Inboxes, by token.
+     */
+    private final Map<String, Inbox> inboxes = new ConcurrentHashMap<>();
+
+    /**
+     * Ids of the notification threads.
+     */
+    private final AtomicInteger threads = new AtomicInteger();
+
+    /**
+     * Notifications on each page.
+     */
+    private final int page;
+
+    /**
+     * Milliseconds to wait before answering.
+     */
+    private final int latency;
+
+    /**
+     * Probability of answering with 502.
+     */
+    private final double errors;
+
+    /**
+     * Requests allowed in each rate limit window.
+     */
+    private final int limit;
+
+    /**
+     * Length of the rate limit window, in seconds.
+     */
+    private final int window;
+
+    /**
+     * Requests received.
+     */
+    private final AtomicLong requests = new AtomicLong();
+
+    /**
+     * Requests answered with 304.
+     */
+    private final AtomicLong unmodified = new AtomicLong();
+
+    /**
+     * Requests answered with 502.
+     */
+    private final AtomicLong failed = new AtomicLong();
+
+    /**
+     * Requests refused because the rate limit was exceeded.
+     */
+    private final AtomicLong limited = new AtomicLong();
+
+    /**
+     * Server.
+     */
+    private HttpServer server;
+
+    /**
+     * Threads of the server.
+     */
+    private ExecutorService executor;
+
+    /**
+     * Ctor.
+     * @param page Notifications on each page.
+     * @param latency Milliseconds to wait before answering.
+     * @param errors Probability (0..1) of answering with 502.
+     * @param limit Requests allowed, per token, in each rate limit window.
+     * @param window Length of the rate limit window, in seconds.
+     */
+    public FakeGithub(
+        final int page, final int latency, final double errors,
+        final int limit, final int window
+    ) {
+        this.page = page;
+        this.latency = latency;
+        this.errors = errors;
+        this.limit = limit;
+        this.window = window;
+    }
+
+    /**
+     * Start listening on a random port.
+     * @return Url of the notifications endpoint.
+     * @throws IOException If the server cannot start.
+     */
+    public String start() throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 1024);
+        this.executor = Executors.newCachedThreadPool();
+        this.server.setExecutor(this.executor);
+        this.server.createContext("/notifications", this);
+        this.server.start();
+        return "http://localhost:" + this.server.getAddress().getPort()
+            + "/notifications";
+    }
+
+    /**
+     * Stop the server.
+     */
+    public void stop() {
+        this.server.stop(0);
+        this.executor.shutdownNow();
+    }
+
+    /**
+     * Open an inbox for the given token.
+     * @param token Github token.
+     * @param repo Repository where the account is mentioned.
+     */
+    public void open(final String token, final String repo) {
+        this.inboxes.put("token " + token, new Inbox(repo));
+    }
+
+    /**
+     * Mention the account with the given token in a new comment.
+     * @param token Github token.
+     */
+    public void mention(final String token) {
+        this.inboxes.get("token " + token).add(this.threads.incrementAndGet());
+    }
+
+    /**
+     * All the mentions made so far, as repoFullName#issueNumber.
+     * @return Mentions.
+     */
+    public Set<String> mentions() {
+        final Set<String> all = new HashSet<>();
+        for(final Inbox inbox : this.inboxes.values()) {
+            all.addAll(inbox.mentions());
+        }
+        return all;
+    }
+
+    /**
+     * Mentions which are still unread, as repoFullName#issueNumber.
+     * @return Unread mentions.
+     */
+    public Set<String> unread() {
+        final Set<String> all = new HashSet<>();
+        for(final Inbox inbox : this.inboxes.values()) {
+            all.addAll(inbox.unread());
+        }
+        return all;
+    }
+
+    /**
+     * Requests received.
+     * @return Number of requests.
+     */
+    public long requests() {
+        return this.requests.get();
+    }
+
+    /**
+     * Requests answered with 304 Not Modified.
+     * @return Number of requests.
+     */
+    public long unmodified() {
+        return this.unmodified.get();
+    }
+
+    /**
+     * Requests answered with 502.
+     * @return Number of requests.
+     */
+    public long failed() {
+        return this.failed.get();
+    }
+
+    /**
+     * Requests refused because the rate limit was exceeded.
+     * @return Number of requests.
+     */
+    public long limited() {
+        return this.limited.get();
+    }
+
+    @Override
+    public void handle(final HttpExchange exchange) throws IOException {
+        try (InputStream body = exchange.getRequestBody()) {
+            while(body.read() != -1) {
+                continue;
+            }
+            this.requests.incrementAndGet();
+            if(this.latency > 0) {
+                Thread.sleep(this.latency);
+            }
+            final Inbox inbox = this.inboxes.get(
+                exchange.getRequestHeaders().getFirst("Authorization")
+            );
+            if(inbox == null) {
+                FakeGithub.answer(exchange, 401, "");
+            } else if(!inbox.allowed(exchange)) {
+                this.limited.incrementAndGet();
+                FakeGithub.answer(exchange, 403, "{\"message\":\"API rate limit exceeded\"}");
+            } else if(ThreadLocalRandom.current().nextDouble() < this.errors) {
+                this.failed.incrementAndGet();
+                FakeGithub.answer(exchange, 502, "");
+            } else if("PATCH".equals(exchange.getRequestMethod())) {
+                final String path = exchange.getRequestURI().getPath();
+                inbox.read(Integer.parseInt(path.substring(path.lastIndexOf('/') + 1)));
+                FakeGithub.answer(exchange, 205, "");
+            } else if("PUT".equals(exchange.getRequestMethod())) {
+                inbox.read(FakeGithub.query(exchange).get("last_read_at"));
+                FakeGithub.answer(exchange, 205, "");
+            } else {
+                inbox.list(exchange);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Send an answer.
+     * @param exchange Exchange.
+     * @param status Status.
+     * @param body Body.
+     * @throws IOException If something goes wrong.
+     */
+    private static void answer(
+        final HttpExchange exchange, final int status, final String body
+    ) throws IOException {
+        final byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        if(bytes.length == 0) {
+            exchange.sendResponseHeaders(status, -1);
+        } else {
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+    }
+
+    /**
+     * Parameters of the request's query.
+     * @param exchange Exchange.
+     * @return Parameters.
+     * @throws IOException If they cannot be decoded.
+     */
+    private static Map<String, String> query(final HttpExchange exchange)
+        throws IOException {
+        final Map<String, String> params = new HashMap<>();
+        final String query = exchange.getRequestURI().getRawQuery();
+        if(query != null) {
+            for(final String param : query.split("&")) {
+                final int equals = param.indexOf('=');
+                if(equals > 0) {
+                    params.put(
+                        param.substring(0, equals),
+                        URLDecoder.decode(param.substring(equals + 1), "UTF-8")
+                    );
+                }
+            }
+        }
+        return params;
+    }
+
+    /**
+     * Notifications of one account.
+     */
+    private final class Inbox {
+
+        /**
+         * Repository where the account is mentioned.
+         */
+        private final String repo;
+
+        /**
+         * Unread mentions: thread id to updated_at (seconds).
+         */
+        private final Map<Integer, Long> unread = new HashMap<>();
+
+        /**
+         * Ids of all the mentions.
+         */
+        private final List<Integer> all = new ArrayList<>();
+
+        /**
+         * Changes of the inbox, used as ETag.
+         */
+        private long version;
+
+        /**
+         * Requests left in the current rate limit window.
+         */
+        private int remaining;
+
+        /**
+         * End of the current rate limit window (seconds).
+         */
+        private long reset;
+
+        /**
+         * Ctor.
+         * @param repo Repository where the account is mentioned.
+         */
+        Inbox(final String repo) {
+            this.repo = repo;
+        }
+
+        /**
+         * Add a new mention.
+         * @param thread Id of its thread.
+         */
+        synchronized void add(final int thread) {
+            this.unread.put(thread, System.currentTimeMillis() / 1000);
+            this.all.add(thread);
+            this.version++;
+        }
+
+        /**
+         * All the mentions.
+         * @return Mentions, as repoFullName#issueNumber.
+         */
+        synchronized Set<String> mentions() {
+            final Set<String> mentions = new HashSet<>();
+            for(final Integer thread : this.all) {
+                mentions.add(this.repo + "#" + thread);
+            }
+            return mentions;
+        }
+
+        /**
+         * Unread mentions.
+         * @return Mentions, as repoFullName#issueNumber.
+         */
+        synchronized Set<String> unread() {
+            final Set<String> mentions = new HashSet<>();
+            for(final Integer thread : this.unread.keySet()) {
+                mentions.add(this.repo + "#" + thread);
+            }
+            return mentions;
+        }
+
+        /**
+         * Count the request against the rate limit and add the
+         * X-RateLimit headers.
+         * @param exchange Exchange.
+         * @return False if the limit is exceeded.
+         */
+        synchronized boolean allowed(final HttpExchange exchange) {
+            final long now = System.currentTimeMillis() / 1000;
+            if(now >= this.reset) {
+                this.reset = now + FakeGithub.this.window;
+                this.remaining = FakeGithub.this.limit;
+            }
+            final boolean allowed = this.remaining > 0;
+            if(allowed) {
+                this.remaining--;
+            }
+            exchange.getResponseHeaders().set(
+                "X-RateLimit-Limit", String.valueOf(FakeGithub.this.limit)
+            );
+            exchange.getResponseHeaders().set(
+                "X-RateLimit-Remaining", String.valueOf(this.remaining)
+            );
+            exchange.getResponseHeaders().set(
+                "X-RateLimit-Reset", String.valueOf(this.reset)
+            );
+            return allowed;
+        }
+
+        /**
+         * Mark as read everything updated until the given time.
+         * @param time Time, as yyyy-MM-dd'T'HH:mm:ss'Z'.
+         */
+        synchronized void read(final String time) {
+            try {
+                final long until = FakeGithub.TIME.parse(time).getTime() / 1000;
+                final Iterator<Map.Entry<Integer, Long>> entries =
+                    this.unread.entrySet().iterator();
+                while(entries.hasNext()) {
+                    if(entries.next().getValue() <= until) {
+                        entries.remove();
+                        this.version++;
+                    }
+                }
+            } catch (final ParseException ex) {
+                throw new IllegalArgumentException(ex);
+            }
+        }
+
+        /**
+         * Mark one thread as read.
+         * @param thread Id of the thread.
+         */
+        synchronized void read(final int thread) {
+            if(this.unread.remove(thread) != null) {
+                this.version++;
+            }
+        }
+
+        /**
+         * List one page of unread mentions, most recent first.
+         * @param exchange Exchange.
+         * @throws IOException If something goes wrong.
+         */
+        void list(final HttpExchange exchange) throws IOException {
+            final String etag;
+            final List<Map.Entry<Integer, Long>> unread;
+            synchronized (this) {
+                etag = "\"v" + this.version + "\"";
+                unread = new ArrayList<>(this.unread.entrySet());
+            }
+            exchange.getResponseHeaders().set("ETag", etag);
+            if(etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                FakeGithub.this.unmodified.incrementAndGet();
+                FakeGithub.answer(exchange, 304, "");
+                return;
+            }
+            Collections.sort(
+                unread,
+                new Comparator<Map.Entry<Integer, Long>>() {
+                    @Override
+                    public int compare(
+                        final Map.Entry<Integer, Long> left,
+                        final Map.Entry<Integer, Long> right
+                    ) {
+                        return right.getKey().compareTo(left.getKey());
+                    }
+                }
+            );
+            final Map<String, String> query = FakeGithub.query(exchange);
+            int number = 1;
+            if(query.containsKey("page")) {
+                number = Integer.parseInt(query.get("page"));
+            }
+            final int from = Math.min(unread.size(), (number - 1) * FakeGithub.this.page);
+            final int to = Math.min(unread.size(), from + FakeGithub.this.page);
+            if(to < unread.size()) {
+                exchange.getResponseHeaders().set(
+                    "Link",
+                    "<" + exchange.getRequestURI().getPath() + "?per_page="
+                    + FakeGithub.this.page + "&page=" + (number + 1)
+                    + ">; rel=\"next\""
+                );
+            }
+            final StringBuilder json = new StringBuilder("[");
+            for(int idx = from; idx < to; idx++) {
+                if(idx > from) {
+                    json.append(',');
+                }
+                this.json(json, unread.get(idx).getKey(), unread.get(idx).getValue());
+            }
+            FakeGithub.answer(exchange, 200, json.append(']').toString());
+        }
+
+        /**
+         * Append one notification, as Github sends it (the links are
+         * shortened).
+         * @param json Where to append it.
+         * @param thread Id of the thread, also the issue number.
+         * @param updated When it was updated (seconds).
+         */
+        private void json(final StringBuilder json, final int thread, final long updated) {
+            final String issues = "https://api.github.com/repos/" + this.repo + "/issues/";
+            json.append("{\"id\":\"").append(thread)
+                .append("\",\"unread\":true,\"reason\":\"mention\",\"updated_at\":\"")
+                .append(FakeGithub.TIME.format(updated * 1000))
+                .append("\",\"last_read_at\":null,\"subject\":{\"title\":\"Load test\",\"url\":\"")
+                .append(issues).append(thread)
+                .append("\",\"latest_comment_url\":\"").append(issues)
+                .append("comments/").append(thread)
+                .append("\",\"type\":\"Issue\"},\"repository\":{\"id\":1,\"name\":\"")
+                .append(this.repo.substring(this.repo.indexOf('/') + 1))
+                .append("\",\"full_name\":\"").append(this.repo)
+                .append("\",\"private\":false,\"fork\":false},\"url\":")
+                .append("\"https://api.github.com/notifications/threads/")
+                .append(thread).append("\"}");
+        }
+    }
+}
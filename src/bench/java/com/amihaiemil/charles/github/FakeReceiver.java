@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of mention-notifications-ejb nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.github;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Local stand-in for the endpoint receiving the notifications, used by
+ * the {@link LoadTest}. It counts how many times each notification
+ * (repoFullName#issueNumber) was received. Latency and 503 errors can
+ * be added.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 2.1.0
+ */
+public final class FakeReceiver implements HttpHandler {
+
+    /**
+     * Times each notification was received.
+     */
+    private final Map<String, AtomicInteger> received = new ConcurrentHashMap<>();
+
+    /**
+     * Milliseconds to wait before answering.
+     */
+    private final int latency;
+
+    /**
+     * Probability of answering with 503.
+     */
+    private final double errors;
+
+    /**
+     * Requests received.
+     */
+    private final AtomicLong requests = new AtomicLong();
+
+    /**
+     * Server.
+     */
+    private HttpServer server;
+
+    /**
+     * Threads of the server.
+     */
+    private ExecutorService executor;
+
+    /**
+     * Ctor.
+     * @param latency Milliseconds to wait before answering.
+     * @param errors Probability (0..1) of answering with 503.
+     */
+    public FakeReceiver(final int latency, final double errors) {
+        this.latency = latency;
+        this.errors = errors;
+    }
+
+    /**
+     * Start listening on a random port.
+     * @return Url of the endpoint.
+     * @throws IOException If the server cannot start.
+     */
+    public String start() throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 1024);
+        this.executor = Executors.newCachedThreadPool();
+        this.server.setExecutor(this.executor);
+        this.server.createContext("/receiver", this);
+        this.server.start();
+        return "http://localhost:" + this.server.getAddress().getPort()
+            + "/receiver";
+    }
+
+    /**
+     * Stop the server.
+     */
+    public void stop() {
+        this.server.stop(0);
+        this.executor.shutdownNow();
+    }
+
+    /**
+     * How many times each notification was received.
+     * @return Map of repoFullName#issueNumber to times.
+     */
+    public Map<String, Integer> received() {
+        final Map<String, Integer> received = new HashMap<>();
+        for(final Map.Entry<String, AtomicInteger> entry : this.received.entrySet()) {
+            received.put(entry.getKey(), entry.getValue().get());
+        }
+        return received;
+    }
+
+    /**
+     * Requests received.
+     * @return Number of requests.
+     */
+    public long requests() {
+        return this.requests.get();
+    }
+
+    @Override
+    public void handle(final HttpExchange exchange) throws IOException {
+        try (InputStream body = exchange.getRequestBody()) {
+            this.requests.incrementAndGet();
+            if(this.latency > 0) {
+                Thread.sleep(this.latency);
+            }
+            if(ThreadLocalRandom.current().nextDouble() < this.errors) {
+                exchange.sendResponseHeaders(503, -1);
+            } else {
+                final JsonArray parcel;
+                try (JsonReader reader = Json.createReader(body)) {
+                    parcel = reader.readArray();
+                }
+                for(final JsonObject notification : parcel.getValuesAs(JsonObject.class)) {
+                    final String key = notification.getString("repoFullName")
+                        + "#" + notification.getInt("issueNumber");
+                    AtomicInteger times = this.received.get(key);
+                    if(times == null) {
+                        this.received.putIfAbsent(key, new AtomicInteger());
+                        times = this.received.get(key);
+                    }
+                    times.incrementAndGet();
+                }
+                exchange.sendResponseHeaders(200, -1);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } finally {
+            exchange.close();
+        }
+    }
+}
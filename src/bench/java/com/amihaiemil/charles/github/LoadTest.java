@@ -0,0 +1,435 @@
+/*
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of mention-notifications-ejb nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.github;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.LogManager;
+
+/**
+ * End-to-end load test, run offline: hundreds of accounts are checked,
+ * tick after tick, against a {@link FakeGithub} and a {@link FakeReceiver},
+ * while new mentions keep arriving. At the end it reports the throughput,
+ * the percentiles of the ticks' durations and the lost or duplicate
+ * deliveries. It exits with 1 if anything was lost or duplicated.<br>
+ * Run it with
+ * <pre>
+ * mvn -Pbenchmarks test-compile exec:exec
+ *   -Dbench.main=com.amihaiemil.charles.github.LoadTest
+ *   -Dbench.args="--tokens 500 --ticks 30 --errors 0.01"
+ * </pre>
+ * Options (with their defaults): --tokens 200, --ticks 20,
+ * --interval 1000 (ms between ticks), --rate 100 (new mentions per second,
+ * over all the accounts), --drain 20 (max. ticks after the load, to
+ * deliver what is left), --page 100, --latency 20 (ms, Github),
+ * --errors 0 (probability of a 502 from Github), --limit 5000 and
+ * --window 3600 (Github's rate limit), --reserve 0, --receiver-latency 5,
+ * --receiver-errors 0 (probability of a 503 from the receiver),
+ * --threads 32 (or virtual), --transport pooled (or jdk), --pool 50,
+ * --retries 3, --read sweep (or threads, to mark the delivered threads
+ * as read one by one), --log false.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 2.1.0
+ */
+public final class LoadTest {
+
+    /**
+     * Options.
+     */
+    private final Map<String, String> options;
+
+    /**
+     * Ctor.
+     * @param args Command line arguments.
+     */
+    public LoadTest(final String... args) {
+        this.options = new HashMap<>();
+        for(int idx = 0; idx + 1 < args.length; idx += 2) {
+            this.options.put(args[idx].replaceFirst("^--", ""), args[idx + 1]);
+        }
+    }
+
+    /**
+     * Main.
+     * @param args Command line arguments.
+     * @throws Exception If something goes wrong.
+     */
+    public static void main(final String... args) throws Exception {
+        System.exit(new LoadTest(args).run());
+    }
+
+    /**
+     * Run the load test and print the report.
+     * @return 0 if every mention was delivered exactly once, 1 otherwise.
+     * @throws Exception If something goes wrong.
+     */
+    public int run() throws Exception {
+        if(!Boolean.parseBoolean(this.option("log", "false"))) {
+            LogManager.getRootLogger().setLevel(Level.OFF);
+        }
+        final int tokens = Integer.parseInt(this.option("tokens", "200"));
+        final FakeGithub github = new FakeGithub(
+            Integer.parseInt(this.option("page", "100")),
+            Integer.parseInt(this.option("latency", "20")),
+            Double.parseDouble(this.option("errors", "0")),
+            Integer.parseInt(this.option("limit", "5000")),
+            Integer.parseInt(this.option("window", "3600"))
+        );
+        final FakeReceiver receiver = new FakeReceiver(
+            Integer.parseInt(this.option("receiver-latency", "5")),
+            Double.parseDouble(this.option("receiver-errors", "0"))
+        );
+        final String notifications = github.start();
+        final String endpoint = receiver.start();
+        final ExecutorService executor;
+        if("virtual".equalsIgnoreCase(this.option("threads", "32"))) {
+            executor = new VirtualThreads(32).executor();
+        } else {
+            executor = Executors.newFixedThreadPool(
+                Integer.parseInt(this.option("threads", "32"))
+            );
+        }
+        final Transport transport;
+        if("jdk".equalsIgnoreCase(this.option("transport", "pooled"))) {
+            transport = new Transport.Jdk();
+        } else {
+            final int pool = Integer.parseInt(this.option("pool", "50"));
+            transport = new HttpPool(pool, pool);
+        }
+        ExecutorService marker = null;
+        if("threads".equalsIgnoreCase(this.option("read", "sweep"))) {
+            marker = Executors.newFixedThreadPool(8);
+        }
+        try {
+            final String[] names = new String[tokens];
+            final Post[] posts = new Post[tokens];
+            for(int idx = 0; idx < tokens; idx++) {
+                names[idx] = "load-token-" + idx;
+                github.open(names[idx], "loadtest/account" + idx);
+                posts[idx] = this.post(
+                    names[idx], notifications, endpoint + "/" + idx,
+                    transport, marker
+                );
+            }
+            final ParallelCheck check = new ParallelCheck(executor, 60000L);
+            final long interval = Long.parseLong(this.option("interval", "1000"));
+            final double rate = Double.parseDouble(this.option("rate", "100"));
+            final Publisher publisher = new Publisher(github, names, rate);
+            final List<Long> ticks = new ArrayList<>();
+            final long start = System.nanoTime();
+            final Thread mentions = new Thread(publisher, "mentions");
+            mentions.start();
+            for(int tick = Integer.parseInt(this.option("ticks", "20")); tick > 0; tick--) {
+                ticks.add(LoadTest.tick(check, posts, interval));
+            }
+            mentions.interrupt();
+            mentions.join();
+            final long load = System.nanoTime() - start;
+            final Set<String> published = github.mentions();
+            int drained = 0;
+            for(int tick = Integer.parseInt(this.option("drain", "20")); tick > 0; tick--) {
+                if(LoadTest.pending(published, receiver.received(), github.unread()) == 0) {
+                    break;
+                }
+                LoadTest.tick(check, posts, interval);
+                drained++;
+            }
+            final long total = System.nanoTime() - start;
+            return this.report(github, receiver, published, ticks, load, total, drained);
+        } finally {
+            executor.shutdownNow();
+            if(marker != null) {
+                marker.shutdownNow();
+            }
+            if(transport instanceof HttpPool) {
+                ((HttpPool) transport).close();
+            }
+            github.stop();
+            receiver.stop();
+        }
+    }
+
+    /**
+     * Build the Post of an account, the same way {@link FromSystem} does,
+     * but against the fakes.
+     * @param token Token of the account.
+     * @param github Url of the fake notifications endpoint.
+     * @param endpoint Url of the fake receiver.
+     * @param transport Transport.
+     * @param marker Executor marking single threads as read, or null.
+     * @return Post.
+     */
+    private Post post(
+        final String token, final String github, final String endpoint,
+        final Transport transport, final ExecutorService marker
+    ) {
+        final Backoff backoff = new Backoff(
+            Integer.parseInt(this.option("retries", "3")), 50L, 1000L
+        );
+        final RateLimit budget = new RateLimit(
+            Integer.parseInt(this.option("reserve", "0"))
+        );
+        final Transport timed = new Transport.Timed(transport, 10000, 30000);
+        return new NtPost(
+            new BudgetedNotifications(
+                new SmartNotifications(
+                    new RtNotifications(
+                        new Mention(), backoff, timed, budget,
+                        new AccountMetrics(), marker, 100,
+                        "token " + token, github
+                    )
+                ),
+                budget
+            ),
+            new RecentDeliveries(10000), Integer.MAX_VALUE, Integer.MAX_VALUE,
+            backoff, timed, token, endpoint
+        );
+    }
+
+    /**
+     * Run one tick and wait for the rest of the interval.
+     * @param check Parallel check.
+     * @param posts Posts to check.
+     * @param interval Milliseconds between ticks.
+     * @return Duration of the tick, in nanoseconds.
+     * @throws InterruptedException If interrupted.
+     */
+    private static long tick(
+        final ParallelCheck check, final Post[] posts, final long interval
+    ) throws InterruptedException {
+        final long start = System.nanoTime();
+        check.check(posts);
+        final long duration = System.nanoTime() - start;
+        final long left = interval - TimeUnit.NANOSECONDS.toMillis(duration);
+        if(left > 0) {
+            Thread.sleep(left);
+        }
+        return duration;
+    }
+
+    /**
+     * Print the report.
+     * @param github Fake Github.
+     * @param receiver Fake receiver.
+     * @param published Mentions made.
+     * @param ticks Durations of the ticks under load, in nanoseconds.
+     * @param load Duration of the load, in nanoseconds.
+     * @param total Duration of the load and the drain, in nanoseconds.
+     * @param drained Ticks needed to drain.
+     * @return 0 if every mention was delivered exactly once, 1 otherwise.
+     */
+    private int report(
+        final FakeGithub github, final FakeReceiver receiver,
+        final Set<String> published, final List<Long> ticks,
+        final long load, final long total, final int drained
+    ) {
+        final Map<String, Integer> received = receiver.received();
+        int delivered = 0;
+        int duplicates = 0;
+        for(final Map.Entry<String, Integer> entry : received.entrySet()) {
+            if(published.contains(entry.getKey())) {
+                delivered++;
+            }
+            duplicates += entry.getValue() - 1;
+        }
+        final int pending = LoadTest.pending(published, received, github.unread());
+        int dropped = 0;
+        for(final String mention : published) {
+            if(!received.containsKey(mention)) {
+                dropped++;
+            }
+        }
+        dropped -= pending;
+        Collections.sort(ticks);
+        final double seconds = total / 1e9;
+        System.out.println("Accounts:               " + this.option("tokens", "200"));
+        System.out.println(
+            String.format(
+                Locale.ENGLISH,
+                "Ticks:                  %d under load (%.1fs), %d to drain",
+                ticks.size(), load / 1e9, drained
+            )
+        );
+        System.out.println(
+            String.format(
+                Locale.ENGLISH,
+                "Tick duration (ms):     p50 %.1f, p90 %.1f, p99 %.1f, max %.1f",
+                LoadTest.percentile(ticks, 0.5), LoadTest.percentile(ticks, 0.9),
+                LoadTest.percentile(ticks, 0.99), LoadTest.percentile(ticks, 1)
+            )
+        );
+        System.out.println(
+            String.format(
+                Locale.ENGLISH,
+                "Github requests:        %d (%.1f/s), %d not modified, %d failed, %d rate limited",
+                github.requests(), github.requests() / seconds,
+                github.unmodified(), github.failed(), github.limited()
+            )
+        );
+        System.out.println(
+            String.format(
+                Locale.ENGLISH,
+                "Receiver requests:      %d (%.1f/s)",
+                receiver.requests(), receiver.requests() / seconds
+            )
+        );
+        System.out.println(
+            String.format(
+                Locale.ENGLISH,
+                "Mentions:               %d made, %d delivered (%.1f/s)",
+                published.size(), delivered, delivered / seconds
+            )
+        );
+        System.out.println(
+            "Lost:                   " + (pending + dropped) + " (" + pending
+            + " still unread, " + dropped + " marked as read but never delivered)"
+        );
+        System.out.println("Duplicates:             " + duplicates);
+        int result = 0;
+        if(pending + dropped > 0 || duplicates > 0) {
+            result = 1;
+        }
+        return result;
+    }
+
+    /**
+     * Mentions which were not delivered yet, but are still unread, so
+     * they can be delivered by the next ticks.
+     * @param published Mentions made.
+     * @param received Mentions received.
+     * @param unread Mentions still unread.
+     * @return Number of mentions.
+     */
+    private static int pending(
+        final Set<String> published, final Map<String, Integer> received,
+        final Set<String> unread
+    ) {
+        int pending = 0;
+        for(final String mention : published) {
+            if(!received.containsKey(mention) && unread.contains(mention)) {
+                pending++;
+            }
+        }
+        return pending;
+    }
+
+    /**
+     * Percentile of the sorted durations.
+     * @param sorted Sorted durations, in nanoseconds.
+     * @param rank Rank, between 0 and 1.
+     * @return Percentile, in milliseconds.
+     */
+    private static double percentile(final List<Long> sorted, final double rank) {
+        double percentile = 0;
+        if(!sorted.isEmpty()) {
+            final int idx = (int) Math.ceil(rank * sorted.size()) - 1;
+            percentile = sorted.get(Math.max(0, idx)) / 1e6;
+        }
+        return percentile;
+    }
+
+    /**
+     * Value of an option.
+     * @param name Name.
+     * @param def Default value.
+     * @return Value.
+     */
+    private String option(final String name, final String def) {
+        String value = this.options.get(name);
+        if(value == null) {
+            value = def;
+        }
+        return value;
+    }
+
+    /**
+     * Makes new mentions, at a steady rate, for random accounts.
+     */
+    private static final class Publisher implements Runnable {
+
+        /**
+         * Fake Github.
+         */
+        private final FakeGithub github;
+
+        /**
+         * Tokens of the accounts.
+         */
+        private final String[] tokens;
+
+        /**
+         * Mentions per second.
+         */
+        private final double rate;
+
+        /**
+         * Ctor.
+         * @param github Fake Github.
+         * @param tokens Tokens of the accounts.
+         * @param rate Mentions per second.
+         */
+        Publisher(final FakeGithub github, final String[] tokens, final double rate) {
+            this.github = github;
+            this.tokens = tokens;
+            this.rate = rate;
+        }
+
+        @Override
+        public void run() {
+            final long start = System.nanoTime();
+            long made = 0;
+            try {
+                while(!Thread.currentThread().isInterrupted()) {
+                    final long due = (long) (
+                        this.rate * (System.nanoTime() - start) / 1e9
+                    );
+                    for(; made < due; made++) {
+                        this.github.mention(
+                            this.tokens[
+                                ThreadLocalRandom.current().nextInt(this.tokens.length)
+                            ]
+                        );
+                    }
+                    Thread.sleep(10);
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of mention-notifications-ejb nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.github;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of one tick of {@link ParallelCheck} over accounts whose
+ * Posts block on I/O, with a fixed pool of platform threads (as
+ * checks.parallel=true) versus a virtual thread per Post (as
+ * checks.parallel=virtual). On runtimes without virtual threads, both
+ * use the fixed pool.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 2.1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParallelCheckBenchmark {
+
+    /**
+     * Threads running the Posts: fixed or virtual.
+     */
+    @Param({"fixed", "virtual"})
+    public String threads;
+
+    /**
+     * Number of accounts.
+     */
+    @Param({"50", "500"})
+    public int accounts;
+
+    /**
+     * Milliseconds each Post spends waiting on Github and the endpoint.
+     */
+    @Param({"20"})
+    public int latency;
+
+    /**
+     * Size of the fixed pool (checks.parallel.threads).
+     */
+    @Param({"32"})
+    public int pool;
+
+    /**
+     * Executor running the Posts.
+     */
+    private ExecutorService executor;
+
+    /**
+     * The check.
+     */
+    private ParallelCheck check;
+
+    /**
+     * The Posts.
+     */
+    private Post[] posts;
+
+    /**
+     * Build the executor and the Posts.
+     */
+    @Setup
+    public void setup() {
+        if("virtual".equals(this.threads)) {
+            this.executor = new VirtualThreads(this.pool).executor();
+        } else {
+            this.executor = Executors.newFixedThreadPool(this.pool);
+        }
+        this.check = new ParallelCheck(this.executor, 60000L);
+        this.posts = new Post[this.accounts];
+        for(int idx = 0; idx < this.accounts; idx++) {
+            this.posts[idx] = new Post() {
+                @Override
+                public void send() throws IOException {
+                    try {
+                        Thread.sleep(ParallelCheckBenchmark.this.latency);
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            };
+        }
+    }
+
+    /**
+     * Shut the executor down.
+     */
+    @TearDown
+    public void tearDown() {
+        this.executor.shutdownNow();
+    }
+
+    /**
+     * One tick: every account is checked, the tick ends when all are done.
+     */
+    @Benchmark
+    public void tick() {
+        this.check.check(this.posts);
+    }
+}
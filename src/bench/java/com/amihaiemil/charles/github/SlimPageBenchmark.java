@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of mention-notifications-ejb nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.github;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of parsing the pages of notifications received by
+ * {@link RtNotifications}. The pages are built from the recorded
+ * Github payload in notifications.json (test resources), repeated
+ * until the page has the wanted size.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 2.1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SlimPageBenchmark {
+
+    /**
+     * Notifications in the page; 100 is a full page (per_page=100).
+     */
+    @Param({"10", "100"})
+    public int size;
+
+    /**
+     * The page, as received from Github.
+     */
+    private byte[] page;
+
+    /**
+     * Build the page out of the recorded notifications.
+     * @throws IOException If the recorded payload cannot be read.
+     */
+    @Setup
+    public void setup() throws IOException {
+        final String recorded = SlimPageBenchmark.read("/notifications.json");
+        final String[] objects = recorded.trim()
+            .substring(1, recorded.trim().length() - 1).trim()
+            .split("\n  \\},\n");
+        final StringBuilder json = new StringBuilder("[");
+        for(int idx = 0; idx < this.size; idx++) {
+            if(idx > 0) {
+                json.append(",\n");
+            }
+            String object = objects[idx % objects.length].trim();
+            if(!object.endsWith("}")) {
+                object = object + "\n  }";
+            }
+            json.append(object);
+        }
+        this.page = json.append(']').toString()
+            .getBytes(StandardCharsets.UTF_8);
+        final int parsed = new SlimPage(
+            new ByteArrayInputStream(this.page)
+        ).notifications().size();
+        if(parsed != this.size) {
+            throw new IllegalStateException(
+                "Expected " + this.size + " notifications, parsed " + parsed
+            );
+        }
+    }
+
+    /**
+     * Parse the page.
+     * @return Notifications.
+     */
+    @Benchmark
+    public List<Notification> parse() {
+        return new SlimPage(new ByteArrayInputStream(this.page))
+            .notifications();
+    }
+
+    /**
+     * Parse the page and filter the mentions, as RtNotifications does
+     * for every page it fetches.
+     * @return Mentions.
+     */
+    @Benchmark
+    public List<Notification> parseAndFilter() {
+        return new Mention().filter(this.parse());
+    }
+
+    /**
+     * Read a resource.
+     * @param name Name of the resource.
+     * @return Its content.
+     * @throws IOException If it cannot be read.
+     */
+    private static String read(final String name) throws IOException {
+        try (InputStream in = SlimPageBenchmark.class.getResourceAsStream(name)) {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[4096];
+            int read = in.read(buffer);
+            while(read != -1) {
+                out.write(buffer, 0, read);
+                read = in.read(buffer);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+}
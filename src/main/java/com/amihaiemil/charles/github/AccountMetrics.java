@@ -0,0 +1,220 @@
+/*
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of mention-notifications-ejb nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.github;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Metrics of an account: latency of each step of the pipeline, counters
+ * of the notifications going through it and the state of the polling.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 2.1.0
+ */
+public final class AccountMetrics implements AccountMetricsMXBean {
+
+    /**
+     * Fetch latency.
+     */
+    private final Latency fetch = new Latency();
+
+    /**
+     * Filter latency.
+     */
+    private final Latency filter = new Latency();
+
+    /**
+     * Pack latency.
+     */
+    private final Latency pack = new Latency();
+
+    /**
+     * Post latency.
+     */
+    private final Latency post = new Latency();
+
+    /**
+     * Mark as read latency.
+     */
+    private final Latency read = new Latency();
+
+    /**
+     * Fetched notifications.
+     */
+    private final AtomicLong fetched = new AtomicLong();
+
+    /**
+     * Filtered notifications.
+     */
+    private final AtomicLong filtered = new AtomicLong();
+
+    /**
+     * Sent notifications.
+     */
+    private final AtomicLong sent = new AtomicLong();
+
+    /**
+     * Failed posts.
+     */
+    private final AtomicLong failed = new AtomicLong();
+
+    /**
+     * Failed requests to Github.
+     */
+    private final AtomicLong errors = new AtomicLong();
+
+    /**
+     * Time of the last delivery (millis), -1 if none.
+     */
+    private final AtomicLong delivered = new AtomicLong(-1);
+
+    /**
+     * Polling strategy of the account, if it skips checks.
+     */
+    private volatile Polling polling;
+
+    /**
+     * Watch the state of the account's polling strategy.
+     * @param strategy Polling strategy.
+     */
+    public void watch(final Polling strategy) {
+        this.polling = strategy;
+    }
+
+    /**
+     * Count fetched notifications.
+     * @param count Number of notifications.
+     */
+    public void fetched(final int count) {
+        this.fetched.addAndGet(count);
+    }
+
+    /**
+     * Count notifications which passed the filter.
+     * @param count Number of notifications.
+     */
+    public void filtered(final int count) {
+        this.filtered.addAndGet(count);
+    }
+
+    /**
+     * Count delivered notifications.
+     * @param count Number of notifications.
+     */
+    public void sent(final int count) {
+        this.sent.addAndGet(count);
+        this.delivered.set(System.currentTimeMillis());
+    }
+
+    /**
+     * Count a failed post.
+     */
+    public void failed() {
+        this.failed.incrementAndGet();
+    }
+
+    /**
+     * Count a failed request to Github.
+     */
+    public void error() {
+        this.errors.incrementAndGet();
+    }
+
+    @Override
+    public Latency getFetch() {
+        return this.fetch;
+    }
+
+    @Override
+    public Latency getFilter() {
+        return this.filter;
+    }
+
+    @Override
+    public Latency getPack() {
+        return this.pack;
+    }
+
+    @Override
+    public Latency getPost() {
+        return this.post;
+    }
+
+    @Override
+    public Latency getMarkAsRead() {
+        return this.read;
+    }
+
+    @Override
+    public long getFetched() {
+        return this.fetched.get();
+    }
+
+    @Override
+    public long getFiltered() {
+        return this.filtered.get();
+    }
+
+    @Override
+    public long getSent() {
+        return this.sent.get();
+    }
+
+    @Override
+    public long getFailed() {
+        return this.failed.get();
+    }
+
+    @Override
+    public long getErrors() {
+        return this.errors.get();
+    }
+
+    @Override
+    public long getMillisSinceLastDelivery() {
+        final long last = this.delivered.get();
+        long since = -1;
+        if(last >= 0) {
+            since = System.currentTimeMillis() - last;
+        }
+        return since;
+    }
+
+    @Override
+    public int getEmptyChecks() {
+        final Polling strategy = this.polling;
+        int empty = 0;
+        if(strategy != null) {
+            empty = strategy.empty();
+        }
+        return empty;
+    }
+
+    @Override
+    public boolean isSkippingChecks() {
+        final Polling strategy = this.polling;
+        return strategy != null && strategy.skipping();
+    }
+}
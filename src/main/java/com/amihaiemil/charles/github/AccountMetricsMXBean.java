@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of mention-notifications-ejb nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.github;
+
+/**
+ * Metrics of an account, as seen through JMX.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 2.1.0
+ */
+public interface AccountMetricsMXBean {
+
+    /**
+     * Latency of fetching the notifications from Github (all pages).
+     * @return Latency.
+     */
+    Latency getFetch();
+
+    /**
+     * Latency of filtering the notifications.
+     * @return Latency.
+     */
+    Latency getFilter();
+
+    /**
+     * Latency of packing the notifications of a check, all the chunks.
+     * @return Latency.
+     */
+    Latency getPack();
+
+    /**
+     * Latency of posting the notifications to the endpoint.
+     * @return Latency.
+     */
+    Latency getPost();
+
+    /**
+     * Latency of marking the notifications as read.
+     * @return Latency.
+     */
+    Latency getMarkAsRead();
+
+    /**
+     * Notifications fetched from Github.
+     * @return Count.
+     */
+    long getFetched();
+
+    /**
+     * Notifications which passed the filter.
+     * @return Count.
+     */
+    long getFiltered();
+
+    /**
+     * Notifications sent to the endpoint.
+     * @return Count.
+     */
+    long getSent();
+
+    /**
+     * Failed posts to the endpoint.
+     * @return Count.
+     */
+    long getFailed();
+
+    /**
+     * Failed requests to Github.
+     * @return Count.
+     */
+    long getErrors();
+
+    /**
+     * Milliseconds since the last successful delivery.
+     * @return Millis, -1 if nothing was delivered yet.
+     */
+    long getMillisSinceLastDelivery();
+
+    /**
+     * Consecutive checks which found nothing.
+     * @return Count.
+     */
+    int getEmptyChecks();
+
+    /**
+     * Is the next check going to be skipped by the polling strategy?
+     * @return True or false.
+     */
+    boolean isSkippingChecks();
+}
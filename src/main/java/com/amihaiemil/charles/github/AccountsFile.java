@@ -0,0 +1,259 @@
+/*
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of mention-notifications-ejb nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.github;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Posts of the accounts listed in a file, which can be edited while
+ * the checks are running. Each line of the file holds a Github token and
+ * the endpoint where its notifications are sent, separated by whitespace,
+ * optionally followed by the account's Schedule (an interval or a cron
+ * expression, used with per-account timers); empty lines and lines
+ * starting with # are ignored.
+ * <br><br>
+ * The file's directory is watched (WatchService) and, when the file
+ * changes, it is read again at the next call of posts(): new accounts get
+ * new Posts, removed ones are dropped and those whose endpoint changed
+ * get a new Post (if only the schedule changed, the account keeps its
+ * Post, under the new Schedule). The Posts of the unchanged accounts are kept, together
+ * with their state (counters, since cursor, deliveries etc), and a check
+ * which is still running keeps the Posts it started with. If the file
+ * cannot be read or has a malformed line, the previous accounts are kept.
+ * A token may appear on one line only: the account's polled
+ * notifications, cursor and webhook are kept by token, so the same
+ * token cannot be sent to two endpoints.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 2.1.0
+ */
+public final class AccountsFile implements Posts, Accounts {
+
+    /**
+     * Logger.
+     */
+    private static final Logger log = LoggerFactory.getLogger(AccountsFile.class.getName());
+
+    /**
+     * The file.
+     */
+    private final Path file;
+
+    /**
+     * Where the Posts come from.
+     */
+    private final FromSystem system;
+
+    /**
+     * Watcher of the file's directory.
+     */
+    private final WatchService watcher;
+
+    /**
+     * Posts, by token and endpoint.
+     */
+    private Map<String, Post> posts = new LinkedHashMap<>();
+
+    /**
+     * Posts as they are checked (with their Schedules, if any), by token
+     * and endpoint.
+     */
+    private Map<String, Post> scheduled = new LinkedHashMap<>();
+
+    /**
+     * Schedules, by token and endpoint; empty if the account has none.
+     */
+    private Map<String, String> schedules = new LinkedHashMap<>();
+
+    /**
+     * Ctor.
+     * @param file The file.
+     * @param system Where the Posts come from.
+     * @throws IOException If the file cannot be read or watched.
+     */
+    public AccountsFile(final Path file, final FromSystem system)
+        throws IOException {
+        this.file = file.toAbsolutePath();
+        this.system = system;
+        this.watcher = this.file.getFileSystem().newWatchService();
+        this.file.getParent().register(
+            this.watcher,
+            StandardWatchEventKinds.ENTRY_CREATE,
+            StandardWatchEventKinds.ENTRY_MODIFY,
+            StandardWatchEventKinds.ENTRY_DELETE
+        );
+        this.reload();
+    }
+
+    @Override
+    public synchronized Post[] posts() {
+        this.refresh();
+        return this.scheduled.values().toArray(new Post[this.scheduled.size()]);
+    }
+
+    @Override
+    public synchronized Map<String, String[]> accounts() {
+        this.refresh();
+        final Map<String, String[]> accounts = new LinkedHashMap<>();
+        for(final String account : this.posts.keySet()) {
+            final String[] parts = account.split(" ", 2);
+            accounts.put(FromSystem.key(parts[0]), parts);
+        }
+        return accounts;
+    }
+
+    /**
+     * Stop watching the file.
+     * @throws IOException If something goes wrong.
+     */
+    public void close() throws IOException {
+        this.watcher.close();
+    }
+
+    /**
+     * Read the file again, if it changed since the last time.
+     */
+    private void refresh() {
+        if(this.changed()) {
+            try {
+                this.reload();
+            } catch (IOException | IllegalArgumentException ex) {
+                log.error(
+                    "Could not read the accounts from " + this.file
+                    + ", keeping the " + this.posts.size() + " accounts I had.",
+                    ex
+                );
+            }
+        }
+    }
+
+    /**
+     * Did the file change since the last call? Doesn't block.
+     * @return True if it changed.
+     */
+    private boolean changed() {
+        boolean changed = false;
+        try {
+            WatchKey key = this.watcher.poll();
+            while(key != null) {
+                for(final WatchEvent<?> event : key.pollEvents()) {
+                    changed = changed
+                        || event.kind() == StandardWatchEventKinds.OVERFLOW
+                        || this.file.getFileName().equals(event.context());
+                }
+                key.reset();
+                key = this.watcher.poll();
+            }
+        } catch (ClosedWatchServiceException ex) {
+            log.warn("No longer watching " + this.file);
+        }
+        return changed;
+    }
+
+    /**
+     * Read the file and update the Posts.
+     * @throws IOException If the file cannot be read.
+     * @throws IllegalArgumentException If a line is malformed or repeats
+     *  the token of another line.
+     */
+    private void reload() throws IOException {
+        final Set<String> tokens = new HashSet<>();
+        final Map<String, String> accounts = new LinkedHashMap<>();
+        final Map<String, String> schedules = new LinkedHashMap<>();
+        final Map<String, Schedule> parsed = new LinkedHashMap<>();
+        int number = 0;
+        for(final String line : Files.readAllLines(this.file, StandardCharsets.UTF_8)) {
+            number = number + 1;
+            final String trimmed = line.trim();
+            if(!trimmed.isEmpty() && !trimmed.startsWith("#")) {
+                final String[] parts = trimmed.split("\\s+", 3);
+                if(parts.length < 2) {
+                    throw new IllegalArgumentException(
+                        "Line " + number + " of " + this.file
+                        + " should have a token and an endpoint!"
+                    );
+                }
+                if(!tokens.add(parts[0])) {
+                    throw new IllegalArgumentException(
+                        "Line " + number + " of " + this.file
+                        + " repeats the token of another line!"
+                    );
+                }
+                final String key = parts[0] + ' ' + parts[1];
+                accounts.put(key, parts[0]);
+                schedules.put(key, "");
+                if(parts.length == 3) {
+                    schedules.put(key, parts[2]);
+                    parsed.put(key, new Schedule(parts[2]));
+                }
+            }
+        }
+        final Map<String, Post> posts = new LinkedHashMap<>();
+        final Map<String, Post> scheduled = new LinkedHashMap<>();
+        int added = 0;
+        for(final Map.Entry<String, String> account : accounts.entrySet()) {
+            Post post = this.posts.get(account.getKey());
+            if(post == null) {
+                post = this.system.post(
+                    account.getValue(),
+                    account.getKey().substring(account.getValue().length() + 1)
+                );
+                added = added + 1;
+            }
+            posts.put(account.getKey(), post);
+            Post timed = this.scheduled.get(account.getKey());
+            if(timed == null
+                || !schedules.get(account.getKey()).equals(this.schedules.get(account.getKey()))) {
+                timed = post;
+                if(parsed.containsKey(account.getKey())) {
+                    timed = new ScheduledPost(post, parsed.get(account.getKey()));
+                }
+            }
+            scheduled.put(account.getKey(), timed);
+        }
+        final int removed = this.posts.size() - (posts.size() - added);
+        this.posts = posts;
+        this.scheduled = scheduled;
+        this.schedules = schedules;
+        log.info(
+            "Read " + posts.size() + " accounts from " + this.file + ": "
+            + added + " new, " + removed + " removed."
+        );
+    }
+}
@@ -0,0 +1,134 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of mention-notifications-ejb nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.github;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Adaptive notifications. The next poll time is chosen based on the
+ * X-Poll-Interval that Github sends and on how many checks in a row came
+ * out empty: idle accounts back off exponentially (up to a maximum),
+ * while an account which just received notifications is polled again as
+ * soon as Github allows it. Timer ticks which come before the next poll
+ * time are skipped.<br><br>
+ * With the global timer, this only works in one direction: it can poll
+ * less often than the timer ticks, never more often. With per-account
+ * timers, an account without its own Schedule is checked when
+ * {@link #next()} says (see {@link PacedPost}), so a busy account is
+ * polled as often as X-Poll-Interval allows, even if that is more often
+ * than checks.interval.minutes.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 2.1.0
+ */
+public final class AdaptiveNotifications implements Notifications, Polling {
+
+    /**
+     * Original notifications to use.
+     */
+    private final RtNotifications original;
+
+    /**
+     * Maximum milliseconds to wait between two polls.
+     */
+    private final long max;
+
+    /**
+     * Nr of consecutive empty checks.
+     */
+    private volatile int empty;
+
+    /**
+     * Time (millis) before which we shouldn't poll again.
+     */
+    private volatile long next;
+
+    /**
+     * Ctor. An idle account will be polled at least every 30 minutes.
+     * @param orig Notifications from Github.
+     */
+    public AdaptiveNotifications(final RtNotifications orig) {
+        this(orig, 30);
+    }
+
+    /**
+     * Ctor.
+     * @param orig Notifications from Github.
+     * @param maxMinutes Maximum minutes to wait between two polls.
+     */
+    public AdaptiveNotifications(final RtNotifications orig, final int maxMinutes) {
+        this.original = orig;
+        this.max = maxMinutes * 60L * 1000L;
+    }
+
+    @Override
+    public List<Notification> fetch() throws IOException {
+        List<Notification> notifications = new ArrayList<>();
+        final long now = System.currentTimeMillis();
+        if(now >= this.next) {
+            notifications = this.original.fetch();
+            final long interval = Math.max(0, this.original.pollInterval()) * 1000L;
+            if(notifications.isEmpty()) {
+                this.empty = Math.min(this.empty + 1, 30);
+                this.next = now + Math.max(
+                    interval, Math.min(this.max, interval << (this.empty - 1))
+                );
+            } else {
+                this.empty = 0;
+                this.next = now + interval;
+            }
+        }
+        return notifications;
+    }
+
+    @Override
+    public void markAsRead() throws IOException {
+        this.original.markAsRead();
+    }
+
+    @Override
+    public void markAsRead(final List<Notification> notifications)
+        throws IOException {
+        this.original.markAsRead(notifications);
+    }
+
+    @Override
+    public int empty() {
+        return this.empty;
+    }
+
+    @Override
+    public boolean skipping() {
+        return System.currentTimeMillis() < this.next;
+    }
+
+    @Override
+    public long next() {
+        return this.next;
+    }
+
+}
@@ -26,7 +26,6 @@ package com.amihaiemil.charles.github;
 
 import javax.ws.rs.core.HttpHeaders;
 import com.jcabi.http.Request;
-import com.jcabi.http.request.JdkRequest;
 
 /**
  * Authorized request sent by this checker.
@@ -53,7 +52,19 @@ public abstract class AuthorizedRequest {
      * @param originalEndpoint Original url for this request.
      */
     public AuthorizedRequest(String token, String originalEndpoint) {
-        this.req = new JdkRequest(originalEndpoint);
+        this(token, originalEndpoint, new Transport.Jdk());
+    }
+
+    /**
+     * Ctor.
+     * @param token Token used with this request.
+     * @param originalEndpoint Original url for this request.
+     * @param transport How the request is sent.
+     */
+    public AuthorizedRequest(
+        String token, String originalEndpoint, Transport transport
+    ) {
+        this.req = transport.request(originalEndpoint);
         this.token = token;
     }
 
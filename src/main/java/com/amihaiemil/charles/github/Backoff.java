@@ -0,0 +1,204 @@
+/*
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of mention-notifications-ejb nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.github;
+
+import java.net.HttpURLConnection;
+import java.text.ParseException;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.TimeZone;
+
+import org.apache.commons.lang3.time.FastDateFormat;
+
+import com.jcabi.http.Response;
+
+/**
+ * Retry policy for the http calls: how many times to try, which answers
+ * are worth retrying and how long to wait between attempts. The wait is
+ * exponential with full jitter (a random time between 0 and base * 2^n,
+ * capped at max), unless the server says otherwise with Retry-After.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 2.1.0
+ */
+public final class Backoff {
+
+    /**
+     * No retries, every call is tried only once.
+     */
+    public static final Backoff NONE = new Backoff(1, 0, 0);
+
+    /**
+     * Format of the Retry-After header, when it is a date.
+     */
+    private static final FastDateFormat HTTP_DATE = FastDateFormat.getInstance(
+        "EEE, dd MMM yyyy HH:mm:ss zzz", TimeZone.getTimeZone("GMT"), Locale.US
+    );
+
+    /**
+     * Statuses which mean the server might answer properly a bit later.
+     */
+    private static final int[] RETRYABLE = {
+        HttpURLConnection.HTTP_CLIENT_TIMEOUT,
+        429,
+        HttpURLConnection.HTTP_INTERNAL_ERROR,
+        HttpURLConnection.HTTP_BAD_GATEWAY,
+        HttpURLConnection.HTTP_UNAVAILABLE,
+        HttpURLConnection.HTTP_GATEWAY_TIMEOUT
+    };
+
+    /**
+     * Maximum number of attempts, including the first one.
+     */
+    private final int attempts;
+
+    /**
+     * Base delay, in milliseconds.
+     */
+    private final long base;
+
+    /**
+     * Maximum delay, in milliseconds.
+     */
+    private final long max;
+
+    /**
+     * Source of the jitter.
+     */
+    private final Random random;
+
+    /**
+     * Ctor.
+     * @param attempts Maximum number of attempts, including the first one.
+     * @param base Base delay, in milliseconds.
+     * @param max Maximum delay, in milliseconds. A Retry-After longer than
+     *  this is not waited for; we give up instead.
+     */
+    public Backoff(final int attempts, final long base, final long max) {
+        this(attempts, base, max, new Random());
+    }
+
+    /**
+     * Ctor.
+     * @param attempts Maximum number of attempts, including the first one.
+     * @param base Base delay, in milliseconds.
+     * @param max Maximum delay, in milliseconds.
+     * @param random Source of the jitter.
+     */
+    Backoff(final int attempts, final long base, final long max, final Random random) {
+        this.attempts = Math.max(1, attempts);
+        this.base = base;
+        this.max = max;
+        this.random = random;
+    }
+
+    /**
+     * Maximum number of attempts, including the first one.
+     * @return Number of attempts.
+     */
+    public int attempts() {
+        return this.attempts;
+    }
+
+    /**
+     * Is this status worth retrying?
+     * @param status Http status.
+     * @return True or false.
+     */
+    public boolean retryable(final int status) {
+        boolean retryable = false;
+        for(final int candidate : RETRYABLE) {
+            if(candidate == status) {
+                retryable = true;
+                break;
+            }
+        }
+        return retryable;
+    }
+
+    /**
+     * How long to wait before the next attempt.
+     * @param attempt Number of the failed attempt, starting from 1.
+     * @param response Response of the failed attempt, null if there was
+     *  none (e.g. the connection was reset).
+     * @return Milliseconds to wait or -1 if Retry-After asks for more
+     *  than the maximum delay.
+     */
+    public long delay(final int attempt, final Response response) {
+        long delay = -1;
+        final long after = Backoff.retryAfter(response);
+        if(after < 0) {
+            final long cap = Math.min(
+                this.max, this.base << Math.min(attempt - 1, 30)
+            );
+            delay = (long) (this.random.nextDouble() * (cap + 1));
+        } else if(after <= this.max) {
+            delay = after;
+        }
+        return delay;
+    }
+
+    /**
+     * Milliseconds specified by the Retry-After header, either as
+     * seconds or as a date.
+     * @param response Response or null.
+     * @return Milliseconds or -1 if the header is missing or invalid.
+     */
+    private static long retryAfter(final Response response) {
+        long after = -1;
+        if(response != null) {
+            for(final Map.Entry<String, List<String>> hdr : response.headers().entrySet()) {
+                if("Retry-After".equalsIgnoreCase(hdr.getKey()) && !hdr.getValue().isEmpty()) {
+                    after = Backoff.millis(hdr.getValue().get(0).trim());
+                    break;
+                }
+            }
+        }
+        return after;
+    }
+
+    /**
+     * Parse the value of a Retry-After header.
+     * @param value Seconds or http date.
+     * @return Milliseconds or -1 if the value is invalid.
+     */
+    private static long millis(final String value) {
+        long millis;
+        try {
+            millis = Math.max(0, Long.parseLong(value) * 1000);
+        } catch (NumberFormatException notSeconds) {
+            try {
+                final Date date = HTTP_DATE.parse(value);
+                millis = Math.max(0, date.getTime() - System.currentTimeMillis());
+            } catch (ParseException notDate) {
+                millis = -1;
+            }
+        }
+        return millis;
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of mention-notifications-ejb nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.github;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.UnknownHostException;
+import java.util.Collection;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.jcabi.http.Request;
+import com.jcabi.http.Response;
+import com.jcabi.http.Wire;
+
+/**
+ * Wire which retries the request according to a {@link Backoff}, when the
+ * connection fails or the server answers with a retryable status. After
+ * the last attempt, its response (or exception) is passed on as it is.
+ * A POST is not idempotent (e.g. a batch of notifications sent to an
+ * endpoint), so it is only retried if the connection could not be made
+ * (refused, unknown or unreachable host) or the server answered with a
+ * retryable status; never after a read timeout or a broken connection,
+ * since the server may have received it already.<br>
+ * Use it with {@code request.through(BackoffWire.class, backoff)}.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 2.1.0
+ */
+public final class BackoffWire implements Wire {
+
+    /**
+     * Logger.
+     */
+    private static final Logger log = LoggerFactory.getLogger(BackoffWire.class.getName());
+
+    /**
+     * Original wire.
+     */
+    private final Wire origin;
+
+    /**
+     * Retry policy.
+     */
+    private final Backoff backoff;
+
+    /**
+     * Ctor.
+     * @param wire Original wire.
+     * @param backoff Retry policy.
+     */
+    public BackoffWire(final Wire wire, final Backoff backoff) {
+        this.origin = wire;
+        this.backoff = backoff;
+    }
+
+    @Override
+    public Response send(
+        final Request req, final String home, final String method,
+        final Collection<Map.Entry<String, String>> headers,
+        final InputStream content, final int connect, final int read
+    ) throws IOException {
+        final byte[] body = Streams.read(content);
+        Response response = null;
+        for(int attempt = 1; response == null; attempt++) {
+            long delay;
+            try {
+                response = this.origin.send(
+                    req, home, method, headers,
+                    new ByteArrayInputStream(body), connect, read
+                );
+                if(attempt >= this.backoff.attempts()
+                    || !this.backoff.retryable(response.status())) {
+                    break;
+                }
+                delay = this.backoff.delay(attempt, response);
+                if(delay < 0) {
+                    break;
+                }
+                log.warn(
+                    method + " " + home + " answered " + response.status()
+                    + ", retrying in " + delay + "ms (attempt " + attempt + ")"
+                );
+                response = null;
+            } catch (IOException ex) {
+                delay = this.backoff.delay(attempt, null);
+                if(attempt >= this.backoff.attempts()
+                    || !BackoffWire.retryable(method, ex)) {
+                    throw ex;
+                }
+                log.warn(
+                    method + " " + home + " failed (" + ex.getMessage()
+                    + "), retrying in " + delay + "ms (attempt " + attempt + ")"
+                );
+            }
+            BackoffWire.sleep(delay);
+        }
+        return response;
+    }
+
+    /**
+     * Can the request be sent again after this failure? Any request but a
+     * POST can; a POST only if it never reached the server.
+     * @param method HTTP method.
+     * @param failure Failure of the request.
+     * @return True or false.
+     */
+    private static boolean retryable(final String method, final IOException failure) {
+        boolean retryable = !Request.POST.equalsIgnoreCase(method);
+        Throwable cause = failure;
+        while(!retryable && cause != null) {
+            retryable = cause instanceof ConnectException
+                || cause instanceof UnknownHostException
+                || cause instanceof NoRouteToHostException;
+            cause = cause.getCause();
+        }
+        return retryable;
+    }
+
+    /**
+     * Wait.
+     * @param millis Milliseconds.
+     * @throws InterruptedIOException If the thread is interrupted.
+     */
+    private static void sleep(final long millis) throws InterruptedIOException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while backing off");
+        }
+    }
+}
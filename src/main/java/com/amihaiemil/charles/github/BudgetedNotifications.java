@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of mention-notifications-ejb nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.github;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Notifications which are polled only if the account's {@link RateLimit}
+ * allows it.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 2.1.0
+ */
+public final class BudgetedNotifications implements Notifications {
+
+    /**
+     * Logger.
+     */
+    private static final Logger log = LoggerFactory.getLogger(BudgetedNotifications.class.getName());
+
+    /**
+     * Original notifications.
+     */
+    private final Notifications original;
+
+    /**
+     * Rate limit of the account.
+     */
+    private final RateLimit budget;
+
+    /**
+     * Ctor.
+     * @param orig Original notifications.
+     * @param budget Rate limit of the account, updated by the
+     *  RtNotifications behind orig.
+     */
+    public BudgetedNotifications(final Notifications orig, final RateLimit budget) {
+        this.original = orig;
+        this.budget = budget;
+    }
+
+    @Override
+    public List<Notification> fetch() throws IOException {
+        final List<Notification> notifications;
+        if(this.budget.poll(System.currentTimeMillis())) {
+            notifications = this.original.fetch();
+        } else {
+            log.warn(
+                "Skipping this check to save the rate limit: "
+                + this.budget.getRemaining() + " requests remaining, "
+                + this.budget.getReserve() + " reserved."
+            );
+            notifications = new ArrayList<>();
+        }
+        return notifications;
+    }
+
+    @Override
+    public void markAsRead() throws IOException {
+        this.original.markAsRead();
+    }
+
+    @Override
+    public void markAsRead(final List<Notification> notifications)
+        throws IOException {
+        this.original.markAsRead(notifications);
+    }
+}
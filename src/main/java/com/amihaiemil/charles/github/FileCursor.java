@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of mention-notifications-ejb nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.github;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.util.TimeZone;
+
+import org.apache.commons.lang3.time.FastDateFormat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Cursor kept in a small text file, with the time in Github's format
+ * (e.g. 2017-03-18T09:22:31Z), so it survives restarts. The file is
+ * written next to the old one and then moved over it, so a crash cannot
+ * leave it half-written.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 2.1.0
+ */
+public final class FileCursor implements Cursor, Stored {
+
+    /**
+     * Logger.
+     */
+    private static final Logger log = LoggerFactory.getLogger(FileCursor.class.getName());
+
+    /**
+     * Format of Github's timestamps.
+     */
+    private static final FastDateFormat TIME = FastDateFormat.getInstance(
+        "yyyy-MM-dd'T'HH:mm:ss'Z'", TimeZone.getTimeZone("UTC")
+    );
+
+    /**
+     * The file.
+     */
+    private final Path file;
+
+    /**
+     * Newest update time processed so far.
+     */
+    private volatile long since;
+
+    /**
+     * Ctor.
+     * @param file The file; it will be created when the cursor advances.
+     * @throws IOException If the file cannot be read.
+     */
+    public FileCursor(final Path file) throws IOException {
+        this.file = file;
+        this.reload();
+    }
+
+    @Override
+    public synchronized void reload() throws IOException {
+        if(Files.exists(this.file)) {
+            final String time = new String(
+                Files.readAllBytes(this.file), StandardCharsets.UTF_8
+            ).trim();
+            try {
+                this.since = FileCursor.TIME.parse(time).getTime();
+            } catch (final ParseException ex) {
+                log.warn("Ignoring unreadable cursor " + time + " in " + this.file);
+            }
+        }
+    }
+
+    @Override
+    public long since() {
+        return this.since;
+    }
+
+    @Override
+    public synchronized void advance(final long updated) throws IOException {
+        if(updated > this.since) {
+            new DurableFile(this.file).replace(
+                FileCursor.TIME.format(updated).getBytes(StandardCharsets.UTF_8)
+            );
+            this.since = updated;
+        }
+    }
+}
@@ -0,0 +1,176 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of mention-notifications-ejb nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.github;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Deliveries remembered in an append-only file, so they survive restarts.
+ * Each delivery is a record of 16 bytes (thread id, or negated comment
+ * id, and update time); the
+ * file is read into {@link RecentDeliveries} when the object is created.
+ * Once the file has more than twice as many records as the capacity, it
+ * is rewritten with only the threads still remembered in memory.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 2.1.0
+ */
+public final class FileDeliveries implements Deliveries, Stored {
+
+    /**
+     * Logger.
+     */
+    private static final Logger log = LoggerFactory.getLogger(FileDeliveries.class.getName());
+
+    /**
+     * Size of a record.
+     */
+    private static final int RECORD = 16;
+
+    /**
+     * The file.
+     */
+    private final Path file;
+
+    /**
+     * Maximum number of threads to remember.
+     */
+    private final int capacity;
+
+    /**
+     * Deliveries in memory.
+     */
+    private volatile RecentDeliveries memory;
+
+    /**
+     * Number of records in the file.
+     */
+    private long records;
+
+    /**
+     * Ctor.
+     * @param file The file; it will be created if it doesn't exist.
+     * @param capacity Maximum number of threads to remember.
+     * @throws IOException If the file cannot be read.
+     */
+    public FileDeliveries(final Path file, final int capacity) throws IOException {
+        this.file = file;
+        this.capacity = capacity;
+        this.memory = new RecentDeliveries(capacity);
+        this.load();
+    }
+
+    @Override
+    public boolean delivered(final Notification notification) {
+        return this.memory.delivered(notification);
+    }
+
+    @Override
+    public synchronized void reload() throws IOException {
+        this.memory = new RecentDeliveries(this.capacity);
+        this.records = 0;
+        this.load();
+    }
+
+    @Override
+    public synchronized void add(final List<Notification> notifications) throws IOException {
+        this.memory.add(notifications);
+        final ByteBuffer buffer = ByteBuffer.allocate(2 * RECORD * notifications.size());
+        int records = 0;
+        for(final Notification notification : notifications) {
+            if(notification.thread() > 0) {
+                buffer.putLong(notification.thread()).putLong(notification.updated());
+                records++;
+            }
+            if(notification.comment() > 0) {
+                buffer.putLong(-notification.comment()).putLong(notification.updated());
+                records++;
+            }
+        }
+        buffer.flip();
+        try (
+            final FileChannel channel = FileChannel.open(
+                this.file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND
+            )
+        ) {
+            while(buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        }
+        this.records += records;
+        if(this.records > 2L * this.capacity) {
+            this.compact();
+        }
+    }
+
+    /**
+     * Read the deliveries from the file. A record which was
+     * only partly written (e.g. the server crashed) is ignored.
+     * @throws IOException If something goes wrong.
+     */
+    private void load() throws IOException {
+        if(Files.exists(this.file)) {
+            final ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(this.file));
+            while(buffer.remaining() >= RECORD) {
+                this.memory.add(buffer.getLong(), buffer.getLong());
+                this.records++;
+            }
+            if(buffer.hasRemaining()) {
+                log.warn("Ignoring incomplete record at the end of " + this.file);
+            }
+            if(this.records > 2L * this.capacity || buffer.hasRemaining()) {
+                this.compact();
+            }
+        }
+    }
+
+    /**
+     * Rewrite the file with only the deliveries remembered in memory.
+     * A crash cannot leave us with a half-written file.
+     * @throws IOException If something goes wrong.
+     */
+    private void compact() throws IOException {
+        final Map<Long, Long> threads = this.memory.threads();
+        final ByteBuffer buffer = ByteBuffer.allocate(RECORD * threads.size());
+        for(final Map.Entry<Long, Long> thread : threads.entrySet()) {
+            buffer.putLong(thread.getKey()).putLong(thread.getValue());
+        }
+        new DurableFile(this.file).replace(buffer.array());
+        this.records = threads.size();
+        log.info("Compacted " + this.file + " to " + this.records + " deliveries.");
+    }
+}
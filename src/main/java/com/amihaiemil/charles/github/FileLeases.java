@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of mention-notifications-ejb nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.github;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Leases kept in a file which all the nodes can reach (e.g. on a shared
+ * volume). Every operation locks the whole file (FileChannel.lock), reads
+ * it, changes it and writes it back, so the nodes see each other's leases
+ * and can never take the same one. The file is small: one line
+ * (name, holder and expiry, separated by spaces) per lease.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 2.1.0
+ */
+public final class FileLeases implements Leases {
+
+    /**
+     * The file.
+     */
+    private final Path file;
+
+    /**
+     * Ctor.
+     * @param file The file; it will be created if it doesn't exist.
+     */
+    public FileLeases(final Path file) {
+        this.file = file;
+    }
+
+    @Override
+    public synchronized boolean acquire(
+        final String name, final String holder, final long now, final long ttl
+    ) throws IOException {
+        try (
+            final FileChannel channel = this.open();
+            final FileLock lock = channel.lock()
+        ) {
+            final Map<String, String[]> leases = FileLeases.read(channel);
+            final String[] current = leases.get(name);
+            final boolean free = current == null || current[0].equals(holder)
+                || Long.parseLong(current[1]) <= now;
+            if(free) {
+                leases.put(name, new String[] {holder, String.valueOf(now + ttl)});
+                FileLeases.write(channel, leases);
+            }
+            return free;
+        }
+    }
+
+    @Override
+    public synchronized void release(final String name, final String holder) throws IOException {
+        try (
+            final FileChannel channel = this.open();
+            final FileLock lock = channel.lock()
+        ) {
+            final Map<String, String[]> leases = FileLeases.read(channel);
+            final String[] current = leases.get(name);
+            if(current != null && current[0].equals(holder)) {
+                leases.remove(name);
+                FileLeases.write(channel, leases);
+            }
+        }
+    }
+
+    @Override
+    public synchronized Set<String> holders(final String prefix, final long now) throws IOException {
+        final Set<String> holders = new HashSet<>();
+        try (
+            final FileChannel channel = this.open();
+            final FileLock lock = channel.lock()
+        ) {
+            for(final Map.Entry<String, String[]> lease : FileLeases.read(channel).entrySet()) {
+                if(lease.getKey().startsWith(prefix)
+                    && Long.parseLong(lease.getValue()[1]) > now) {
+                    holders.add(lease.getValue()[0]);
+                }
+            }
+        }
+        return holders;
+    }
+
+    /**
+     * Open the file.
+     * @return FileChannel.
+     * @throws IOException If it cannot be opened.
+     */
+    private FileChannel open() throws IOException {
+        return FileChannel.open(
+            this.file, StandardOpenOption.CREATE,
+            StandardOpenOption.READ, StandardOpenOption.WRITE
+        );
+    }
+
+    /**
+     * Read the leases. Malformed lines are ignored.
+     * @param channel The locked file.
+     * @return Holder and expiry, by the name of the lease.
+     * @throws IOException If something goes wrong.
+     */
+    private static Map<String, String[]> read(final FileChannel channel)
+        throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+        channel.position(0);
+        while(buffer.hasRemaining() && channel.read(buffer) != -1) {
+            continue;
+        }
+        final Map<String, String[]> leases = new LinkedHashMap<>();
+        final String text = new String(buffer.array(), StandardCharsets.UTF_8);
+        for(final String line : text.split("\n")) {
+            final String[] parts = line.trim().split(" ");
+            if(parts.length == 3 && parts[2].matches("\\d+")) {
+                leases.put(parts[0], new String[] {parts[1], parts[2]});
+            }
+        }
+        return leases;
+    }
+
+    /**
+     * Write the leases over the file and force them to disk.
+     * @param channel The locked file.
+     * @param leases Holder and expiry, by the name of the lease.
+     * @throws IOException If something goes wrong.
+     */
+    private static void write(
+        final FileChannel channel, final Map<String, String[]> leases
+    ) throws IOException {
+        final StringBuilder text = new StringBuilder();
+        for(final Map.Entry<String, String[]> lease : leases.entrySet()) {
+            text.append(lease.getKey()).append(' ')
+                .append(lease.getValue()[0]).append(' ')
+                .append(lease.getValue()[1]).append('\n');
+        }
+        final ByteBuffer buffer = ByteBuffer.wrap(
+            text.toString().getBytes(StandardCharsets.UTF_8)
+        );
+        channel.truncate(0);
+        channel.position(0);
+        while(buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        channel.force(false);
+    }
+}
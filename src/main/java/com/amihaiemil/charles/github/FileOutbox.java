@@ -0,0 +1,371 @@
+/*
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of mention-notifications-ejb nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.github;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Outbox kept in an append-only file (a write-ahead log), so the parcels
+ * survive restarts and crashes. Each record is its length (4 bytes)
+ * followed by either a parcel (its id, notifications and json) or the
+ * acknowledgement of a parcel (its id). Every record is forced to disk
+ * before add or ack return. The file is read when the object is created
+ * and rewritten with only the pending parcels when it holds more than
+ * {@link #ACKS} acknowledgements, or emptied when nothing is pending.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 2.1.0
+ */
+public final class FileOutbox implements Outbox, Stored {
+
+    /**
+     * Logger.
+     */
+    private static final Logger log = LoggerFactory.getLogger(FileOutbox.class.getName());
+
+    /**
+     * Acknowledgements in the file after which it is compacted.
+     */
+    static final int ACKS = 1000;
+
+    /**
+     * A parcel record.
+     */
+    private static final byte PARCEL = 1;
+
+    /**
+     * An acknowledgement record.
+     */
+    private static final byte ACK = 2;
+
+    /**
+     * The file.
+     */
+    private final Path file;
+
+    /**
+     * Pending parcels, oldest first.
+     */
+    private final Map<Long, Outbox.Parcel> pending = new LinkedHashMap<>();
+
+    /**
+     * Queued notification threads (and comments, under their negated ids)
+     * and their update times.
+     */
+    private final Map<Long, Long> queued = new HashMap<>();
+
+    /**
+     * Is the outbox being drained?
+     */
+    private final AtomicBoolean draining = new AtomicBoolean();
+
+    /**
+     * Id of the last parcel.
+     */
+    private long last;
+
+    /**
+     * Acknowledgements in the file.
+     */
+    private int acks;
+
+    /**
+     * Ctor.
+     * @param file The file; it will be created if it doesn't exist.
+     * @throws IOException If the file cannot be read.
+     */
+    public FileOutbox(final Path file) throws IOException {
+        this.file = file;
+        this.load();
+    }
+
+    @Override
+    public synchronized void add(
+        final byte[] json, final List<Notification> notifications
+    ) throws IOException {
+        final Outbox.Parcel parcel = new Outbox.Parcel(
+            this.last + 1, json, new ArrayList<>(notifications)
+        );
+        this.append(FileOutbox.record(parcel));
+        this.last = parcel.id();
+        this.pending.put(parcel.id(), parcel);
+        this.queue(parcel);
+    }
+
+    @Override
+    public synchronized boolean queued(final Notification notification) {
+        final Long updated = this.queued.get(notification.thread());
+        return notification.thread() > 0 && updated != null
+            && updated >= notification.updated()
+            || notification.comment() > 0
+            && this.queued.containsKey(-notification.comment());
+    }
+
+    @Override
+    public synchronized Outbox.Parcel next() {
+        Outbox.Parcel next = null;
+        if(!this.pending.isEmpty()) {
+            next = this.pending.values().iterator().next();
+        }
+        return next;
+    }
+
+    @Override
+    public boolean claim() {
+        return this.draining.compareAndSet(false, true);
+    }
+
+    @Override
+    public void release() {
+        this.draining.set(false);
+    }
+
+    @Override
+    public synchronized void reload() throws IOException {
+        this.pending.clear();
+        this.queued.clear();
+        this.last = 0;
+        this.acks = 0;
+        this.load();
+    }
+
+    @Override
+    public synchronized void ack(final Outbox.Parcel parcel) throws IOException {
+        if(this.pending.containsKey(parcel.id())) {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            final DataOutputStream record = new DataOutputStream(bytes);
+            record.writeByte(ACK);
+            record.writeLong(parcel.id());
+            this.append(bytes.toByteArray());
+            this.pending.remove(parcel.id());
+            this.acks++;
+            this.unqueue(parcel);
+            if(this.pending.isEmpty() || this.acks > ACKS) {
+                this.compact();
+            }
+        }
+    }
+
+    /**
+     * Append a record to the file and force it to disk.
+     * @param record The record, without its length.
+     * @throws IOException If something goes wrong.
+     */
+    private void append(final byte[] record) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(4 + record.length);
+        buffer.putInt(record.length).put(record).flip();
+        try (
+            final FileChannel channel = FileChannel.open(
+                this.file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND
+            )
+        ) {
+            while(buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        }
+    }
+
+    /**
+     * Read the pending parcels from the file. A record which was
+     * only partly written (e.g. the server crashed) is ignored.
+     * @throws IOException If something goes wrong.
+     */
+    private void load() throws IOException {
+        if(Files.exists(this.file)) {
+            final ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(this.file));
+            boolean complete = true;
+            while(buffer.remaining() >= 4 && complete) {
+                final int length = buffer.getInt();
+                complete = length > 0 && buffer.remaining() >= length;
+                if(complete) {
+                    final byte[] record = new byte[length];
+                    buffer.get(record);
+                    this.replay(record);
+                }
+            }
+            complete = complete && !buffer.hasRemaining();
+            if(!complete) {
+                log.warn("Ignoring incomplete record at the end of " + this.file);
+            }
+            if(!complete || this.acks > 0) {
+                this.compact();
+            }
+            if(!this.pending.isEmpty()) {
+                log.info(this.pending.size() + " parcels waiting in " + this.file);
+            }
+        }
+    }
+
+    /**
+     * Replay a record read from the file.
+     * @param record The record, without its length.
+     * @throws IOException If it cannot be read.
+     */
+    private void replay(final byte[] record) throws IOException {
+        final DataInputStream data = new DataInputStream(
+            new ByteArrayInputStream(record)
+        );
+        final byte kind = data.readByte();
+        if(kind == PARCEL) {
+            final long id = data.readLong();
+            final int size = data.readInt();
+            final List<Notification> notifications = new ArrayList<>(size);
+            for(int idx = 0; idx < size; idx++) {
+                notifications.add(
+                    new Notification(
+                        data.readLong(), data.readLong(),
+                        Notification.Type.valueOf(data.readUTF()),
+                        data.readUTF(), data.readInt(), data.readBoolean(),
+                        data.readLong()
+                    )
+                );
+            }
+            final byte[] json = new byte[data.readInt()];
+            data.readFully(json);
+            final Outbox.Parcel parcel = new Outbox.Parcel(id, json, notifications);
+            this.pending.put(id, parcel);
+            this.queue(parcel);
+            this.last = Math.max(this.last, id);
+        } else if(kind == ACK) {
+            final Outbox.Parcel parcel = this.pending.remove(data.readLong());
+            if(parcel != null) {
+                this.unqueue(parcel);
+            }
+            this.acks++;
+        }
+    }
+
+    /**
+     * Rewrite the file with only the pending parcels. A crash cannot
+     * leave us with a half-written file.
+     * @throws IOException If something goes wrong.
+     */
+    private void compact() throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream data = new DataOutputStream(bytes);
+        for(final Outbox.Parcel parcel : this.pending.values()) {
+            final byte[] record = FileOutbox.record(parcel);
+            data.writeInt(record.length);
+            data.write(record);
+        }
+        new DurableFile(this.file).replace(bytes.toByteArray());
+        this.acks = 0;
+    }
+
+    /**
+     * Remember the notifications of the parcel as queued.
+     * @param parcel Parcel.
+     */
+    private void queue(final Outbox.Parcel parcel) {
+        for(final Notification notification : parcel.notifications()) {
+            for(final long key : FileOutbox.keys(notification)) {
+                final Long updated = this.queued.get(key);
+                if(updated == null || updated < notification.updated()) {
+                    this.queued.put(key, notification.updated());
+                }
+            }
+        }
+    }
+
+    /**
+     * Forget the notifications of the parcel, unless a newer update of
+     * them is queued in another parcel.
+     * @param parcel Parcel.
+     */
+    private void unqueue(final Outbox.Parcel parcel) {
+        for(final Notification notification : parcel.notifications()) {
+            for(final long key : FileOutbox.keys(notification)) {
+                final Long updated = this.queued.get(key);
+                if(updated != null && updated <= notification.updated()) {
+                    this.queued.remove(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * Keys under which a notification is queued: its thread and its
+     * comment (negated), if they are known.
+     * @param notification Notification.
+     * @return Keys.
+     */
+    private static List<Long> keys(final Notification notification) {
+        final List<Long> keys = new ArrayList<>(2);
+        if(notification.thread() > 0) {
+            keys.add(notification.thread());
+        }
+        if(notification.comment() > 0) {
+            keys.add(-notification.comment());
+        }
+        return keys;
+    }
+
+    /**
+     * Serialize a parcel.
+     * @param parcel Parcel.
+     * @return The record, without its length.
+     * @throws IOException If something goes wrong.
+     */
+    private static byte[] record(final Outbox.Parcel parcel) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream record = new DataOutputStream(bytes);
+        record.writeByte(PARCEL);
+        record.writeLong(parcel.id());
+        record.writeInt(parcel.notifications().size());
+        for(final Notification notification : parcel.notifications()) {
+            record.writeLong(notification.thread());
+            record.writeLong(notification.updated());
+            record.writeUTF(notification.type().name());
+            record.writeUTF(notification.repo());
+            record.writeInt(notification.issue());
+            record.writeBoolean(notification.newComment());
+            record.writeLong(notification.comment());
+        }
+        final byte[] json = parcel.json();
+        record.writeInt(json.length);
+        record.write(json);
+        return bytes.toByteArray();
+    }
+}
@@ -24,6 +24,26 @@
  */
 package com.amihaiemil.charles.github;
 
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
 /**
  * The checker does each post based on System Properties.
  * System properties github.auth.tokens and post.endpoints each contain endpoints/
@@ -32,16 +52,128 @@ package com.amihaiemil.charles.github;
  * @version $Id$
  * @since 1.0.0
  */
-public final class FromSystem implements Posts{
+public final class FromSystem implements Posts, Accounts, Closeable {
+
+    /**
+     * Metrics of the accounts.
+     */
+    private final Metrics metrics = new Metrics();
+
+    /**
+     * How many delivered threads each account remembers.
+     */
+    private static final int DELIVERIES = 10000;
 
     private String[] githubTokens;
     
     private String[] postEndpoints;
-    
+
+    /**
+     * Reason of the notifications we're interested in.
+     */
+    private final Reason reason;
+
+    /**
+     * Retry policy.
+     */
+    private final Backoff backoff;
+
+    /**
+     * How the requests to Github are sent.
+     */
+    private final Transport github;
+
+    /**
+     * How the notifications are sent to the endpoints.
+     */
+    private final Transport receivers;
+
+    /**
+     * Directory of the outboxes; empty if there are none.
+     */
+    private final String outboxes;
+
+    /**
+     * Executor draining the outboxes; null if there are none.
+     */
+    private final ExecutorService drainer;
+
+    /**
+     * Executor marking single threads as read; null if the notifications
+     * are marked as read by last_read_at.
+     */
+    private final ExecutorService threads;
+
+    /**
+     * This node's share of the accounts; null if they are not sharded.
+     */
+    private final Shard shard;
+
+    /**
+     * Deliveries of the accounts, by account key. They are reused if an
+     * account's Post is created again (e.g. its endpoint changed).
+     */
+    private final Map<String, Deliveries> deliveries = new HashMap<>();
+
+    /**
+     * Outboxes of the accounts, by account key. They are reused if an
+     * account's Post is created again, so a file is never written by
+     * two outboxes.
+     */
+    private final Map<String, Outbox> boxes = new HashMap<>();
+
+    /**
+     * Cursors of the accounts, by account key; only those kept in files.
+     */
+    private final Map<String, Cursor> cursors = new HashMap<>();
+
+    /**
+     * Polled notifications of the accounts, by account key. They are reused
+     * if an account's Post is created again, so its cursor, counters and
+     * rate limit carry over and its MBeans are published only once.
+     * Keyed by token alone, since a token may only be given once (in
+     * github.auth.tokens or the accounts file).
+     */
+    private final Map<String, Notifications> polled = new HashMap<>();
+
+    /**
+     * Polling of the accounts which decide themselves when they're
+     * checked next (notifications.polling=adaptive), by account key.
+     */
+    private final Map<String, Polling> paces = new HashMap<>();
+
+    /**
+     * Webhooks of the accounts, by token and endpoint, created the first
+     * time they are asked for.
+     */
+    private final Map<String, Webhook> webhooks = new HashMap<>();
+
+    /**
+     * Executor sending the notifications received by the webhooks, created
+     * with the first webhook.
+     */
+    private ExecutorService pushing;
+
+    /**
+     * Posts of the accounts from github.auth.tokens and post.endpoints,
+     * created the first time they are asked for.
+     */
+    private Post[] posts;
+
+    /**
+     * Ctor. The accounts are read from the system properties
+     * github.auth.tokens and post.endpoints, which are mandatory unless
+     * the accounts are kept in a file (accounts.file); the transports and
+     * executors are created here and shared by all the Posts.
+     */
     public FromSystem() {
         String github = System.getProperty("github.auth.tokens", "");
         String endpoints = System.getProperty("post.endpoints", "");
-        if(github.isEmpty() || endpoints.isEmpty()) {
+        final boolean file = !System.getProperty("accounts.file", "").trim().isEmpty();
+        if(file && github.isEmpty() && endpoints.isEmpty()) {
+            this.githubTokens = new String[0];
+            this.postEndpoints = new String[0];
+        } else if(github.isEmpty() || endpoints.isEmpty()) {
             throw new IllegalStateException(
                 "Both github.auth.tokens and post.endpoints System Properties"
                 + " are mandatory!"
@@ -55,26 +187,528 @@ public final class FromSystem implements Posts{
                     + "the same number of elements, separated by ';'!"
                 );
             }
+            final Set<String> tokens = new HashSet<>();
+            for(final String token : this.githubTokens) {
+                if(!tokens.add(token.trim())) {
+                    throw new IllegalStateException(
+                        "github.auth.tokens should not repeat a token!"
+                    );
+                }
+            }
+        }
+        this.reason = new Rules(
+            System.getProperty("notifications.reasons", "mention"),
+            System.getProperty("notifications.repos.allow", ""),
+            System.getProperty("notifications.repos.deny", "")
+        );
+        this.backoff = new Backoff(
+            Integer.getInteger("http.retries", 3),
+            Long.getLong("http.retries.base.millis", 500L),
+            Long.getLong("http.retries.max.millis", 10000L)
+        );
+        this.shard = FromSystem.shard();
+        final boolean pooled = "pooled".equalsIgnoreCase(
+            System.getProperty("http.transport", "jdk").trim()
+        );
+        if(pooled) {
+            final int max = Integer.getInteger("http.pool.max", 20);
+            final int route = Integer.getInteger("http.pool.route", 10);
+            final HttpPool polls = new HttpPool(max, route);
+            final HttpPool sends = new HttpPool(max, route, true);
+            this.metrics.pool(polls, "github");
+            this.metrics.pool(sends, "receivers");
+            this.github = polls;
+            this.receivers = sends;
+        } else {
+            this.github = new Transport.Jdk();
+            this.receivers = new Transport.Trusted(this.github);
+        }
+        this.outboxes = System.getProperty("post.outbox.dir", "").trim();
+        if(this.outboxes.isEmpty()) {
+            this.drainer = null;
+        } else {
+            this.drainer = Executors.newCachedThreadPool(
+                FromSystem.daemons("outbox-drainer")
+            );
+        }
+        if("threads".equalsIgnoreCase(System.getProperty("notifications.read", "sweep").trim())) {
+            if(!pooled) {
+                throw new IllegalStateException(
+                    "notifications.read=threads needs http.transport=pooled,"
+                    + " the jdk transport cannot send PATCH requests!"
+                );
+            }
+            this.threads = Executors.newFixedThreadPool(
+                Integer.getInteger("notifications.read.parallel", 4),
+                FromSystem.daemons("thread-marker")
+            );
+        } else {
+            this.threads = null;
         }
     }
     
+    /**
+     * Shut down the executors and close the connection pools shared by
+     * the Posts. The Posts cannot send anything afterwards.
+     * @throws IOException If a connection pool cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        if(this.drainer != null) {
+            this.drainer.shutdownNow();
+        }
+        if(this.threads != null) {
+            this.threads.shutdownNow();
+        }
+        synchronized (this) {
+            if(this.pushing != null) {
+                this.pushing.shutdownNow();
+            }
+        }
+        try {
+            if(this.github instanceof Closeable) {
+                ((Closeable) this.github).close();
+            }
+        } finally {
+            if(this.receivers != this.github && this.receivers instanceof Closeable) {
+                ((Closeable) this.receivers).close();
+            }
+        }
+    }
+
+    /**
+     * Metrics of the accounts whose Posts were created by this object.
+     * @return Metrics.
+     */
+    public Metrics metrics() {
+        return this.metrics;
+    }
+
     @Override
-    public Post[] posts() {
-        final Post[] posts = new NtPost[this.githubTokens.length];
-        for(int i=0; i< githubTokens.length;i++) {
-            posts[i] = new NtPost(
-                new SmartNotifications(
-                    new RtNotifications(
-                        new Mention(),
-                        "token " + this.githubTokens[i].trim(),
-                        "https://api.github.com/notifications"
-                    )
+    public synchronized Post[] posts() {
+        if(this.posts == null) {
+            final String[] schedules = System.getProperty("checks.schedules", "").split(";");
+            this.posts = new Post[this.githubTokens.length];
+            for(int i=0; i< githubTokens.length;i++) {
+                this.posts[i] = this.post(
+                    this.githubTokens[i].trim(), this.postEndpoints[i].trim()
+                );
+                if(i < schedules.length && !schedules[i].trim().isEmpty()) {
+                    this.posts[i] = new ScheduledPost(
+                        this.posts[i], new Schedule(schedules[i])
+                    );
+                }
+            }
+        }
+        return this.posts.clone();
+    }
+
+    /**
+     * Post of one account, configured from the system properties. If the
+     * account had a Post already (e.g. its endpoint changed), the new one
+     * polls the same notifications and shares its deliveries and outbox.
+     * @param token Github token of the account.
+     * @param endpoint Endpoint where the notifications are sent.
+     * @return Post.
+     */
+    public synchronized Post post(final String token, final String endpoint) {
+        final String key = FromSystem.key(token);
+        Notifications notifications = this.polled.get(key);
+        if(notifications == null) {
+            final Cursor cursor = FromSystem.cursor(token);
+            if(cursor != null) {
+                this.cursors.put(key, cursor);
+            }
+            notifications = this.notifications(
+                this.reason, this.backoff,
+                new Transport.Timed(
+                    this.github,
+                    Integer.getInteger("http.timeout.connect.millis", 10000),
+                    Integer.getInteger("http.timeout.read.millis", 30000)
                 ),
-                this.githubTokens[i].trim(),
-                this.postEndpoints[i].trim()
-             );
+                this.threads, cursor, token
+            );
+            this.polled.put(key, notifications);
+        }
+        Post post = this.sender(notifications, token, endpoint);
+        if(this.shard != null) {
+            post = new ShardedPost(post, this.shard, key, this.stored(key));
+        }
+        final Polling pace = this.paces.get(key);
+        if(pace != null) {
+            post = new PacedPost(post, pace);
+        }
+        return post;
+    }
+
+    /**
+     * State of an account which is kept in files: its deliveries, cursor
+     * and outbox, if they are kept in files.
+     * @param key Key of the account.
+     * @return Stored state.
+     */
+    private List<Stored> stored(final String key) {
+        final List<Stored> state = new ArrayList<>();
+        for(final Object kept : new Object[] {
+            this.deliveries.get(key), this.cursors.get(key), this.boxes.get(key),
+        }) {
+            if(kept instanceof Stored) {
+                state.add((Stored) kept);
+            }
+        }
+        return state;
+    }
+
+    /**
+     * NtPost sending the given notifications of an account. All the NtPosts
+     * of an account share its deliveries, outbox and metrics, so a
+     * notification is delivered once, whether it was polled or pushed.
+     * @param notifications Notifications of the account.
+     * @param token Github token of the account.
+     * @param endpoint Endpoint where the notifications are sent.
+     * @return NtPost.
+     */
+    private NtPost sender(
+        final Notifications notifications, final String token,
+        final String endpoint
+    ) {
+        Outbox outbox = null;
+        if(!this.outboxes.isEmpty()) {
+            outbox = this.boxes.get(FromSystem.key(token));
+            if(outbox == null) {
+                outbox = FromSystem.outbox(this.outboxes, token);
+                this.boxes.put(FromSystem.key(token), outbox);
+            }
+        }
+        return new NtPost(
+            notifications, this.deliveries(token),
+            Integer.getInteger("post.chunk.size", Integer.MAX_VALUE),
+            Integer.getInteger("post.chunk.bytes", Integer.MAX_VALUE),
+            this.backoff,
+            new Transport.Timed(
+                this.receivers,
+                Integer.getInteger("http.timeout.connect.millis", 10000),
+                Integer.getInteger("http.timeout.read.millis", 30000)
+            ),
+            this.metrics.account(FromSystem.key(token)),
+            outbox, this.drainer, token, endpoint
+        );
+    }
+
+    @Override
+    public Map<String, String[]> accounts() {
+        final Map<String, String[]> accounts = new LinkedHashMap<>();
+        for(int idx = 0; idx < this.githubTokens.length; idx++) {
+            final String token = this.githubTokens[idx].trim();
+            accounts.put(
+                FromSystem.key(token),
+                new String[] {token, this.postEndpoints[idx].trim()}
+            );
+        }
+        return accounts;
+    }
+
+    /**
+     * Webhook of one of the accounts, configured from the system properties
+     * webhook.secret and webhook.login. The received notifications go
+     * through the same Rules as the polled ones and are sent to the
+     * account's endpoint, sharing the account's deliveries, outbox,
+     * transport and metrics with its polling Post: a mention which is
+     * pushed and later polled is delivered once. Each account's webhook
+     * is created once; their notifications are sent by webhook.threads
+     * threads (default 2).
+     * @param source Where the accounts come from, the same as for the Posts
+     *  (these system properties or the accounts file).
+     * @param account Key of the account; if empty, the account at index
+     *  webhook.account (default 0).
+     * @return Webhook or null if there is no such account.
+     */
+    public synchronized Webhook webhook(
+        final Accounts source, final String account
+    ) {
+        final String secret = System.getProperty("webhook.secret", "");
+        final String login = System.getProperty("webhook.login", "");
+        if(secret.isEmpty() || login.isEmpty()) {
+            throw new IllegalStateException(
+                "Both webhook.secret and webhook.login System Properties"
+                + " are mandatory for the webhook!"
+            );
+        }
+        final Map<String, String[]> accounts = source.accounts();
+        final String[] target;
+        if(account.isEmpty()) {
+            final int index = Integer.getInteger("webhook.account", 0);
+            if(index >= accounts.size()) {
+                throw new IllegalStateException(
+                    "The webhook's account (webhook.account) has to be one of"
+                    + " the " + accounts.size() + " accounts!"
+                );
+            }
+            target = new ArrayList<>(accounts.values()).get(index);
+        } else {
+            target = accounts.get(account);
+        }
+        Webhook webhook = null;
+        if(target != null) {
+            webhook = this.webhooks.get(target[0] + ' ' + target[1]);
+            if(webhook == null) {
+                if(this.pushing == null) {
+                    this.pushing = Executors.newFixedThreadPool(
+                        Integer.getInteger("webhook.threads", 2),
+                        FromSystem.daemons("webhook-sender")
+                    );
+                }
+                final PushedNotifications pushed = new PushedNotifications();
+                webhook = new Webhook(
+                    secret, login, this.reason, pushed,
+                    this.sender(pushed, target[0], target[1]),
+                    this.pushing
+                );
+                this.webhooks.put(target[0] + ' ' + target[1], webhook);
+            }
+        }
+        return webhook;
+    }
+
+    /**
+     * Deliveries of an account. If the system property
+     * notifications.dedup.dir is set, they are remembered in a file in that
+     * directory, so they survive restarts; otherwise, only in memory.
+     * They are created once per account.
+     * @param token Github token of the account.
+     * @return Deliveries.
+     */
+    private Deliveries deliveries(final String token) {
+        final String key = FromSystem.key(token);
+        Deliveries deliveries = this.deliveries.get(key);
+        if(deliveries == null) {
+            final String dir = System.getProperty("notifications.dedup.dir", "");
+            deliveries = new RecentDeliveries(FromSystem.DELIVERIES);
+            if(!dir.trim().isEmpty()) {
+                final Path file = Paths.get(dir.trim()).resolve("deliveries-" + key);
+                try {
+                    Files.createDirectories(file.getParent());
+                    deliveries = new FileDeliveries(file, FromSystem.DELIVERIES);
+                } catch (IOException ex) {
+                    throw new IllegalStateException(
+                        "Could not read the deliveries from " + file, ex
+                    );
+                }
+            }
+            this.deliveries.put(key, deliveries);
+        }
+        return deliveries;
+    }
+
+    /**
+     * Cursor of an account, kept in the directory given by the system
+     * property notifications.since.dir.
+     * @param token Github token of the account.
+     * @return Cursor or null if the property is not set.
+     */
+    private static Cursor cursor(final String token) {
+        final String dir = System.getProperty("notifications.since.dir", "").trim();
+        Cursor cursor = null;
+        if(!dir.isEmpty()) {
+            final Path file = Paths.get(dir).resolve("cursor-" + FromSystem.key(token));
+            try {
+                Files.createDirectories(file.getParent());
+                cursor = new FileCursor(file);
+            } catch (IOException ex) {
+                throw new IllegalStateException(
+                    "Could not read the cursor from " + file, ex
+                );
+            }
+        }
+        return cursor;
+    }
+
+    /**
+     * This node's share of the accounts, if the system property
+     * checks.cluster.leases points to a leases file shared by all the nodes.
+     * The node is named by checks.cluster.node (defaults to pid@host) and
+     * its leases last checks.cluster.ttl.seconds (defaults to three check
+     * intervals). The accounts' state moves with them from node to node,
+     * so notifications.dedup.dir and notifications.since.dir (and
+     * post.outbox.dir, if set) are mandatory and have to be on the same
+     * shared volume as the leases.
+     * @return Shard or null if the accounts are not sharded.
+     * @throws IllegalStateException If the state is not kept on the
+     *  volume of the leases.
+     */
+    private static Shard shard() {
+        final String file = System.getProperty("checks.cluster.leases", "").trim();
+        Shard shard = null;
+        if(!file.isEmpty()) {
+            final String node = System.getProperty(
+                "checks.cluster.node",
+                ManagementFactory.getRuntimeMXBean().getName()
+            ).trim().replace(' ', '_');
+            final long ttl = Long.getLong(
+                "checks.cluster.ttl.seconds",
+                3L * 60 * Integer.getInteger("checks.interval.minutes", 2)
+            );
+            final Path leases = Paths.get(file);
+            try {
+                if(leases.getParent() != null) {
+                    Files.createDirectories(leases.getParent());
+                }
+            } catch (IOException ex) {
+                throw new IllegalStateException(
+                    "Could not create the directory of " + leases, ex
+                );
+            }
+            FromSystem.shared(leases, "notifications.dedup.dir", true);
+            FromSystem.shared(leases, "notifications.since.dir", true);
+            FromSystem.shared(leases, "post.outbox.dir", false);
+            shard = new Shard(new FileLeases(leases), node, 1000L * ttl);
+        }
+        return shard;
+    }
+
+    /**
+     * Make sure the directory given by a system property is on the same
+     * volume as the leases file, so every node reads the same state.
+     * @param leases Leases file.
+     * @param property System property naming the directory.
+     * @param mandatory Is the property mandatory?
+     * @throws IllegalStateException If the directory is not set (but
+     *  mandatory), cannot be created or is on another volume.
+     */
+    private static void shared(
+        final Path leases, final String property, final boolean mandatory
+    ) {
+        final String dir = System.getProperty(property, "").trim();
+        if(dir.isEmpty()) {
+            if(mandatory) {
+                throw new IllegalStateException(
+                    property + " is mandatory with checks.cluster.leases,"
+                    + " on the same shared volume!"
+                );
+            }
+        } else {
+            final Path path = Paths.get(dir);
+            try {
+                Files.createDirectories(path);
+                final Path home = leases.toAbsolutePath().getParent();
+                if(!Files.getFileStore(path).equals(Files.getFileStore(home))) {
+                    throw new IllegalStateException(
+                        property + " should be on the same shared volume"
+                        + " as checks.cluster.leases!"
+                    );
+                }
+            } catch (IOException ex) {
+                throw new IllegalStateException(
+                    "Could not check the volume of " + path, ex
+                );
+            }
+        }
+    }
+
+    /**
+     * Outbox of an account, in the given directory.
+     * @param dir Directory of the outboxes.
+     * @param token Github token of the account.
+     * @return Outbox.
+     */
+    private static Outbox outbox(final String dir, final String token) {
+        final Path file = Paths.get(dir).resolve("outbox-" + FromSystem.key(token));
+        try {
+            Files.createDirectories(file.getParent());
+            return new FileOutbox(file);
+        } catch (IOException ex) {
+            throw new IllegalStateException(
+                "Could not read the outbox from " + file, ex
+            );
+        }
+    }
+
+    /**
+     * Factory of daemon threads, for the executors draining the outboxes
+     * (each account drains its outbox on at most one thread at a time)
+     * and marking single threads as read. Being daemons, they don't keep
+     * the server from stopping; whatever is left in the outboxes is
+     * delivered, and whatever was not marked is marked, after the restart.
+     * @param name Name of the threads.
+     * @return ThreadFactory.
+     */
+    private static ThreadFactory daemons(final String name) {
+        return new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable task) {
+                final Thread thread = new Thread(task, name);
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    /**
+     * Key of an account, which can be used in file names. It is derived
+     * from the token, but does not reveal it.
+     * @param token Github token of the account.
+     * @return Hex string.
+     */
+    static String key(final String token) {
+        try {
+            final byte[] hash = MessageDigest.getInstance("SHA-256")
+                .digest(token.getBytes(StandardCharsets.UTF_8));
+            final StringBuilder key = new StringBuilder();
+            for(int idx = 0; idx < 8; idx++) {
+                key.append(String.format("%02x", hash[idx]));
+            }
+            return key.toString();
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Notifications of an account. System property notifications.polling
+     * decides how often Github is actually asked: "smart" (default) skips
+     * a few checks after some empty ones, while "adaptive" follows
+     * Github's X-Poll-Interval and backs off idle accounts. Either way,
+     * checks are also skipped when the account's rate limit runs low.
+     * The budget and the metrics are published through JMX.
+     * @param reason Reason of the notifications we're interested in.
+     * @param backoff Retry policy for marking notifications as read.
+     * @param transport How the requests to Github are sent.
+     * @param threads Executor marking single threads as read; null if
+     *  the notifications are marked as read by last_read_at.
+     * @param cursor Cursor of the account; null to always poll all the
+     *  unread notifications.
+     * @param token Github token of the account.
+     * @return Notifications.
+     */
+    private Notifications notifications(
+        final Reason reason, final Backoff backoff,
+        final Transport transport, final ExecutorService threads,
+        final Cursor cursor, final String token
+    ) {
+        final String account = FromSystem.key(token);
+        final AccountMetrics metrics = this.metrics.account(account);
+        final RateLimit budget = new RateLimit(
+            Integer.getInteger("github.ratelimit.reserve", 500)
+        );
+        this.metrics.publish(budget, "RateLimit", account);
+        final RtNotifications github = new RtNotifications(
+            reason, backoff, transport, budget, metrics,
+            threads, Integer.getInteger("notifications.read.max", 50),
+            cursor, "token " + token,
+            "https://api.github.com/notifications"
+        );
+        final Notifications notifications;
+        if("adaptive".equalsIgnoreCase(System.getProperty("notifications.polling", "smart").trim())) {
+            final AdaptiveNotifications adaptive = new AdaptiveNotifications(github);
+            metrics.watch(adaptive);
+            this.paces.put(account, adaptive);
+            notifications = adaptive;
+        } else {
+            final SmartNotifications smart = new SmartNotifications(github);
+            metrics.watch(smart);
+            notifications = smart;
         }
-        return posts;
+        return new BudgetedNotifications(notifications, budget);
     }
     
 }
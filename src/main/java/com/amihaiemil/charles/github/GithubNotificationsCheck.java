@@ -25,17 +25,30 @@
 package com.amihaiemil.charles.github;
 
 import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.ScheduledExecutorService;
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.annotation.Resource;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
 import javax.ejb.Singleton;
 import javax.ejb.Startup;
 import javax.ejb.Timeout;
 import javax.ejb.TimerService;
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * EJB that checks periodically for github notifications (mentions of the agent using @username).
+ * Its concurrency is managed by the bean itself, so the webhook is never
+ * blocked by a running check; a check which is still running when the
+ * next timeout comes makes that timeout skip.
  * @author Mihai Andronache (amihaiemil@gmail.com)
  * @version $Id: 3d9b4dcc6885f853200060cecd9ce7d0d33ed129 $
  * @since 1.0.0
@@ -43,6 +56,7 @@ import org.slf4j.LoggerFactory;
  */
 @Singleton
 @Startup
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
 public class GithubNotificationsCheck {
 
     /**
@@ -57,20 +71,78 @@ public class GithubNotificationsCheck {
     private TimerService timerService;
 
     /**
-     * Posts of notifications.
+     * Posts of notifications; they are asked for at every check, since
+     * the accounts can change while we're running (accounts.file).
      */
-    private final Post[] posts;
+    private final Posts posts;
+
+    /**
+     * Parallel check, if enabled with the checks.parallel system property.
+     */
+    private volatile ParallelCheck parallel;
+
+    /**
+     * Per-account timers, if enabled with checks.scheduling=account.
+     */
+    private volatile Timers timers;
+
+    /**
+     * Executor created by us, in case the server doesn't offer a
+     * ManagedExecutorService. It has to be shut down when we're done.
+     */
+    private volatile ExecutorService own;
+
+    /**
+     * Is a check running?
+     */
+    private final AtomicBoolean checking = new AtomicBoolean();
+
+    /**
+     * Metrics of the accounts.
+     */
+    private final Metrics metrics;
+
+    /**
+     * Where the Posts come from.
+     */
+    private final FromSystem system;
 
     /**
      * Default Ctor.
      */
     public GithubNotificationsCheck() {
-        this.posts = new FromSystem().posts();
+        final FromSystem system = new FromSystem();
+        final String accounts = System.getProperty("accounts.file", "").trim();
+        if(accounts.isEmpty()) {
+            this.posts = system;
+        } else {
+            try {
+                this.posts = new AccountsFile(Paths.get(accounts), system);
+            } catch (IOException ex) {
+                throw new IllegalStateException(
+                    "Could not read the accounts from " + accounts, ex
+                );
+            }
+        }
+        this.metrics = system.metrics();
+        this.system = system;
+    }
+
+    /**
+     * Metrics of the checked accounts (they are also published through JMX).
+     * @return Metrics.
+     */
+    public Metrics metrics() {
+        return this.metrics;
     }
 
     /**
      * After this bean is constructed the checks are scheduled at a given
-     * interval (minutes).
+     * interval (minutes). If the checks.parallel system property is true
+     * or virtual, the executor for the parallel checks is also set up here.
+     * If checks.scheduling is account, each account is checked by its own
+     * timer, and this interval only decides how often the accounts
+     * themselves are checked for changes.
      */
     @PostConstruct
     public void schedule() {
@@ -84,23 +156,153 @@ public class GithubNotificationsCheck {
                 log.error("NumberFormatException when parsing interval " + checksInterval, ex);
             }
         }
+        final String mode = System.getProperty("checks.parallel", "false").trim();
+        final long timeout = 1000L * Integer.getInteger("checks.account.timeout.seconds", 60);
+        if("account".equalsIgnoreCase(System.getProperty("checks.scheduling", "global").trim())) {
+            this.timers = new Timers(
+                this.scheduler(),
+                new Schedule(String.valueOf(intervalMinutes)),
+                1000L * Integer.getInteger("checks.jitter.seconds", 30)
+            );
+            this.timers.update(this.posts.posts());
+            log.info("Each account will be checked by its own timer!");
+        } else if("virtual".equalsIgnoreCase(mode)) {
+            this.own = new VirtualThreads(
+                Integer.getInteger("checks.parallel.threads", 8)
+            ).executor();
+            this.parallel = new ParallelCheck(this.own, timeout);
+            log.info("The Posts will be checked in parallel, each on its own thread!");
+        } else if(Boolean.parseBoolean(mode)) {
+            this.parallel = new ParallelCheck(this.executor(), timeout);
+            log.info("The Posts will be checked in parallel!");
+        }
         this.timerService.createTimer(1000*60*intervalMinutes, 1000*60*intervalMinutes, null);
     }
 
+    /**
+     * Webhook of one of the checked accounts, sharing its deliveries and
+     * outbox (see FromSystem.webhook(Accounts, String)). The account is
+     * looked up in the same place as the Posts: the system properties or
+     * the accounts file.
+     * @param account Key of the account; empty for the default one.
+     * @return Webhook or null if there is no such account.
+     */
+    public Webhook webhook(final String account) {
+        final Accounts accounts;
+        if(this.posts instanceof Accounts) {
+            accounts = (Accounts) this.posts;
+        } else {
+            accounts = this.system;
+        }
+        return this.system.webhook(accounts, account);
+    }
+
     /**
      * When the timeout occurs, post the notifications from Github somewhere.
      */
     @Timeout
     public void check() {
-        try {
-            for(final Post post : this.posts) {
-                post.send();
+        if(this.checking.compareAndSet(false, true)) {
+            try {
+                final Post[] posts = this.posts.posts();
+                if(this.timers != null) {
+                    this.timers.update(posts);
+                } else if(this.parallel != null) {
+                    this.parallel.check(posts);
+                } else {
+                    for(final Post post : posts) {
+                        try {
+                            post.send();
+                        } catch (IOException e) {
+                            log.error("IOException when checking or sending notifications: ", e);
+                        } catch (AssertionError err) {
+                            log.error("Unexpected status response when checking or sending notifications: ", err);
+                        }
+                    }
+                }
+            } finally {
+                this.checking.set(false);
+            }
+        } else {
+            log.warn("The previous check is still running, skipping this one.");
+        }
+    }
+
+    /**
+     * Stop the per-account timers, shut down the executor, if we created
+     * it, stop watching the accounts file and release the connection pools
+     * and executors shared by the Posts.
+     */
+    @PreDestroy
+    public void stop() {
+        if(this.timers != null) {
+            this.timers.stop();
+        }
+        if(this.own != null) {
+            this.own.shutdownNow();
+        }
+        if(this.posts instanceof AccountsFile) {
+            try {
+                ((AccountsFile) this.posts).close();
+            } catch (IOException ex) {
+                log.warn("Could not stop watching the accounts file.", ex);
             }
-        } catch (IOException e) {
-            log.error("IOException when checking or sending notifications: ", e);
-        } catch (AssertionError err) {
-            log.error("Unexpected status response when checking or sending notifications: ", err);
         }
+        try {
+            this.system.close();
+        } catch (IOException ex) {
+            log.warn("Could not close the connection pools.", ex);
+        }
+    }
+
+    /**
+     * Executor for the parallel checks. The server's default
+     * ManagedExecutorService (Java EE 7) is preferred; if it is not available,
+     * we use our own thread pool, limited by the checks.parallel.threads
+     * system property (defaults to 8).
+     * @return ExecutorService.
+     */
+    private ExecutorService executor() {
+        ExecutorService executor;
+        try {
+            executor = InitialContext.doLookup(
+                "java:comp/DefaultManagedExecutorService"
+            );
+        } catch (NamingException ex) {
+            final int threads = Integer.getInteger("checks.parallel.threads", 8);
+            log.warn(
+                "No ManagedExecutorService found, using a pool of "
+                + threads + " threads."
+            );
+            this.own = Executors.newFixedThreadPool(threads);
+            executor = this.own;
+        }
+        return executor;
     }
-    
+
+    /**
+     * Scheduler for the per-account timers. The server's default
+     * ManagedScheduledExecutorService (Java EE 7) is preferred; if it is not
+     * available, we use our own pool, limited by the checks.parallel.threads
+     * system property (defaults to 8).
+     * @return ScheduledExecutorService.
+     */
+    private ScheduledExecutorService scheduler() {
+        ScheduledExecutorService scheduler;
+        try {
+            scheduler = InitialContext.doLookup(
+                "java:comp/DefaultManagedScheduledExecutorService"
+            );
+        } catch (NamingException ex) {
+            final int threads = Integer.getInteger("checks.parallel.threads", 8);
+            log.warn(
+                "No ManagedScheduledExecutorService found, using a pool of "
+                + threads + " threads."
+            );
+            scheduler = Executors.newScheduledThreadPool(threads);
+            this.own = scheduler;
+        }
+        return scheduler;
+    }
+
 }
@@ -0,0 +1,235 @@
+/*
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of mention-notifications-ejb nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.github;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.cert.X509Certificate;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.http.config.ConnectionConfig;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.HttpConnectionFactory;
+import org.apache.http.conn.ManagedHttpClientConnection;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.NoopHostnameVerifier;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.conn.ssl.TrustStrategy;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.ManagedHttpClientConnectionFactory;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.ssl.SSLContexts;
+
+import com.jcabi.http.Request;
+import com.jcabi.http.request.JdkRequest;
+
+/**
+ * Transport which keeps the connections alive in a pool, so they (and
+ * their TLS sessions) are reused by all the requests to the same host,
+ * instead of opening a new one for each request. When the accounts are
+ * checked in parallel, their polls share at most route connections to
+ * api.github.com; the others wait for a connection to be released.
+ * The connections speak HTTP/1.1, one request at a time: HTTP/2
+ * multiplexing needs a client (e.g. java.net.http) which is not
+ * available on the Java 7 target of this EJB.
+ * The pool's statistics can be published through JMX.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 2.1.0
+ */
+public final class HttpPool
+    implements Transport, Closeable, HttpPoolMXBean {
+
+    /**
+     * Pooled connections.
+     */
+    private final PoolingHttpClientConnectionManager connections;
+
+    /**
+     * Http client using the pool.
+     */
+    private final CloseableHttpClient client;
+
+    /**
+     * Number of requests sent.
+     */
+    private final AtomicLong requests = new AtomicLong();
+
+    /**
+     * Number of connections opened.
+     */
+    private final AtomicLong opened = new AtomicLong();
+
+    /**
+     * Ctor.
+     * @param max Maximum number of connections.
+     * @param route Maximum number of connections to the same host.
+     */
+    public HttpPool(final int max, final int route) {
+        this(max, route, SSLConnectionSocketFactory.getSocketFactory());
+    }
+
+    /**
+     * Ctor.
+     * @param max Maximum number of connections.
+     * @param route Maximum number of connections to the same host.
+     * @param trusted Should any certificate be trusted? This is what
+     *  jcabi's TrustedWire does, e.g. for self-signed endpoints.
+     */
+    public HttpPool(final int max, final int route, final boolean trusted) {
+        this(
+            max, route,
+            trusted ? HttpPool.trustAll()
+                : SSLConnectionSocketFactory.getSocketFactory()
+        );
+    }
+
+    /**
+     * Ctor.
+     * @param max Maximum number of connections.
+     * @param route Maximum number of connections to the same host.
+     * @param ssl Factory of TLS connections.
+     */
+    private HttpPool(
+        final int max, final int route, final SSLConnectionSocketFactory ssl
+    ) {
+        final Registry<ConnectionSocketFactory> sockets = RegistryBuilder
+            .<ConnectionSocketFactory>create()
+            .register("http", PlainConnectionSocketFactory.getSocketFactory())
+            .register("https", ssl)
+            .build();
+        this.connections = new PoolingHttpClientConnectionManager(
+            sockets,
+            new HttpConnectionFactory<HttpRoute, ManagedHttpClientConnection>() {
+                @Override
+                public ManagedHttpClientConnection create(
+                    final HttpRoute host, final ConnectionConfig config
+                ) {
+                    HttpPool.this.opened.incrementAndGet();
+                    return ManagedHttpClientConnectionFactory.INSTANCE.create(
+                        host, config
+                    );
+                }
+            }
+        );
+        this.connections.setMaxTotal(max);
+        this.connections.setDefaultMaxPerRoute(route);
+        this.connections.setValidateAfterInactivity(2000);
+        this.client = HttpClients.custom()
+            .setConnectionManager(this.connections)
+            .disableAutomaticRetries()
+            .disableRedirectHandling()
+            .disableCookieManagement()
+            .build();
+    }
+
+    @Override
+    public Request request(final String uri) {
+        return new JdkRequest(uri).through(PooledWire.class, this);
+    }
+
+    @Override
+    public int getLeased() {
+        return this.stats().getLeased();
+    }
+
+    @Override
+    public int getAvailable() {
+        return this.stats().getAvailable();
+    }
+
+    @Override
+    public int getPending() {
+        return this.stats().getPending();
+    }
+
+    @Override
+    public int getMax() {
+        return this.stats().getMax();
+    }
+
+    @Override
+    public long getOpened() {
+        return this.opened.get();
+    }
+
+    @Override
+    public long getRequests() {
+        return this.requests.get();
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.client.close();
+    }
+
+    /**
+     * Http client using the pool; it counts the request.
+     * @return CloseableHttpClient.
+     */
+    CloseableHttpClient client() {
+        this.requests.incrementAndGet();
+        return this.client;
+    }
+
+    /**
+     * Statistics of the pool.
+     * @return PoolStats.
+     */
+    private PoolStats stats() {
+        return this.connections.getTotalStats();
+    }
+
+    /**
+     * TLS connections which trust any certificate and host.
+     * @return SSLConnectionSocketFactory.
+     */
+    private static SSLConnectionSocketFactory trustAll() {
+        try {
+            return new SSLConnectionSocketFactory(
+                SSLContexts.custom().loadTrustMaterial(
+                    null,
+                    new TrustStrategy() {
+                        @Override
+                        public boolean isTrusted(
+                            final X509Certificate[] chain, final String type
+                        ) {
+                            return true;
+                        }
+                    }
+                ).build(),
+                NoopHostnameVerifier.INSTANCE
+            );
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of mention-notifications-ejb nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.github;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Latency of an operation. The durations are counted in buckets whose
+ * upper bounds are powers of 2 (in milliseconds), so percentiles are
+ * approximated by the upper bound of their bucket, at most twice the
+ * real value; that is enough for capacity planning and costs nothing
+ * but an array of counters.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 2.1.0
+ */
+public final class Latency {
+
+    /**
+     * Number of buckets: up to 2^31 milliseconds.
+     */
+    private static final int BUCKETS = 32;
+
+    /**
+     * Counts per bucket.
+     */
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+    /**
+     * Number of durations recorded.
+     */
+    private final AtomicLong count = new AtomicLong();
+
+    /**
+     * Sum of the durations, in nanoseconds.
+     */
+    private final AtomicLong total = new AtomicLong();
+
+    /**
+     * Longest duration, in nanoseconds.
+     */
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Record the duration of an operation which started at the given time.
+     * @param start Start, as given by System.nanoTime().
+     */
+    public void since(final long start) {
+        this.record(System.nanoTime() - start);
+    }
+
+    /**
+     * Record a duration.
+     * @param nanos Duration in nanoseconds.
+     */
+    public void record(final long nanos) {
+        final long millis = TimeUnit.NANOSECONDS.toMillis(Math.max(0, nanos));
+        final int bucket = Math.min(
+            BUCKETS - 1, 64 - Long.numberOfLeadingZeros(millis)
+        );
+        this.buckets.incrementAndGet(bucket);
+        this.count.incrementAndGet();
+        this.total.addAndGet(nanos);
+        long longest = this.max.get();
+        while(nanos > longest && !this.max.compareAndSet(longest, nanos)) {
+            longest = this.max.get();
+        }
+    }
+
+    /**
+     * Number of durations recorded.
+     * @return Count.
+     */
+    public long getCount() {
+        return this.count.get();
+    }
+
+    /**
+     * Average duration.
+     * @return Milliseconds.
+     */
+    public double getMeanMillis() {
+        final long recorded = this.count.get();
+        double mean = 0;
+        if(recorded > 0) {
+            mean = this.total.get() / 1e6 / recorded;
+        }
+        return mean;
+    }
+
+    /**
+     * Longest duration.
+     * @return Milliseconds.
+     */
+    public double getMaxMillis() {
+        return this.max.get() / 1e6;
+    }
+
+    /**
+     * Median duration (upper bound).
+     * @return Milliseconds.
+     */
+    public long getP50Millis() {
+        return this.percentile(0.5);
+    }
+
+    /**
+     * 99th percentile duration (upper bound).
+     * @return Milliseconds.
+     */
+    public long getP99Millis() {
+        return this.percentile(0.99);
+    }
+
+    /**
+     * Upper bound of the bucket holding the given percentile.
+     * @param rank Percentile between 0 and 1.
+     * @return Milliseconds, 0 if nothing was recorded.
+     */
+    private long percentile(final double rank) {
+        long total = 0;
+        final long[] counts = new long[BUCKETS];
+        for(int idx = 0; idx < BUCKETS; idx++) {
+            counts[idx] = this.buckets.get(idx);
+            total += counts[idx];
+        }
+        long bound = 0;
+        if(total > 0) {
+            final long target = (long) Math.ceil(rank * total);
+            long seen = 0;
+            for(int idx = 0; idx < BUCKETS; idx++) {
+                seen += counts[idx];
+                if(seen >= target) {
+                    bound = (1L << idx) - 1;
+                    break;
+                }
+            }
+        }
+        return bound;
+    }
+}
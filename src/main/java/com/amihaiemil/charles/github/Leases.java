@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of mention-notifications-ejb nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.github;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Leases shared by the nodes checking the notifications. A lease has a
+ * name, a holder (node) and an expiry time; while it didn't expire,
+ * no other node can take it.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 2.1.0
+ */
+public interface Leases {
+
+    /**
+     * Take or renew the lease.
+     * @param name Name of the lease.
+     * @param holder Node taking it.
+     * @param now Current time (millis).
+     * @param ttl For how long (millis) the lease is taken.
+     * @return True if the node holds the lease now, false if another
+     *  node holds it.
+     * @throws IOException If the leases cannot be read or written.
+     */
+    boolean acquire(String name, String holder, long now, long ttl)
+        throws IOException;
+
+    /**
+     * Give up the lease, if it is held by the given node.
+     * @param name Name of the lease.
+     * @param holder Node giving it up.
+     * @throws IOException If the leases cannot be read or written.
+     */
+    void release(String name, String holder) throws IOException;
+
+    /**
+     * Holders of the leases which didn't expire and whose names start
+     * with the given prefix.
+     * @param prefix Prefix of the names.
+     * @param now Current time (millis).
+     * @return Holders.
+     * @throws IOException If the leases cannot be read.
+     */
+    Set<String> holders(String prefix, long now) throws IOException;
+
+    /**
+     * Leases kept in memory, for a single JVM (e.g. tests).
+     */
+    final class InMemory implements Leases {
+
+        /**
+         * Holders, by the name of the lease.
+         */
+        private final Map<String, String> holders = new HashMap<>();
+
+        /**
+         * Expiry times, by the name of the lease.
+         */
+        private final Map<String, Long> expiries = new HashMap<>();
+
+        @Override
+        public synchronized boolean acquire(
+            final String name, final String holder,
+            final long now, final long ttl
+        ) {
+            final String current = this.holders.get(name);
+            final boolean free = current == null || current.equals(holder)
+                || this.expiries.get(name) <= now;
+            if(free) {
+                this.holders.put(name, holder);
+                this.expiries.put(name, now + ttl);
+            }
+            return free;
+        }
+
+        @Override
+        public synchronized void release(final String name, final String holder) {
+            if(holder.equals(this.holders.get(name))) {
+                this.holders.remove(name);
+                this.expiries.remove(name);
+            }
+        }
+
+        @Override
+        public synchronized Set<String> holders(final String prefix, final long now) {
+            final Set<String> holders = new HashSet<>();
+            for(final Map.Entry<String, String> lease : this.holders.entrySet()) {
+                if(lease.getKey().startsWith(prefix)
+                    && this.expiries.get(lease.getKey()) > now) {
+                    holders.add(lease.getValue());
+                }
+            }
+            return holders;
+        }
+    }
+}
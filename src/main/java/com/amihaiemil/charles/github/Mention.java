@@ -26,7 +26,6 @@ package com.amihaiemil.charles.github;
 
 import java.util.ArrayList;
 import java.util.List;
-import javax.json.JsonObject;
 
 /**
  * A notification can have a "mention" reason, meaning
@@ -49,18 +48,14 @@ public final class Mention implements Reason {
      * @param notification Unfiltered notifications.
      */
     @Override
-    public List<JsonObject> filter(List<JsonObject> notifications) {
-        List<JsonObject> filtered = new ArrayList<JsonObject>();
-        for (JsonObject notification : notifications) {
-            if ("mention".equals(notification.getString("reason"))) {
-                JsonObject subject = notification.getJsonObject("subject"); 
-                if (
-                    !subject.getString("url").equals(
-                        subject.getString("latest_comment_url")
-                    )
-                ) {
-                    filtered.add(notification);
-                }
+    public List<Notification> filter(List<Notification> notifications) {
+        List<Notification> filtered = new ArrayList<Notification>();
+        for (Notification notification : notifications) {
+            if (
+                notification.type() == Notification.Type.MENTION
+                && notification.newComment()
+            ) {
+                filtered.add(notification);
             }
         }
         return filtered;
@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of mention-notifications-ejb nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.github;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * In-process registry of the metrics. Everything registered here is
+ * also published through JMX, under the com.amihaiemil.charles domain.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 2.1.0
+ */
+public final class Metrics {
+
+    /**
+     * Logger.
+     */
+    private static final Logger log = LoggerFactory.getLogger(Metrics.class.getName());
+
+    /**
+     * Metrics of the accounts, by account key.
+     */
+    private final ConcurrentMap<String, AccountMetrics> accounts =
+        new ConcurrentHashMap<>();
+
+    /**
+     * Metrics of an account; they are created the first time.
+     * @param account Key of the account.
+     * @return AccountMetrics.
+     */
+    public AccountMetrics account(final String account) {
+        AccountMetrics metrics = this.accounts.get(account);
+        if(metrics == null) {
+            final AccountMetrics created = new AccountMetrics();
+            metrics = this.accounts.putIfAbsent(account, created);
+            if(metrics == null) {
+                metrics = created;
+                this.publish(created, "Account", account);
+            }
+        }
+        return metrics;
+    }
+
+    /**
+     * Metrics of all the accounts.
+     * @return Unmodifiable map of metrics, by account key.
+     */
+    public Map<String, AccountMetrics> accounts() {
+        return Collections.unmodifiableMap(
+            new TreeMap<String, AccountMetrics>(this.accounts)
+        );
+    }
+
+    /**
+     * Publish an MBean through JMX, replacing any previous one with the
+     * same name (e.g. after a redeploy). Failing to publish it is only
+     * logged, the checks work without it.
+     * @param bean MBean.
+     * @param type Type of the MBean.
+     * @param account Key of the account.
+     */
+    public void publish(final Object bean, final String type, final String account) {
+        this.register(
+            bean, "com.amihaiemil.charles:type=" + type + ",account=" + account
+        );
+    }
+
+    /**
+     * Publish the statistics of a connection pool through JMX.
+     * @param pool Connection pool.
+     * @param name Name of the pool (e.g. github).
+     */
+    public void pool(final HttpPoolMXBean pool, final String name) {
+        this.register(pool, "com.amihaiemil.charles:type=HttpPool,name=" + name);
+    }
+
+    /**
+     * Register an MBean, replacing any previous one with the same name.
+     * @param bean MBean.
+     * @param name Object name of the MBean.
+     */
+    private void register(final Object bean, final String name) {
+        try {
+            final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            final ObjectName object = new ObjectName(name);
+            if(server.isRegistered(object)) {
+                server.unregisterMBean(object);
+            }
+            server.registerMBean(bean, object);
+        } catch (JMException ex) {
+            log.warn("Could not register MBean " + name, ex);
+        }
+    }
+}
@@ -0,0 +1,423 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of mention-notifications-ejb nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.github;
+
+import java.text.ParseException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TimeZone;
+import org.apache.commons.lang3.time.FastDateFormat;
+
+/**
+ * A Github notification, with only the information we need: the thread id,
+ * the time of its last update, the reason, the repository, the
+ * issue number and the id of its latest comment. Instances are
+ * immutable and small; the repository names are interned, so all the
+ * notifications from the same repo share the same String.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 2.1.0
+ */
+public final class Notification {
+
+    /**
+     * Format of Github's timestamps.
+     */
+    private static final FastDateFormat TIME = FastDateFormat.getInstance(
+        "yyyy-MM-dd'T'HH:mm:ss'Z'", TimeZone.getTimeZone("UTC")
+    );
+
+    /**
+     * Id of the notification thread.
+     */
+    private final long thread;
+
+    /**
+     * When the thread was last updated (millis since epoch).
+     */
+    private final long updated;
+
+    /**
+     * Reason of the notification.
+     */
+    private final Type type;
+
+    /**
+     * Full name of the repository (e.g. amihaiemil/charles).
+     */
+    private final String repo;
+
+    /**
+     * Number of the issue or pull request; 0 if the subject is
+     * something else (e.g. a commit or a release).
+     */
+    private final int issue;
+
+    /**
+     * Does it point to a new comment?
+     */
+    private final boolean comment;
+
+    /**
+     * Id of the latest comment, 0 if unknown.
+     */
+    private final long latest;
+
+    /**
+     * Ctor, from the fields of a notification as Github sends them.
+     * @param id Thread id.
+     * @param updated Time of the last update (e.g. 2017-03-18T09:22:31Z).
+     * @param reason Reason (e.g. "mention").
+     * @param repo Full name of the repository.
+     * @param url Url of the subject.
+     * @param latest Latest comment url of the subject, might be null.
+     */
+    public Notification(
+        final String id, final String updated, final String reason,
+        final String repo, final String url, final String latest
+    ) {
+        this(
+            Notification.number(id), Notification.time(updated),
+            Type.of(reason), repo, Notification.issue(url),
+            url != null && latest != null && !url.equals(latest),
+            Notification.comment(url, latest)
+        );
+    }
+
+    /**
+     * Ctor.
+     * @param thread Id of the notification thread.
+     * @param updated When the thread was last updated (millis since epoch).
+     * @param type Reason of the notification.
+     * @param repo Full name of the repository.
+     * @param issue Number of the issue.
+     * @param comment Does it point to a new comment?
+     */
+    public Notification(
+        final long thread, final long updated, final Type type,
+        final String repo, final int issue, final boolean comment
+    ) {
+        this(thread, updated, type, repo, issue, comment, 0L);
+    }
+
+    /**
+     * Ctor.
+     * @param thread Id of the notification thread, 0 if unknown.
+     * @param updated When the thread was last updated (millis since epoch).
+     * @param type Reason of the notification.
+     * @param repo Full name of the repository.
+     * @param issue Number of the issue.
+     * @param comment Does it point to a new comment?
+     * @param latest Id of the latest comment, 0 if unknown.
+     */
+    public Notification(
+        final long thread, final long updated, final Type type,
+        final String repo, final int issue, final boolean comment,
+        final long latest
+    ) {
+        this.thread = thread;
+        this.updated = updated;
+        this.type = type;
+        if(repo == null) {
+            this.repo = "";
+        } else {
+            this.repo = repo.intern();
+        }
+        this.issue = issue;
+        this.comment = comment;
+        this.latest = latest;
+    }
+
+    /**
+     * Id of the notification thread.
+     * @return Long id.
+     */
+    public long thread() {
+        return this.thread;
+    }
+
+    /**
+     * When the thread was last updated.
+     * @return Millis since epoch, 0 if unknown.
+     */
+    public long updated() {
+        return this.updated;
+    }
+
+    /**
+     * Reason of the notification.
+     * @return Type.
+     */
+    public Type type() {
+        return this.type;
+    }
+
+    /**
+     * Full name of the repository.
+     * @return String.
+     */
+    public String repo() {
+        return this.repo;
+    }
+
+    /**
+     * Number of the issue or pull request.
+     * @return Issue number or 0 if the subject is not an issue.
+     */
+    public int issue() {
+        return this.issue;
+    }
+
+    /**
+     * Does the notification point to a new comment? This is the case when
+     * the subject's url and latest_comment_url differ. If they are the same,
+     * it is a "subsequent" notification (issue closed, reopened etc).
+     * @return True or false.
+     */
+    public boolean newComment() {
+        return this.comment;
+    }
+
+    /**
+     * Id of the latest comment. A mention received through the webhook
+     * (which doesn't know the thread) and the same mention polled from
+     * Github both have it, so it tells they are the same.
+     * @return Comment id, 0 if the notification doesn't point to a new
+     *  comment or the id is unknown.
+     */
+    public long comment() {
+        return this.latest;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        boolean equal = this == obj;
+        if(!equal && obj instanceof Notification) {
+            final Notification other = (Notification) obj;
+            equal = this.thread == other.thread
+                && this.updated == other.updated
+                && this.type == other.type
+                && this.issue == other.issue
+                && this.comment == other.comment
+                && this.latest == other.latest
+                && this.repo.equals(other.repo);
+        }
+        return equal;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = (int) (this.thread ^ (this.thread >>> 32));
+        hash = 31 * hash + (int) (this.updated ^ (this.updated >>> 32));
+        hash = 31 * hash + this.type.hashCode();
+        hash = 31 * hash + this.repo.hashCode();
+        return 31 * hash + this.issue;
+    }
+
+    @Override
+    public String toString() {
+        return this.repo + "#" + this.issue + " (" + this.type.reason()
+            + ", thread " + this.thread + ")";
+    }
+
+    /**
+     * Issue number at the end of a subject url
+     * (e.g. https://api.github.com/repos/amihaiemil/charles/issues/167).
+     * @param url Url of the subject.
+     * @return Issue number or 0 if the url doesn't end with one.
+     */
+    private static int issue(final String url) {
+        int issue = 0;
+        if(url != null) {
+            final long number = Notification.number(
+                url.substring(url.lastIndexOf('/') + 1)
+            );
+            if(number <= Integer.MAX_VALUE) {
+                issue = (int) number;
+            }
+        }
+        return issue;
+    }
+
+    /**
+     * Id at the end of the latest comment url (e.g.
+     * https://api.github.com/repos/amihaiemil/charles/issues/comments/287551).
+     * @param url Url of the subject.
+     * @param latest Latest comment url of the subject, might be null.
+     * @return Comment id or 0 if there is no new comment.
+     */
+    private static long comment(final String url, final String latest) {
+        long comment = 0;
+        if(latest != null && !latest.equals(url) && latest.contains("/comments/")) {
+            comment = Notification.number(
+                latest.substring(latest.lastIndexOf('/') + 1)
+            );
+        }
+        return comment;
+    }
+
+    /**
+     * Parse a Github timestamp.
+     * @param time Timestamp (e.g. 2017-03-18T09:22:31Z).
+     * @return Millis since epoch or 0 if the timestamp is missing or invalid.
+     */
+    private static long time(final String time) {
+        long millis = 0;
+        if(time != null) {
+            try {
+                millis = TIME.parse(time).getTime();
+            } catch (ParseException ex) {
+                millis = 0;
+            }
+        }
+        return millis;
+    }
+
+    /**
+     * Parse a positive number, without throwing exceptions.
+     * @param text Text to parse.
+     * @return The number or 0 if the text is not a number.
+     */
+    private static long number(final String text) {
+        long number = 0;
+        if(text != null && !text.isEmpty() && text.length() < 19) {
+            for(int idx = 0; idx < text.length(); idx++) {
+                final char digit = text.charAt(idx);
+                if(digit < '0' || digit > '9') {
+                    number = 0;
+                    break;
+                }
+                number = number * 10 + (digit - '0');
+            }
+        }
+        return number;
+    }
+
+    /**
+     * Reasons of Github notifications.
+     */
+    public enum Type {
+
+        /**
+         * You were specifically @mentioned in the content.
+         */
+        MENTION("mention"),
+
+        /**
+         * You were on a team that was mentioned.
+         */
+        TEAM_MENTION("team_mention"),
+
+        /**
+         * You were requested to review a pull request.
+         */
+        REVIEW_REQUESTED("review_requested"),
+
+        /**
+         * You were assigned to the issue.
+         */
+        ASSIGN("assign"),
+
+        /**
+         * You created the thread.
+         */
+        AUTHOR("author"),
+
+        /**
+         * You commented on the thread.
+         */
+        COMMENT("comment"),
+
+        /**
+         * You accepted an invitation to contribute to the repository.
+         */
+        INVITATION("invitation"),
+
+        /**
+         * You subscribed to the thread (via an issue or pull request).
+         */
+        MANUAL("manual"),
+
+        /**
+         * You changed the thread state (for example, closing an issue).
+         */
+        STATE_CHANGE("state_change"),
+
+        /**
+         * You're watching the repository.
+         */
+        SUBSCRIBED("subscribed"),
+
+        /**
+         * Any other reason.
+         */
+        OTHER("other");
+
+        /**
+         * Types by their reason, for fast look-up.
+         */
+        private static final Map<String, Type> REASONS = new HashMap<>();
+
+        static {
+            for(final Type type : Type.values()) {
+                REASONS.put(type.reason, type);
+            }
+        }
+
+        /**
+         * Reason, as sent by Github.
+         */
+        private final String reason;
+
+        /**
+         * Ctor.
+         * @param reason Reason, as sent by Github.
+         */
+        Type(final String reason) {
+            this.reason = reason;
+        }
+
+        /**
+         * Reason, as sent by Github.
+         * @return String.
+         */
+        public String reason() {
+            return this.reason;
+        }
+
+        /**
+         * Type of the given reason.
+         * @param reason Reason, as sent by Github.
+         * @return Type, OTHER if the reason is unknown.
+         */
+        public static Type of(final String reason) {
+            Type type = REASONS.get(reason);
+            if(type == null) {
+                type = OTHER;
+            }
+            return type;
+        }
+    }
+}
@@ -28,9 +28,6 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
-import javax.json.Json;
-import javax.json.JsonObject;
-
 /**
  * Github notifications.
  * @author Mihai Andronache (amihaiemil@gmail.com)
@@ -41,10 +38,10 @@ public interface Notifications {
 
     /**
      * Fetch them.
-     * @return List of json notifications.
+     * @return List of notifications.
      * @throws IOException if something goes wrong.
      */
-    List<JsonObject> fetch() throws IOException;
+    List<Notification> fetch() throws IOException;
 
     /**
      * Mark them as read.
@@ -52,20 +49,35 @@ public interface Notifications {
      */
     void markAsRead() throws IOException;
 
+    /**
+     * Mark the given notifications (previously fetched) as read.
+     * Implementations which cannot mark single notifications mark
+     * everything fetched so far, as {@link #markAsRead()} does.
+     * @param notifications Notifications to mark as read.
+     * @throws IOException if something goes wrong.
+     */
+    void markAsRead(List<Notification> notifications) throws IOException;
+
     /**
      * No notifications; used for unit tests.
      */
     final static class FakeEmptyNotifications implements Notifications {
 
         @Override
-        public List<JsonObject> fetch() throws IOException {
-            return new ArrayList<JsonObject>();
+        public List<Notification> fetch() throws IOException {
+            return new ArrayList<Notification>();
         }
 
         @Override
         public void markAsRead() throws IOException {
             //nothing to do.            
         }
+
+        @Override
+        public void markAsRead(final List<Notification> notifications)
+            throws IOException {
+            this.markAsRead();
+        }
     }
     
     /**
@@ -74,7 +86,7 @@ public interface Notifications {
     final static class FakeErrorOnMarkRead implements Notifications {
 
         @Override
-        public List<JsonObject> fetch() throws IOException {
+        public List<Notification> fetch() throws IOException {
             return new Notifications.FakeOtherNotifications().fetch();
         }
 
@@ -82,6 +94,12 @@ public interface Notifications {
         public void markAsRead() throws IOException {
             throw new IllegalStateException ("Exception while marking as read...");
         }
+
+        @Override
+        public void markAsRead(final List<Notification> notifications)
+            throws IOException {
+            this.markAsRead();
+        }
     }
 
     /**
@@ -90,8 +108,8 @@ public interface Notifications {
     final static class FakeNotificationsWithMentions implements Notifications {
 
         @Override
-        public List<JsonObject> fetch() throws IOException {
-            final List<JsonObject> notifications = new ArrayList<JsonObject>();
+        public List<Notification> fetch() throws IOException {
+            final List<Notification> notifications = new ArrayList<Notification>();
             notifications.add(
                 this.mockNotification(
                     "fork", "/url/here/qwe/1",
@@ -124,32 +142,29 @@ public interface Notifications {
             //nothing to do.            
         }
 
+        @Override
+        public void markAsRead(final List<Notification> notifications)
+            throws IOException {
+            this.markAsRead();
+        }
+
         /**
-         * Mock a notification json for unit tests.
+         * Mock a notification for unit tests.
          * @param reason Reason of it.
          * @param url Url
          * @param lastCommentUrl Last comment url.
          * @param repoFullName Repo name e.g. amihaiemil/eva
-         * @return Json object.
+         * @return Notification.
          */
-        private JsonObject mockNotification(
+        private Notification mockNotification(
             final String reason, final String url,
             final String lastCommentUrl, final String repoFullName
         ) {
-            return Json.createObjectBuilder()
-                .add("reason", reason)
-                .add(
-                    "subject",
-                    Json.createObjectBuilder()
-                        .add("url", url)
-                        .add("latest_comment_url", lastCommentUrl)
-                        .build()
-                ).add(
-                    "repository",
-                    Json.createObjectBuilder()
-                        .add("full_name", repoFullName)
-                        .build()
-                ).build();
+            return new Notification(
+                String.valueOf(url.hashCode() & Integer.MAX_VALUE),
+                "2017-03-18T09:22:31Z",
+                reason, repoFullName, url, lastCommentUrl
+            );
         }
     }
 
@@ -159,8 +174,8 @@ public interface Notifications {
     final static class FakeOtherNotifications implements Notifications {
 
         @Override
-        public List<JsonObject> fetch() throws IOException {
-            final List<JsonObject> notifications = new ArrayList<JsonObject>();
+        public List<Notification> fetch() throws IOException {
+            final List<Notification> notifications = new ArrayList<Notification>();
             notifications.add(
                 this.mockNotification(
                     "fork", "/url/here/4",
@@ -186,33 +201,30 @@ public interface Notifications {
         public void markAsRead() throws IOException {
             //nothing to do.            
         }
+
+        @Override
+        public void markAsRead(final List<Notification> notifications)
+            throws IOException {
+            this.markAsRead();
+        }
         
         /**
-         * Mock a notification json for unit tests.
+         * Mock a notification for unit tests.
          * @param reason Reason of it.
          * @param url Url
          * @param lastCommentUrl Last comment url.
          * @param repoFullName Repo name e.g. amihaiemil/eva
-         * @return Json object.
+         * @return Notification.
          */
-        private JsonObject mockNotification(
+        private Notification mockNotification(
             final String reason, final String url,
             final String lastCommentUrl, final String repoFullName
         ) {
-            return Json.createObjectBuilder()
-                .add("reason", reason)
-                .add(
-                    "subject",
-                    Json.createObjectBuilder()
-                        .add("url", url)
-                        .add("latest_comment_url", lastCommentUrl)
-                        .build()
-                ).add(
-                    "repository",
-                    Json.createObjectBuilder()
-                        .add("full_name", repoFullName)
-                        .build()
-                ).build();
+            return new Notification(
+                String.valueOf(url.hashCode() & Integer.MAX_VALUE),
+                "2017-03-18T09:22:31Z",
+                reason, repoFullName, url, lastCommentUrl
+            );
         }
     }
 }
@@ -24,15 +24,20 @@
  */
 package com.amihaiemil.charles.github;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.net.HttpURLConnection;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
 import javax.json.Json;
 import javax.json.JsonArray;
 import javax.json.JsonArrayBuilder;
 import javax.json.JsonObject;
 
-import com.jcabi.http.wire.TrustedWire;
 import org.hamcrest.Matchers;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -58,7 +63,54 @@ public class NtPost extends AuthorizedRequest implements Post {
     private Notifications notifications;
 
     /**
-     * Ctor.
+     * Notifications which were delivered already.
+     */
+    private Deliveries deliveries;
+
+    /**
+     * Maximum number of notifications sent in one request.
+     */
+    private int count;
+
+    /**
+     * Maximum size, in bytes, of the json sent in one request. A
+     * notification which is bigger than this is still sent, alone.
+     */
+    private int bytes;
+
+    /**
+     * Retry policy for posting the notifications.
+     */
+    private Backoff backoff;
+
+    /**
+     * Metrics of the account.
+     */
+    private AccountMetrics metrics;
+
+    /**
+     * Outbox of the packed notifications; null if they are sent right
+     * after they are fetched.
+     */
+    private Outbox outbox;
+
+    /**
+     * Executor delivering the parcels from the outbox.
+     */
+    private Executor drainer;
+
+    /**
+     * Lock of the fetching and the marking as read, when there is an outbox.
+     */
+    private final Object lock = new Object();
+
+    /**
+     * Notifications fetched since they were last marked as read, by thread.
+     */
+    private final Map<Long, Notification> unread = new LinkedHashMap<>();
+
+    /**
+     * Ctor. The last 1000 deliveries are remembered in memory.
      * @param notifications Notifications for this Post to send.
      * @param token Token used with this request.
      * @param endpoint Rest POST endpoint to send these notifications to.
@@ -66,61 +118,437 @@ public class NtPost extends AuthorizedRequest implements Post {
     public NtPost(
         Notifications notifications, String token, String endpoint
     ) {
-        super(token, endpoint);
+        this(notifications, new RecentDeliveries(1000), token, endpoint);
+    }
+
+    /**
+     * Ctor.
+     * @param notifications Notifications for this Post to send.
+     * @param deliveries Notifications which were delivered already; they
+     *  are not sent again.
+     * @param token Token used with this request.
+     * @param endpoint Rest POST endpoint to send these notifications to.
+     */
+    public NtPost(
+        Notifications notifications, Deliveries deliveries,
+        String token, String endpoint
+    ) {
+        this(
+            notifications, deliveries, Integer.MAX_VALUE, Integer.MAX_VALUE,
+            token, endpoint
+        );
+    }
+
+    /**
+     * Ctor. Notifications are sent in chunks, each acknowledged separately;
+     * they are marked as read only after all the chunks are delivered.
+     * @param notifications Notifications for this Post to send.
+     * @param deliveries Notifications which were delivered already; they
+     *  are not sent again.
+     * @param count Maximum number of notifications sent in one request.
+     * @param bytes Maximum size, in bytes, of the json sent in one request.
+     * @param token Token used with this request.
+     * @param endpoint Rest POST endpoint to send these notifications to.
+     */
+    public NtPost(
+        Notifications notifications, Deliveries deliveries,
+        int count, int bytes, String token, String endpoint
+    ) {
+        this(
+            notifications, deliveries, count, bytes, Backoff.NONE,
+            token, endpoint
+        );
+    }
+
+    /**
+     * Ctor. Failed posts are retried according to the given Backoff.
+     * @param notifications Notifications for this Post to send.
+     * @param deliveries Notifications which were delivered already; they
+     *  are not sent again.
+     * @param count Maximum number of notifications sent in one request.
+     * @param bytes Maximum size, in bytes, of the json sent in one request.
+     * @param backoff Retry policy for posting the notifications.
+     * @param token Token used with this request.
+     * @param endpoint Rest POST endpoint to send these notifications to.
+     */
+    public NtPost(
+        Notifications notifications, Deliveries deliveries,
+        int count, int bytes, Backoff backoff, String token, String endpoint
+    ) {
+        this(
+            notifications, deliveries, count, bytes, backoff,
+            new Transport.Trusted(new Transport.Jdk()), token, endpoint
+        );
+    }
+
+    /**
+     * Ctor.
+     * @param notifications Notifications for this Post to send.
+     * @param deliveries Notifications which were delivered already; they
+     *  are not sent again.
+     * @param count Maximum number of notifications sent in one request.
+     * @param bytes Maximum size, in bytes, of the json sent in one request.
+     * @param backoff Retry policy for posting the notifications.
+     * @param transport How the notifications are posted.
+     * @param token Token used with this request.
+     * @param endpoint Rest POST endpoint to send these notifications to.
+     */
+    public NtPost(
+        Notifications notifications, Deliveries deliveries,
+        int count, int bytes, Backoff backoff, Transport transport,
+        String token, String endpoint
+    ) {
+        this(
+            notifications, deliveries, count, bytes, backoff, transport,
+            new AccountMetrics(), token, endpoint
+        );
+    }
+
+    /**
+     * Ctor.
+     * @param notifications Notifications for this Post to send.
+     * @param deliveries Notifications which were delivered already; they
+     *  are not sent again.
+     * @param count Maximum number of notifications sent in one request.
+     * @param bytes Maximum size, in bytes, of the json sent in one request.
+     * @param backoff Retry policy for posting the notifications.
+     * @param transport How the notifications are posted.
+     * @param metrics Metrics of the account.
+     * @param token Token used with this request.
+     * @param endpoint Rest POST endpoint to send these notifications to.
+     */
+    public NtPost(
+        Notifications notifications, Deliveries deliveries,
+        int count, int bytes, Backoff backoff, Transport transport,
+        AccountMetrics metrics, String token, String endpoint
+    ) {
+        this(
+            notifications, deliveries, count, bytes, backoff,
+            transport, metrics, null, null, token, endpoint
+        );
+    }
+
+    /**
+     * Ctor. The fetched notifications are packed and put in the outbox,
+     * from where the drainer delivers them in the background, so a slow
+     * or failing endpoint doesn't hold up the polling. They are marked as
+     * read on Github after the outbox is emptied.
+     * @param notifications Notifications for this Post to send.
+     * @param deliveries Notifications which were delivered already.
+     * @param count Maximum number of notifications sent in one request.
+     * @param bytes Maximum size, in bytes, of the json sent in one request.
+     * @param backoff Retry policy for posting the notifications.
+     * @param transport How the notifications are posted. It has to trust
+     *  the endpoint's certificate, if needed (see {@link Transport.Trusted}
+     *  and {@link HttpPool}).
+     * @param metrics Metrics of the account.
+     * @param outbox Outbox of the packed notifications.
+     * @param drainer Executor delivering the parcels from the outbox.
+     * @param token Token used with this request.
+     * @param endpoint Rest POST endpoint to send these notifications to.
+     */
+    public NtPost(
+        Notifications notifications, Deliveries deliveries,
+        int count, int bytes, Backoff backoff, Transport transport,
+        AccountMetrics metrics, Outbox outbox, Executor drainer,
+        String token, String endpoint
+    ) {
+        super(token, endpoint, transport);
         this.notifications = notifications;
+        this.deliveries = deliveries;
+        this.count = count;
+        this.bytes = bytes;
+        this.backoff = backoff;
+        this.metrics = metrics;
+        this.outbox = outbox;
+        this.drainer = drainer;
     }
 
     @Override
     public void send() throws IOException {
-    	List<JsonObject> notifications = this.notifications.fetch();
+        if(this.outbox != null) {
+            this.enqueue();
+            return;
+        }
+        List<Notification> fetched = this.notifications.fetch();
+        List<Notification> notifications = new ArrayList<Notification>();
+        for(Notification notification : fetched) {
+            if(!this.deliveries.delivered(notification)) {
+                notifications.add(notification);
+            }
+        }
         if(!notifications.isEmpty()) {
-        	JsonArray parcel = this.pack(notifications);
-            log.info("Sending notifications to " + this.request().uri().toString() + " ...");
-            int status = this.request()
-                .method(Request.POST)
-                .body().set(parcel).back()
-                .through(TrustedWire.class)
-                .fetch()
-                .as(RestResponse.class)
-                .assertStatus(
-                    Matchers.isOneOf(
-                        HttpURLConnection.HTTP_OK,
-                        HttpURLConnection.HTTP_UNAUTHORIZED
-                    )
-                ).status();
+            log.info("Fetched " + notifications.size() + " notifications from Github.");
+            final List<Chunk> chunks = this.chunks(notifications);
+            int status = HttpURLConnection.HTTP_OK;
+            for(int idx = 0; idx < chunks.size() && status == HttpURLConnection.HTTP_OK; idx++) {
+                final Chunk chunk = chunks.get(idx);
+                status = this.post(chunk.json);
+                if(status == HttpURLConnection.HTTP_OK) {
+                    log.info(
+                        "Chunk " + (idx + 1) + "/" + chunks.size() + ": "
+                        + chunk.notifications.size() + " notifications sent successfully!"
+                    );
+                    this.metrics.sent(chunk.notifications.size());
+                    this.delivered(chunk.notifications);
+                } else {
+                    this.metrics.failed();
+                }
+            }
             if(status == HttpURLConnection.HTTP_OK) {
-                log.info(notifications.size() + " notifications sent successfully! Marking notifications as read...");
-                this.notifications.markAsRead();
+                log.info("Marking notifications as read...");
+                this.notifications.markAsRead(fetched);
                 log.info(notifications.size() + " notifications marked as read!");
             } else {
                 log.error("Could not send notifications, got response status: " + status);
             }
+        } else if(!fetched.isEmpty()) {
+            log.info(
+                "All " + fetched.size() + " notifications were delivered "
+                + "before, marking them as read..."
+            );
+            this.notifications.markAsRead(fetched);
         } else {
             log.info("No notifications to send");
         }
     }
 
+    /**
+     * Post a parcel of notifications.
+     * @param parcel Packed notifications.
+     * @return Status of the response, 200 or 401.
+     * @throws IOException If something goes wrong.
+     */
+    private int post(byte[] parcel) throws IOException {
+        final long start = System.nanoTime();
+        try {
+            return this.attempt(parcel);
+        } catch (IOException | AssertionError ex) {
+            this.metrics.failed();
+            throw ex;
+        } finally {
+            this.metrics.getPost().since(start);
+        }
+    }
+
+    /**
+     * Send the parcel to the endpoint.
+     * @param parcel Packed notifications.
+     * @return Status of the response, 200 or 401.
+     * @throws IOException If something goes wrong.
+     */
+    private int attempt(byte[] parcel) throws IOException {
+        Request request = this.request();
+        log.info("Sending notifications to " + request.uri().toString() + " ...");
+        return request
+            .method(Request.POST)
+            .body().set(parcel).back()
+            .through(BackoffWire.class, this.backoff)
+            .fetch()
+            .as(RestResponse.class)
+            .assertStatus(
+                Matchers.isOneOf(
+                    HttpURLConnection.HTTP_OK,
+                    HttpURLConnection.HTTP_UNAUTHORIZED
+                )
+            ).status();
+    }
+
+    /**
+     * Fetch the notifications, put the new ones in the outbox, packed,
+     * and start draining it.
+     * @throws IOException If the notifications cannot be fetched or stored.
+     */
+    private void enqueue() throws IOException {
+        synchronized (this.lock) {
+            final List<Notification> fetched = this.notifications.fetch();
+            final List<Notification> fresh = new ArrayList<>();
+            for(final Notification notification : fetched) {
+                if(!this.deliveries.delivered(notification)
+                    && !this.outbox.queued(notification)) {
+                    fresh.add(notification);
+                }
+            }
+            if(!fresh.isEmpty()) {
+                for(final Chunk chunk : this.chunks(fresh)) {
+                    this.outbox.add(chunk.json, chunk.notifications);
+                }
+                log.info(fresh.size() + " notifications put in the outbox.");
+            }
+            for(final Notification notification : fetched) {
+                this.unread.put(notification.thread(), notification);
+            }
+        }
+        if(this.outbox.claim()) {
+            boolean started = false;
+            try {
+                this.drainer.execute(
+                    new Runnable() {
+                        @Override
+                        public void run() {
+                            try {
+                                NtPost.this.drain();
+                            } catch (IOException ex) {
+                                log.error("IOException when draining the outbox: ", ex);
+                            } catch (AssertionError err) {
+                                log.error("Unexpected status response when draining the outbox: ", err);
+                            } finally {
+                                NtPost.this.outbox.release();
+                            }
+                        }
+                    }
+                );
+                started = true;
+            } finally {
+                if(!started) {
+                    this.outbox.release();
+                }
+            }
+        }
+    }
+
+    /**
+     * Deliver the parcels from the outbox, oldest first, stopping at the
+     * first one which the endpoint doesn't accept. Once the outbox is
+     * empty, the notifications are marked as read.
+     * @throws IOException If something goes wrong.
+     */
+    private void drain() throws IOException {
+        Outbox.Parcel parcel = this.outbox.next();
+        int status = HttpURLConnection.HTTP_OK;
+        while(parcel != null && status == HttpURLConnection.HTTP_OK) {
+            status = this.post(parcel.json());
+            if(status == HttpURLConnection.HTTP_OK) {
+                this.metrics.sent(parcel.notifications().size());
+                this.delivered(parcel.notifications());
+                this.outbox.ack(parcel);
+                parcel = this.outbox.next();
+            } else {
+                this.metrics.failed();
+                log.error("Could not send parcel " + parcel.id() + ", got response status: " + status);
+            }
+        }
+        synchronized (this.lock) {
+            if(!this.unread.isEmpty() && this.outbox.next() == null) {
+                log.info("Outbox is empty, marking notifications as read...");
+                this.notifications.markAsRead(
+                    new ArrayList<>(this.unread.values())
+                );
+                this.unread.clear();
+            }
+        }
+    }
+
+    /**
+     * Pack the notifications in chunks, none of them having more than
+     * count notifications or, packed, more than the given bytes. Each
+     * notification is packed once: its json is measured and then copied
+     * into its chunk. Without limits, they are all packed in one chunk.
+     * @param notifications Notifications to pack.
+     * @return Chunks, in the original order.
+     */
+    private List<Chunk> chunks(List<Notification> notifications) {
+        final long packing = System.nanoTime();
+        final List<Chunk> chunks = new ArrayList<>();
+        if(this.count == Integer.MAX_VALUE && this.bytes == Integer.MAX_VALUE) {
+            chunks.add(
+                new Chunk(
+                    notifications,
+                    NtPost.pack(notifications).toString().getBytes(StandardCharsets.UTF_8)
+                )
+            );
+        } else {
+            List<Notification> chunk = new ArrayList<>();
+            ByteArrayOutputStream json = new ByteArrayOutputStream();
+            json.write('[');
+            for(final Notification notification : notifications) {
+                final byte[] packed = NtPost.pack(notification).toString()
+                    .getBytes(StandardCharsets.UTF_8);
+                if(!chunk.isEmpty() && (chunk.size() >= this.count
+                    || (long) json.size() + packed.length + 2 > this.bytes)) {
+                    json.write(']');
+                    chunks.add(new Chunk(chunk, json.toByteArray()));
+                    chunk = new ArrayList<>();
+                    json = new ByteArrayOutputStream();
+                    json.write('[');
+                }
+                if(!chunk.isEmpty()) {
+                    json.write(',');
+                }
+                json.write(packed, 0, packed.length);
+                chunk.add(notification);
+            }
+            json.write(']');
+            chunks.add(new Chunk(chunk, json.toByteArray()));
+        }
+        this.metrics.getPack().since(packing);
+        return chunks;
+    }
+
+    /**
+     * Remember the delivered notifications. If this fails, we only log it:
+     * the notifications were delivered and should still be marked as read.
+     * @param notifications Delivered notifications.
+     */
+    private void delivered(List<Notification> notifications) {
+        try {
+            this.deliveries.add(notifications);
+        } catch (IOException ex) {
+            log.error("Could not remember the delivered notifications", ex);
+        }
+    }
+
     /**
      * Take a list of Github Notifications and "pack" them (simplify them,
      * only take the repo name and issue number, and put them in a JsonArray).
      * @param notifications Github json notifications.
      * @return JsonArray to be sent out.
      */
-    private JsonArray pack(List<JsonObject> notifications) {
-        log.info("Fetched " + notifications.size() + " notifications from Github.");
+    static JsonArray pack(final List<Notification> notifications) {
         log.info("Simplifying notifications, we ony need the repo name and issue number...");
         JsonArrayBuilder parcel = Json.createArrayBuilder();
-        for(JsonObject notification : notifications) {
-            JsonObject subject = notification.getJsonObject("subject");
-            String issueUrl = subject.getString("url");
-            parcel.add(
-                Json.createObjectBuilder()
-                    .add("repoFullName", notification.getJsonObject("repository").getString("full_name"))
-                    .add("issueNumber", Integer.parseInt(issueUrl.substring(issueUrl.lastIndexOf("/") + 1)))
-                    .build()
-            );
+        for(Notification notification : notifications) {
+            parcel.add(NtPost.pack(notification));
         }
         log.info("Done; notifications are packed and ready to be sent.");
         return parcel.build();
     }
+
+    /**
+     * Notifications sent in one request, with their json.
+     */
+    private static final class Chunk {
+
+        /**
+         * Notifications.
+         */
+        private final List<Notification> notifications;
+
+        /**
+         * The notifications, packed.
+         */
+        private final byte[] json;
+
+        /**
+         * Ctor.
+         * @param notifications Notifications.
+         * @param json The notifications, packed.
+         */
+        Chunk(final List<Notification> notifications, final byte[] json) {
+            this.notifications = notifications;
+            this.json = json;
+        }
+    }
+
+    /**
+     * Pack one notification.
+     * @param notification Notification.
+     * @return JsonObject with the repo name and issue number.
+     */
+    private static JsonObject pack(Notification notification) {
+        return Json.createObjectBuilder()
+            .add("repoFullName", notification.repo())
+            .add("issueNumber", notification.issue())
+            .build();
+    }
 }
@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of mention-notifications-ejb nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.github;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Parcels of packed notifications waiting to be delivered. A parcel is
+ * added right after the notifications are fetched and stays in the
+ * outbox until the endpoint acknowledges it, so sending can be done
+ * separately from polling Github, and retried.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 2.1.0
+ */
+public interface Outbox {
+
+    /**
+     * Add a parcel.
+     * @param json The packed notifications, as they will be sent.
+     * @param notifications The notifications in the parcel.
+     * @throws IOException If the parcel cannot be stored.
+     */
+    void add(byte[] json, List<Notification> notifications) throws IOException;
+
+    /**
+     * Is this notification waiting in a parcel already? As with
+     * {@link Deliveries}, it is not if it was updated since.
+     * @param notification Notification.
+     * @return True or false.
+     */
+    boolean queued(Notification notification);
+
+    /**
+     * The oldest parcel which was not acknowledged yet.
+     * @return Parcel or null if the outbox is empty.
+     */
+    Parcel next();
+
+    /**
+     * Remove the parcel: it was delivered.
+     * @param parcel Delivered parcel.
+     * @throws IOException If the acknowledgement cannot be stored.
+     */
+    void ack(Parcel parcel) throws IOException;
+
+    /**
+     * Claim the outbox for draining. An outbox is drained by one
+     * drainer at a time, even if several Posts share it.
+     * @return True if it was claimed, false if it is being drained already.
+     */
+    boolean claim();
+
+    /**
+     * Give up the claim taken with {@link #claim()}.
+     */
+    void release();
+
+    /**
+     * A parcel of packed notifications.
+     */
+    final class Parcel {
+
+        /**
+         * Id of the parcel, unique in its outbox.
+         */
+        private final long id;
+
+        /**
+         * The packed notifications.
+         */
+        private final byte[] json;
+
+        /**
+         * The notifications.
+         */
+        private final List<Notification> notifications;
+
+        /**
+         * Ctor.
+         * @param id Id of the parcel, unique in its outbox.
+         * @param json The packed notifications.
+         * @param notifications The notifications.
+         */
+        public Parcel(
+            final long id, final byte[] json,
+            final List<Notification> notifications
+        ) {
+            this.id = id;
+            this.json = json.clone();
+            this.notifications = Collections.unmodifiableList(notifications);
+        }
+
+        /**
+         * Id of the parcel.
+         * @return Id.
+         */
+        public long id() {
+            return this.id;
+        }
+
+        /**
+         * The packed notifications, as they are sent.
+         * @return Json bytes.
+         */
+        public byte[] json() {
+            return this.json.clone();
+        }
+
+        /**
+         * The notifications in the parcel.
+         * @return Notifications.
+         */
+        public List<Notification> notifications() {
+            return this.notifications;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of mention-notifications-ejb nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.github;
+
+import java.io.IOException;
+
+/**
+ * Post of an account whose polling strategy decides when it is checked
+ * next (e.g. {@link AdaptiveNotifications}, following X-Poll-Interval).
+ * With per-account timers, unless the account has its own Schedule, the
+ * Post is sent again when the Polling says, instead of at the default
+ * interval (see Timers).
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 2.1.0
+ */
+public final class PacedPost implements Post {
+
+    /**
+     * Original Post.
+     */
+    private final Post origin;
+
+    /**
+     * Polling of the account.
+     */
+    private final Polling pace;
+
+    /**
+     * Ctor.
+     * @param origin Original Post.
+     * @param pace Polling of the account.
+     */
+    public PacedPost(final Post origin, final Polling pace) {
+        this.origin = origin;
+        this.pace = pace;
+    }
+
+    /**
+     * When should it be sent next?
+     * @return Time (millis since epoch) or 0 if the Polling doesn't say.
+     */
+    public long next() {
+        return this.pace.next();
+    }
+
+    @Override
+    public void send() throws IOException {
+        this.origin.send();
+    }
+}
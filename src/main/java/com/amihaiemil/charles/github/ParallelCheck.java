@@ -0,0 +1,196 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of mention-notifications-ejb nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.github;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Check which sends all the Posts in parallel, on the given executor.
+ * Every Post is isolated: if one fails or takes longer than the timeout,
+ * the others are not affected. A Post which is still running from a
+ * previous check (e.g. hanging on a slow endpoint) is not sent again until
+ * it finishes.<br><br>
+ * Each call of {@link #check(Post[])} is the scope of its Posts: they
+ * start together, are joined against one deadline and the late ones are
+ * cancelled. The executor itself lives longer than a check, on purpose:
+ * closing a per-check executor waits for all its tasks, so one Post
+ * stuck in a read which ignores the interrupt (platform threads) would
+ * stretch the tick past its deadline. Virtual threads are not pooled
+ * anyway, so a per-check executor would not save any threads.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 2.1.0
+ */
+public final class ParallelCheck {
+
+    /**
+     * Logger.
+     */
+    private static final Logger log = LoggerFactory.getLogger(ParallelCheck.class.getName());
+
+    /**
+     * Executor running the Posts.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * Milliseconds each Post has to finish.
+     */
+    private final long timeout;
+
+    /**
+     * Posts which are still running.
+     */
+    private final Set<Post> running = Collections.newSetFromMap(
+        new ConcurrentHashMap<Post, Boolean>()
+    );
+
+    /**
+     * Ctor.
+     * @param executor Executor running the Posts.
+     * @param timeout Milliseconds each Post has to finish.
+     */
+    public ParallelCheck(final ExecutorService executor, final long timeout) {
+        this.executor = executor;
+        this.timeout = timeout;
+    }
+
+    /**
+     * Send all the given posts and wait for them to finish. The wait lasts
+     * at most as long as the timeout, since all the Posts start at the
+     * same time.
+     * @param posts Posts to send.
+     */
+    public void check(final Post[] posts) {
+        final long deadline = System.currentTimeMillis() + this.timeout;
+        final List<Future<?>> sent = new ArrayList<>();
+        final List<Send> sends = new ArrayList<>();
+        for(int idx = 0; idx < posts.length; idx++) {
+            final Post post = posts[idx];
+            if(this.running.add(post)) {
+                final Send send = new Send(post, idx);
+                sends.add(send);
+                sent.add(this.executor.submit(send));
+            } else {
+                log.warn("Post #" + idx + " is still running from a previous check, skipping it.");
+                sends.add(null);
+                sent.add(null);
+            }
+        }
+        for(int idx = 0; idx < sent.size(); idx++) {
+            final Future<?> future = sent.get(idx);
+            if(future != null) {
+                try {
+                    future.get(
+                        Math.max(0, deadline - System.currentTimeMillis()),
+                        TimeUnit.MILLISECONDS
+                    );
+                } catch (TimeoutException ex) {
+                    log.error("Post #" + idx + " did not finish in " + this.timeout + "ms, cancelling it.");
+                    future.cancel(true);
+                    sends.get(idx).abandon();
+                } catch (ExecutionException ex) {
+                    log.error("Unexpected error in Post #" + idx, ex.getCause());
+                } catch (InterruptedException ex) {
+                    log.warn("Interrupted while waiting for the Posts to finish.");
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Task sending one Post.
+     */
+    private final class Send implements Runnable {
+
+        /**
+         * Post to send.
+         */
+        private final Post post;
+
+        /**
+         * Index of the Post, for logging.
+         */
+        private final int idx;
+
+        /**
+         * Did it start, or was it abandoned before starting?
+         */
+        private final AtomicBoolean claimed = new AtomicBoolean();
+
+        /**
+         * Ctor.
+         * @param post Post to send.
+         * @param idx Index of the Post, for logging.
+         */
+        Send(final Post post, final int idx) {
+            this.post = post;
+            this.idx = idx;
+        }
+
+        /**
+         * Give up on it. If it didn't start yet (e.g. it was still waiting
+         * for a thread when it was cancelled), it never will, so the Post is
+         * no longer running and will be sent at the next check.
+         */
+        public void abandon() {
+            if(this.claimed.compareAndSet(false, true)) {
+                ParallelCheck.this.running.remove(this.post);
+            }
+        }
+
+        @Override
+        public void run() {
+            if(!this.claimed.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                this.post.send();
+            } catch (IOException e) {
+                log.error("IOException when checking or sending notifications of Post #" + this.idx + ": ", e);
+            } catch (AssertionError err) {
+                log.error("Unexpected status response when checking or sending notifications of Post #" + this.idx + ": ", err);
+            } finally {
+                ParallelCheck.this.running.remove(this.post);
+            }
+        }
+    }
+}
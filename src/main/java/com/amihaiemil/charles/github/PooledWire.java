@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of mention-notifications-ejb nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.github;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.LinkedList;
+import java.util.Map;
+
+import javax.ws.rs.core.HttpHeaders;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.RequestBuilder;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.util.EntityUtils;
+
+import com.jcabi.http.ImmutableHeader;
+import com.jcabi.http.Request;
+import com.jcabi.http.Response;
+import com.jcabi.http.Wire;
+import com.jcabi.http.request.DefaultResponse;
+import com.jcabi.immutable.Array;
+
+/**
+ * Wire which sends the request through an {@link HttpPool}, instead of
+ * the original wire. The response is read fully, so the connection goes
+ * back to the pool right away.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 2.1.0
+ */
+public final class PooledWire implements Wire {
+
+    /**
+     * The pool.
+     */
+    private final HttpPool pool;
+
+    /**
+     * Ctor.
+     * @param wire Original wire; it is not used.
+     * @param pool The pool.
+     */
+    public PooledWire(final Wire wire, final HttpPool pool) {
+        this.pool = pool;
+    }
+
+    @Override
+    public Response send(
+        final Request req, final String home, final String method,
+        final Collection<Map.Entry<String, String>> headers,
+        final InputStream content, final int connect, final int read
+    ) throws IOException {
+        final RequestBuilder request = RequestBuilder.create(method)
+            .setUri(home)
+            .setConfig(
+                RequestConfig.custom()
+                    .setConnectTimeout(connect)
+                    .setConnectionRequestTimeout(connect)
+                    .setSocketTimeout(read)
+                    .build()
+            );
+        for(final Map.Entry<String, String> header : headers) {
+            if(!HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(header.getKey())) {
+                request.addHeader(header.getKey(), header.getValue());
+            }
+        }
+        final byte[] body = Streams.read(content);
+        if(body.length > 0) {
+            request.setEntity(new ByteArrayEntity(body));
+        }
+        try (
+            final CloseableHttpResponse response = this.pool.client()
+                .execute(request.build())
+        ) {
+            final HttpEntity entity = response.getEntity();
+            final byte[] binary;
+            if(entity == null) {
+                binary = new byte[0];
+            } else {
+                binary = EntityUtils.toByteArray(entity);
+            }
+            return new DefaultResponse(
+                req,
+                response.getStatusLine().getStatusCode(),
+                response.getStatusLine().getReasonPhrase(),
+                PooledWire.headers(response.getAllHeaders()),
+                binary
+            );
+        }
+    }
+
+    /**
+     * Headers of the response.
+     * @param all Apache headers.
+     * @return Jcabi headers.
+     */
+    private static Array<Map.Entry<String, String>> headers(final Header[] all) {
+        final Collection<Map.Entry<String, String>> headers = new LinkedList<>();
+        for(final Header header : all) {
+            headers.add(new ImmutableHeader(header.getName(), header.getValue()));
+        }
+        return new Array<>(headers);
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of mention-notifications-ejb nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.github;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Notifications pushed to us (e.g. by a Github webhook), instead of
+ * fetched. fetch() takes all the notifications pushed so far; there is
+ * nothing to mark as read on Github.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 2.1.0
+ */
+public final class PushedNotifications implements Notifications {
+
+    /**
+     * Pushed notifications, not fetched yet.
+     */
+    private final Queue<Notification> pushed = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Push notifications.
+     * @param notifications Notifications.
+     */
+    public void push(final List<Notification> notifications) {
+        this.pushed.addAll(notifications);
+    }
+
+    @Override
+    public List<Notification> fetch() {
+        final List<Notification> fetched = new ArrayList<>();
+        Notification next = this.pushed.poll();
+        while(next != null) {
+            fetched.add(next);
+            next = this.pushed.poll();
+        }
+        return fetched;
+    }
+
+    @Override
+    public void markAsRead() {
+        //nothing to do, they are not read from Github.
+    }
+
+    @Override
+    public void markAsRead(final List<Notification> notifications) {
+        //nothing to do, they are not read from Github.
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of mention-notifications-ejb nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.github;
+
+import java.net.HttpURLConnection;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.jcabi.http.Response;
+
+/**
+ * Rate limit budget of a Github account, read from the X-RateLimit-*
+ * headers of every response. Polling is allowed only while there are
+ * more remaining requests than the reserve (kept for the agent's other
+ * API work), and is spaced so the remaining ones last until the window
+ * resets. After a 403 or 429 (primary or secondary rate limit), polling
+ * pauses until Retry-After, the reset time or, if Github says nothing,
+ * for a minute.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 2.1.0
+ */
+public final class RateLimit implements RateLimitMXBean {
+
+    /**
+     * How long to pause after a secondary rate limit without Retry-After.
+     */
+    private static final long PAUSE = 60L * 1000L;
+
+    /**
+     * Requests kept for the agent's other work.
+     */
+    private final int reserve;
+
+    /**
+     * Requests allowed per window.
+     */
+    private volatile int limit = -1;
+
+    /**
+     * Requests remaining in the current window.
+     */
+    private volatile int remaining = -1;
+
+    /**
+     * When the current window ends (millis).
+     */
+    private volatile long reset;
+
+    /**
+     * Until when polling is paused (millis).
+     */
+    private volatile long blocked;
+
+    /**
+     * When we last polled (millis), -1 if we haven't yet.
+     */
+    private volatile long polled = -1;
+
+    /**
+     * Number of polls skipped.
+     */
+    private final AtomicLong skipped = new AtomicLong();
+
+    /**
+     * Ctor.
+     * @param reserve Requests kept for the agent's other work.
+     */
+    public RateLimit(final int reserve) {
+        this.reserve = reserve;
+    }
+
+    /**
+     * Read the rate limit headers of a response from Github.
+     * @param response Response.
+     * @param now Current time (millis).
+     */
+    public void update(final Response response, final long now) {
+        final long lim = RateLimit.number(response, "X-RateLimit-Limit");
+        final long left = RateLimit.number(response, "X-RateLimit-Remaining");
+        final long end = RateLimit.number(response, "X-RateLimit-Reset");
+        if(lim >= 0) {
+            this.limit = (int) lim;
+        }
+        if(left >= 0) {
+            this.remaining = (int) left;
+        }
+        if(end >= 0) {
+            this.reset = end * 1000L;
+        }
+        final int status = response.status();
+        if(status == HttpURLConnection.HTTP_FORBIDDEN || status == 429) {
+            final long after = RateLimit.number(response, "Retry-After");
+            if(after >= 0) {
+                this.blocked = now + after * 1000L;
+            } else if(left == 0) {
+                this.blocked = this.reset;
+            } else {
+                this.blocked = now + PAUSE;
+            }
+        }
+    }
+
+    /**
+     * Can we poll now? If so, the poll is recorded.
+     * @param now Current time (millis).
+     * @return True or false.
+     */
+    public boolean poll(final long now) {
+        boolean allowed = now >= this.blocked;
+        final int left = this.remaining;
+        if(allowed && left >= 0 && now < this.reset) {
+            final int usable = left - this.reserve;
+            allowed = usable > 0 && (
+                this.polled < 0
+                || now - this.polled >= (this.reset - now) / usable
+            );
+        }
+        if(allowed) {
+            this.polled = now;
+        } else {
+            this.skipped.incrementAndGet();
+        }
+        return allowed;
+    }
+
+    @Override
+    public int getLimit() {
+        return this.limit;
+    }
+
+    @Override
+    public int getRemaining() {
+        return this.remaining;
+    }
+
+    @Override
+    public int getReserve() {
+        return this.reserve;
+    }
+
+    @Override
+    public long getReset() {
+        return this.reset;
+    }
+
+    @Override
+    public long getBlockedUntil() {
+        return this.blocked;
+    }
+
+    @Override
+    public long getSkipped() {
+        return this.skipped.get();
+    }
+
+    /**
+     * Numeric header.
+     * @param response Response.
+     * @param name Header name.
+     * @return Value or -1 if it is missing or not a number.
+     */
+    private static long number(final Response response, final String name) {
+        long value = -1;
+        final String header = RtNotifications.header(response, name);
+        if(header != null) {
+            try {
+                value = Long.parseLong(header.trim());
+            } catch (NumberFormatException ex) {
+                value = -1;
+            }
+        }
+        return value;
+    }
+}
@@ -25,7 +25,6 @@
 package com.amihaiemil.charles.github;
 
 import java.util.List;
-import javax.json.JsonObject;
 
 /**
  * Reason for a GIthub notification. E.g. "mention"
@@ -40,9 +39,9 @@ public interface Reason {
      * Filter the notification, returning just the ones that
      * satisfy this reason.
      * @param notification Unfiltered notifications.
-     * @return List of JsonObject.
+     * @return List of Notification.
      */
-    public List<JsonObject> filter(List<JsonObject> notifications);
+    public List<Notification> filter(List<Notification> notifications);
 
     /**
      * Fake used for unit tests. Doesn't do anything and returns
@@ -55,7 +54,7 @@ public interface Reason {
     final static class Fake implements Reason {
 
         @Override
-        public List<JsonObject> filter(List<JsonObject> notifications) {
+        public List<Notification> filter(List<Notification> notifications) {
             return notifications;
         }
 
@@ -0,0 +1,104 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of mention-notifications-ejb nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.github;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The most recent deliveries, kept in memory. Only the last update time
+ * of each thread is remembered and, once the capacity is reached, the
+ * least recently used threads are forgotten. The delivered comments are
+ * remembered too, under their negated ids, so a comment which arrived
+ * through the webhook (without a thread) is not delivered again when
+ * it is polled, and the other way around.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 2.1.0
+ */
+public final class RecentDeliveries implements Deliveries {
+
+    /**
+     * Last delivered update of each thread.
+     */
+    private final Map<Long, Long> threads;
+
+    /**
+     * Ctor.
+     * @param capacity Maximum number of threads to remember.
+     */
+    public RecentDeliveries(final int capacity) {
+        this.threads = new LinkedHashMap<Long, Long>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<Long, Long> eldest) {
+                return this.size() > capacity;
+            }
+        };
+    }
+
+    @Override
+    public synchronized boolean delivered(final Notification notification) {
+        final Long updated = this.threads.get(notification.thread());
+        return notification.thread() > 0 && updated != null
+            && updated >= notification.updated()
+            || notification.comment() > 0
+            && this.threads.containsKey(-notification.comment());
+    }
+
+    @Override
+    public synchronized void add(final List<Notification> notifications) {
+        for(final Notification notification : notifications) {
+            if(notification.thread() > 0) {
+                this.add(notification.thread(), notification.updated());
+            }
+            if(notification.comment() > 0) {
+                this.add(-notification.comment(), notification.updated());
+            }
+        }
+    }
+
+    /**
+     * Remember that the thread was delivered after the given update.
+     * @param thread Thread id or negated comment id.
+     * @param updated Update time (millis since epoch).
+     */
+    synchronized void add(final long thread, final long updated) {
+        final Long known = this.threads.get(thread);
+        if(known == null || known < updated) {
+            this.threads.put(thread, updated);
+        }
+    }
+
+    /**
+     * Copy of the remembered threads, from the least to the most
+     * recently used.
+     * @return Map of thread id (or negated comment id) to last delivered update.
+     */
+    synchronized Map<Long, Long> threads() {
+        return new LinkedHashMap<>(this.threads);
+    }
+}
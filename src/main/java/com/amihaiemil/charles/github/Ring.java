@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of mention-notifications-ejb nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.github;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Consistent hash ring of the nodes. Each node is placed on the ring
+ * a number of times (virtual nodes), and a key belongs to the first node
+ * found clockwise from the key's hash. When a node leaves or joins, only
+ * the keys of that node move.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 2.1.0
+ */
+public final class Ring {
+
+    /**
+     * How many times each node is placed on the ring.
+     */
+    private static final int REPLICAS = 128;
+
+    /**
+     * Nodes, by their positions on the ring.
+     */
+    private final TreeMap<Long, String> nodes = new TreeMap<>();
+
+    /**
+     * Ctor.
+     * @param nodes Nodes.
+     */
+    public Ring(final Collection<String> nodes) {
+        for(final String node : nodes) {
+            for(int idx = 0; idx < Ring.REPLICAS; idx++) {
+                this.nodes.put(Ring.hash(node + '#' + idx), node);
+            }
+        }
+    }
+
+    /**
+     * Node owning the key.
+     * @param key The key.
+     * @return Node or null if the ring is empty.
+     */
+    public String owner(final String key) {
+        String owner = null;
+        if(!this.nodes.isEmpty()) {
+            Map.Entry<Long, String> node = this.nodes.ceilingEntry(Ring.hash(key));
+            if(node == null) {
+                node = this.nodes.firstEntry();
+            }
+            owner = node.getValue();
+        }
+        return owner;
+    }
+
+    /**
+     * Position of a string on the ring: the first 8 bytes of its MD5.
+     * @param text String.
+     * @return Position.
+     */
+    private static long hash(final String text) {
+        try {
+            final byte[] digest = MessageDigest.getInstance("MD5")
+                .digest(text.getBytes(StandardCharsets.UTF_8));
+            long hash = 0;
+            for(int idx = 0; idx < 8; idx++) {
+                hash = (hash << 8) | (digest[idx] & 0xFF);
+            }
+            return hash;
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
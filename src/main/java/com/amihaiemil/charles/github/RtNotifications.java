@@ -24,20 +24,27 @@
  */
 package com.amihaiemil.charles.github;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.net.HttpURLConnection;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
-import javax.json.JsonArray;
-import javax.json.JsonObject;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import javax.ws.rs.core.HttpHeaders;
 import org.apache.commons.lang3.time.DateFormatUtils;
 import org.hamcrest.Matchers;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import com.jcabi.http.Request;
-import com.jcabi.http.response.JsonResponse;
+import com.jcabi.http.Response;
 import com.jcabi.http.response.RestResponse;
+import com.jcabi.http.response.WebLinkingResponse;
 
 /**
  * A Github Notification.
@@ -53,6 +60,19 @@ public final class RtNotifications extends AuthorizedRequest implements Notifica
      */
     private static final Logger log = LoggerFactory.getLogger(RtNotifications.class.getName());
 
+    /**
+     * Notifications per page. Github sends 50 by default, 100 at most.
+     * The following pages are found in the Link header.
+     */
+    private static final int PER_PAGE = 100;
+
+    /**
+     * How far back (millis) from the cursor we ask Github for notifications,
+     * in case some are listed a little after their update time. The
+     * ones delivered already are recognized by the Deliveries.
+     */
+    private static final long OVERLAP = 60000L;
+
     /**
      * Reason for the notifications. What type of notifications
      * are we interested in?
@@ -68,6 +88,68 @@ public final class RtNotifications extends AuthorizedRequest implements Notifica
      */
     private String lastReadAt;
 
+    /**
+     * ETag of the last response which brought no interesting notifications.
+     * It is sent back as If-None-Match, so Github can answer with
+     * 304 Not Modified if nothing changed in the meantime.
+     */
+    private String etag;
+
+    /**
+     * Last-Modified of the last response which brought no interesting
+     * notifications. It is sent back as If-Modified-Since.
+     */
+    private String lastModified;
+
+    /**
+     * How many polls were answered with 304 Not Modified.
+     */
+    private volatile long notModified;
+
+    /**
+     * Seconds Github wants us to wait between polls, as
+     * specified by the last X-Poll-Interval header.
+     */
+    private volatile int pollInterval = 60;
+
+    /**
+     * Retry policy for marking the notifications as read.
+     */
+    private Backoff backoff;
+
+    /**
+     * Rate limit of the account, updated from every response.
+     */
+    private RateLimit budget;
+
+    /**
+     * Metrics of the account.
+     */
+    private AccountMetrics metrics;
+
+    /**
+     * Executor marking single threads as read, concurrently; null if
+     * notifications are always marked as read by last_read_at.
+     */
+    private ExecutorService threads;
+
+    /**
+     * Maximum number of threads marked as read one by one; more than this
+     * are marked as read by last_read_at.
+     */
+    private int max;
+
+    /**
+     * Cursor sent as since; null if every poll asks for all the
+     * unread notifications.
+     */
+    private Cursor cursor;
+
+    /**
+     * Newest update time seen since the cursor last advanced.
+     */
+    private long newest;
+
     /**
      * Ctor.
      * @param res Reason.
@@ -75,8 +157,122 @@ public final class RtNotifications extends AuthorizedRequest implements Notifica
      * @param edp String endpoint.
      */
     public RtNotifications(Reason res, String token, String edp) {
-        super(token, edp);
+        this(res, Backoff.NONE, token, edp);
+    }
+
+    /**
+     * Ctor.
+     * @param res Reason.
+     * @param backoff Retry policy for marking the notifications as read.
+     * @param token Token used with this request.
+     * @param edp String endpoint.
+     */
+    public RtNotifications(Reason res, Backoff backoff, String token, String edp) {
+        this(res, backoff, new Transport.Jdk(), token, edp);
+    }
+
+    /**
+     * Ctor.
+     * @param res Reason.
+     * @param backoff Retry policy for marking the notifications as read.
+     * @param transport How the requests are sent.
+     * @param token Token used with this request.
+     * @param edp String endpoint.
+     */
+    public RtNotifications(
+        Reason res, Backoff backoff, Transport transport,
+        String token, String edp
+    ) {
+        this(res, backoff, transport, new RateLimit(0), token, edp);
+    }
+
+    /**
+     * Ctor.
+     * @param res Reason.
+     * @param backoff Retry policy for marking the notifications as read.
+     * @param transport How the requests are sent.
+     * @param budget Rate limit of the account, updated from every response.
+     * @param token Token used with this request.
+     * @param edp String endpoint.
+     */
+    public RtNotifications(
+        Reason res, Backoff backoff, Transport transport, RateLimit budget,
+        String token, String edp
+    ) {
+        this(res, backoff, transport, budget, new AccountMetrics(), token, edp);
+    }
+
+    /**
+     * Ctor.
+     * @param res Reason.
+     * @param backoff Retry policy for marking the notifications as read.
+     * @param transport How the requests are sent.
+     * @param budget Rate limit of the account, updated from every response.
+     * @param metrics Metrics of the account.
+     * @param token Token used with this request.
+     * @param edp String endpoint.
+     */
+    public RtNotifications(
+        Reason res, Backoff backoff, Transport transport, RateLimit budget,
+        AccountMetrics metrics, String token, String edp
+    ) {
+        this(res, backoff, transport, budget, metrics, null, 0, token, edp);
+    }
+
+    /**
+     * Ctor. Up to max delivered notifications are marked as read precisely,
+     * one thread at a time (PATCH /notifications/threads/{id}), on the
+     * given executor. The transport must support PATCH.
+     * @param res Reason.
+     * @param backoff Retry policy for marking the notifications as read.
+     * @param transport How the requests are sent.
+     * @param budget Rate limit of the account, updated from every response.
+     * @param metrics Metrics of the account.
+     * @param threads Executor marking the threads as read.
+     * @param max Maximum number of threads marked as read one by one.
+     * @param token Token used with this request.
+     * @param edp String endpoint.
+     */
+    public RtNotifications(
+        Reason res, Backoff backoff, Transport transport, RateLimit budget,
+        AccountMetrics metrics, ExecutorService threads, int max,
+        String token, String edp
+    ) {
+        this(
+            res, backoff, transport, budget, metrics,
+            threads, max, null, token, edp
+        );
+    }
+
+    /**
+     * Ctor. Only the notifications updated after the cursor are polled.
+     * The cursor advances once the notifications are marked as read, or
+     * right away if none of them passed the filter.
+     * @param res Reason.
+     * @param backoff Retry policy for marking the notifications as read.
+     * @param transport How the requests are sent.
+     * @param budget Rate limit of the account, updated from every response.
+     * @param metrics Metrics of the account.
+     * @param threads Executor marking the threads as read; null to always
+     *  mark them by last_read_at.
+     * @param max Maximum number of threads marked as read one by one.
+     * @param cursor Cursor of the account.
+     * @param token Token used with this request.
+     * @param edp String endpoint.
+     */
+    public RtNotifications(
+        Reason res, Backoff backoff, Transport transport, RateLimit budget,
+        AccountMetrics metrics, ExecutorService threads, int max,
+        Cursor cursor, String token, String edp
+    ) {
+        super(token, edp, transport);
+        this.cursor = cursor;
+        this.threads = threads;
+        this.max = max;
+        this.budget = budget;
+        this.metrics = metrics;
         this.reason = res;
+        this.backoff = backoff;
         this.lastReadAt = DateFormatUtils.formatUTC(
             new Date(System.currentTimeMillis()),
             "yyyy-MM-dd'T'HH:mm:ss'Z'"
@@ -84,32 +280,232 @@ public final class RtNotifications extends AuthorizedRequest implements Notifica
     }
 
     @Override
-    public List<JsonObject> fetch() throws IOException {
-        List<JsonObject> filtered = new ArrayList<JsonObject>();
-        JsonArray notifications = this.request().fetch()
-            .as(RestResponse.class).assertStatus(HttpURLConnection.HTTP_OK)
-            .as(JsonResponse.class).json().readArray();
-        this.lastReadAt = DateFormatUtils.formatUTC(
+    public List<Notification> fetch() throws IOException {
+        final long start = System.nanoTime();
+        try {
+            return this.poll();
+        } catch (IOException | AssertionError ex) {
+            this.metrics.error();
+            throw ex;
+        } finally {
+            this.metrics.getFetch().since(start);
+        }
+    }
+
+    /**
+     * Poll Github for the notifications, following all the pages.
+     * @return Notifications which passed the filter.
+     * @throws IOException If something goes wrong.
+     */
+    private List<Notification> poll() throws IOException {
+        final List<Notification> filtered = new ArrayList<Notification>();
+        final String readAt = DateFormatUtils.formatUTC(
             new Date(System.currentTimeMillis()),
             "yyyy-MM-dd'T'HH:mm:ss'Z'"
         );
-        log.info("Found " + notifications.size() + " new notifications!");
-        if(notifications.size() > 0) {
-            List<JsonObject> unfiltered = new ArrayList<JsonObject>();
-            for(int i=0; i<notifications.size(); i++) {
-                unfiltered.add(notifications.getJsonObject(i));
+        Request req = this.request().uri()
+            .queryParam("per_page", RtNotifications.PER_PAGE).back();
+        if(this.cursor != null && this.cursor.since() > 0) {
+            req = req.uri().queryParam(
+                "since",
+                DateFormatUtils.formatUTC(
+                    this.cursor.since() - RtNotifications.OVERLAP,
+                    "yyyy-MM-dd'T'HH:mm:ss'Z'"
+                )
+            ).back();
+        }
+        if(this.etag != null) {
+            req = req.header(HttpHeaders.IF_NONE_MATCH, this.etag);
+        }
+        if(this.lastModified != null) {
+            req = req.header(HttpHeaders.IF_MODIFIED_SINCE, this.lastModified);
+        }
+        Response resp = this.track(req.fetch())
+            .as(RestResponse.class)
+            .assertStatus(
+                Matchers.isOneOf(
+                    HttpURLConnection.HTTP_OK,
+                    HttpURLConnection.HTTP_NOT_MODIFIED
+                )
+            );
+        this.lastReadAt = readAt;
+        this.readPollInterval(resp);
+        if(resp.status() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+            this.notModified++;
+            log.info("No new notifications (304 Not Modified)!");
+            return filtered;
+        }
+        final String tag = RtNotifications.header(resp, HttpHeaders.ETAG);
+        final String modified = RtNotifications.header(
+            resp, HttpHeaders.LAST_MODIFIED
+        );
+        int found = 0;
+        while(true) {
+            final List<Notification> page = new SlimPage(
+                new ByteArrayInputStream(resp.binary())
+            ).notifications();
+            found += page.size();
+            for(final Notification notification : page) {
+                this.newest = Math.max(this.newest, notification.updated());
+            }
+            if(!page.isEmpty()) {
+                final long filtering = System.nanoTime();
+                final List<Notification> interesting = this.reason.filter(page);
+                this.metrics.getFilter().since(filtering);
+                this.metrics.fetched(page.size());
+                this.metrics.filtered(interesting.size());
+                filtered.addAll(interesting);
             }
-            filtered = this.reason.filter(unfiltered);
+            final WebLinkingResponse.Link next = resp
+                .as(WebLinkingResponse.class).links().get("next");
+            if(next == null) {
+                break;
+            }
+            resp = this.track(
+                this.request().uri()
+                    .set(resp.back().uri().get().resolve(next.uri())).back()
+                    .fetch()
+            ).as(RestResponse.class)
+                .assertStatus(HttpURLConnection.HTTP_OK);
+        }
+        log.info("Found " + found + " new notifications!");
+        if(filtered.isEmpty()) {
+            this.etag = tag;
+            this.lastModified = modified;
+            this.advance();
+        } else {
+            this.etag = null;
+            this.lastModified = null;
         }
         return filtered;
     }
 
+    /**
+     * How many polls were answered with 304 Not Modified, meaning
+     * nothing had to be read or parsed.
+     * @return Number of polls.
+     */
+    public long notModified() {
+        return this.notModified;
+    }
+
+    /**
+     * Seconds that Github wants us to wait before polling again.
+     * @return Poll interval in seconds.
+     */
+    public int pollInterval() {
+        return this.pollInterval;
+    }
+
     @Override
 	public void markAsRead() throws IOException {
-        this.request().uri()
-            .queryParam("last_read_at", this.lastReadAt).back()
-            .method(Request.PUT).body().set("{}").back().fetch()
-            .as(RestResponse.class)
+        final long start = System.nanoTime();
+        try {
+            this.read();
+            this.advance();
+        } catch (IOException | AssertionError ex) {
+            this.metrics.error();
+            throw ex;
+        } finally {
+            this.metrics.getMarkAsRead().since(start);
+        }
+    }
+
+    /**
+     * Mark the given notifications as read, each thread on its own, if
+     * they are not more than max. Otherwise, or if single threads are not
+     * marked, everything fetched so far is marked as read by last_read_at.
+     * If some threads cannot be marked, the others still are, and an
+     * IOException is thrown at the end.
+     * @param notifications Notifications to mark as read.
+     * @throws IOException If something goes wrong.
+     */
+    @Override
+    public void markAsRead(final List<Notification> notifications)
+        throws IOException {
+        if(this.threads == null || notifications.size() > this.max) {
+            this.markAsRead();
+        } else {
+            final long start = System.nanoTime();
+            try {
+                this.read(notifications);
+                this.advance();
+            } catch (IOException | AssertionError ex) {
+                this.metrics.error();
+                throw ex;
+            } finally {
+                this.metrics.getMarkAsRead().since(start);
+            }
+        }
+    }
+
+    /**
+     * Mark the threads of the given notifications as read, concurrently.
+     * @param notifications Notifications.
+     * @throws IOException If any thread could not be marked as read.
+     */
+    private void read(final List<Notification> notifications) throws IOException {
+        final List<Future<Response>> marks = new ArrayList<>(notifications.size());
+        for(final Notification notification : notifications) {
+            final Request patch = this.request().uri()
+                .path("threads").path(String.valueOf(notification.thread())).back()
+                .method("PATCH")
+                .through(BackoffWire.class, this.backoff);
+            marks.add(
+                this.threads.submit(
+                    new Callable<Response>() {
+                        @Override
+                        public Response call() throws IOException {
+                            return patch.fetch();
+                        }
+                    }
+                )
+            );
+        }
+        int failed = 0;
+        Throwable cause = null;
+        for(final Future<Response> mark : marks) {
+            try {
+                final Response resp = this.track(mark.get());
+                if(resp.status() != HttpURLConnection.HTTP_RESET
+                    && resp.status() != HttpURLConnection.HTTP_OK) {
+                    failed++;
+                    log.warn("Could not mark thread as read: " + resp.status());
+                }
+            } catch (ExecutionException ex) {
+                failed++;
+                cause = ex.getCause();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                for(final Future<Response> other : marks) {
+                    other.cancel(true);
+                }
+                throw new InterruptedIOException(
+                    "Interrupted while marking threads as read"
+                );
+            }
+        }
+        if(failed > 0) {
+            throw new IOException(
+                "Could not mark " + failed + " of " + notifications.size()
+                + " threads as read", cause
+            );
+        }
+        log.info(notifications.size() + " threads marked as read!");
+    }
+
+    /**
+     * Mark the notifications fetched so far as read.
+     * @throws IOException If something goes wrong.
+     */
+    private void read() throws IOException {
+        this.track(
+            this.request().uri()
+                .queryParam("last_read_at", this.lastReadAt).back()
+                .method(Request.PUT).body().set("{}").back()
+                .through(BackoffWire.class, this.backoff)
+                .fetch()
+        ).as(RestResponse.class)
             .assertStatus(
                 Matchers.isOneOf(
                     HttpURLConnection.HTTP_OK,
@@ -118,4 +514,64 @@ public final class RtNotifications extends AuthorizedRequest implements Notifica
             );		
 	}
 
+    /**
+     * Advance the cursor to the newest notification seen, since they
+     * were all processed. If the cursor cannot be stored, we only log it:
+     * the notifications are read already, and at worst they are
+     * polled again (but not delivered again) after a restart.
+     */
+    private void advance() {
+        if(this.cursor != null && this.newest > 0) {
+            try {
+                this.cursor.advance(this.newest);
+                this.newest = 0;
+            } catch (IOException ex) {
+                log.error("Could not store the cursor", ex);
+            }
+        }
+    }
+
+    /**
+     * Update the rate limit budget from the response.
+     * @param resp Response from Github.
+     * @return The same response.
+     */
+    private Response track(final Response resp) {
+        this.budget.update(resp, System.currentTimeMillis());
+        return resp;
+    }
+
+    /**
+     * Remember the X-Poll-Interval header of the response, if present.
+     * @param resp Response.
+     */
+    private void readPollInterval(final Response resp) {
+        final String interval = RtNotifications.header(resp, "X-Poll-Interval");
+        if(interval != null) {
+            try {
+                this.pollInterval = Integer.parseInt(interval.trim());
+            } catch (NumberFormatException ex) {
+                log.warn("Unexpected X-Poll-Interval header: " + interval);
+            }
+        }
+    }
+
+    /**
+     * Value of the given header from the response. Header names are
+     * case-insensitive, so we cannot simply look them up in the map.
+     * @param resp Response.
+     * @param name Header name.
+     * @return The first value of the header or null if it is missing.
+     */
+    static String header(final Response resp, final String name) {
+        String value = null;
+        for(final Map.Entry<String, List<String>> hdr : resp.headers().entrySet()) {
+            if(name.equalsIgnoreCase(hdr.getKey()) && !hdr.getValue().isEmpty()) {
+                value = hdr.getValue().get(0);
+                break;
+            }
+        }
+        return value;
+    }
+
 }
@@ -0,0 +1,196 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of mention-notifications-ejb nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.github;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Reason made of rules: the accepted notification reasons and,
+ * optionally, repositories which are allowed or denied. The rules are
+ * compiled once, in the ctor, and the notifications are then filtered in a
+ * single pass, with an EnumSet look-up for the reason and hash look-ups
+ * for the repository.<br><br>
+ * Repositories are given by their full name (e.g. amihaiemil/charles) or
+ * by owner (e.g. amihaiemil/*). A denied repository is never accepted, even
+ * if it is also allowed. If no repository is allowed explicitly, all of
+ * them are.<br><br>
+ * Like {@link Mention}, "mention" and "team_mention" notifications are only
+ * accepted if they point to a new comment.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 2.1.0
+ */
+public final class Rules implements Reason {
+
+    /**
+     * Reasons which have to point to a new comment.
+     */
+    private static final Set<Notification.Type> COMMENTED = EnumSet.of(
+        Notification.Type.MENTION, Notification.Type.TEAM_MENTION
+    );
+
+    /**
+     * Accepted reasons.
+     */
+    private final Set<Notification.Type> reasons;
+
+    /**
+     * Allowed repositories (full names).
+     */
+    private final Set<String> allowed;
+
+    /**
+     * Allowed owners.
+     */
+    private final Set<String> allowedOwners;
+
+    /**
+     * Denied repositories (full names).
+     */
+    private final Set<String> denied;
+
+    /**
+     * Denied owners.
+     */
+    private final Set<String> deniedOwners;
+
+    /**
+     * Ctor.
+     * @param reasons Accepted reasons, separated by comma
+     *  (e.g. "mention,team_mention").
+     * @param allow Allowed repositories, separated by comma, or empty
+     *  to allow all of them.
+     * @param deny Denied repositories, separated by comma, or empty.
+     */
+    public Rules(final String reasons, final String allow, final String deny) {
+        this.reasons = EnumSet.noneOf(Notification.Type.class);
+        for(final String reason : Rules.split(reasons)) {
+            final Notification.Type type = Notification.Type.of(reason);
+            if(type == Notification.Type.OTHER) {
+                throw new IllegalStateException(
+                    "Unknown notification reason: " + reason
+                );
+            }
+            this.reasons.add(type);
+        }
+        this.allowed = Rules.repos(allow, false);
+        this.allowedOwners = Rules.repos(allow, true);
+        this.denied = Rules.repos(deny, false);
+        this.deniedOwners = Rules.repos(deny, true);
+    }
+
+    @Override
+    public List<Notification> filter(final List<Notification> notifications) {
+        final List<Notification> filtered = new ArrayList<>();
+        for(final Notification notification : notifications) {
+            if(this.accepts(notification)) {
+                filtered.add(notification);
+            }
+        }
+        return filtered;
+    }
+
+    /**
+     * Does this notification satisfy the rules?
+     * @param notification Notification.
+     * @return True or false.
+     */
+    private boolean accepts(final Notification notification) {
+        boolean accepted = this.reasons.contains(notification.type())
+            && (
+                notification.newComment()
+                || !COMMENTED.contains(notification.type())
+            );
+        if(accepted) {
+            final String repo = notification.repo();
+            if(this.denied.contains(repo)
+                || Rules.ownedBy(repo, this.deniedOwners)) {
+                accepted = false;
+            } else if(!this.allowed.isEmpty() || !this.allowedOwners.isEmpty()) {
+                accepted = this.allowed.contains(repo)
+                    || Rules.ownedBy(repo, this.allowedOwners);
+            }
+        }
+        return accepted;
+    }
+
+    /**
+     * Is the repo owned by one of the owners?
+     * @param repo Repository full name.
+     * @param owners Owners.
+     * @return True or false.
+     */
+    private static boolean ownedBy(final String repo, final Set<String> owners) {
+        boolean owned = false;
+        if(!owners.isEmpty()) {
+            final int slash = repo.indexOf('/');
+            owned = slash > 0 && owners.contains(repo.substring(0, slash));
+        }
+        return owned;
+    }
+
+    /**
+     * Repositories or owners from the given list.
+     * @param list Repositories, separated by comma.
+     * @param owners True to take only the owners (owner/*), false to take
+     *  only the full names.
+     * @return Set of repos or owners.
+     */
+    private static Set<String> repos(final String list, final boolean owners) {
+        final Set<String> repos = new HashSet<>();
+        for(final String repo : Rules.split(list)) {
+            if(repo.endsWith("/*")) {
+                if(owners) {
+                    repos.add(repo.substring(0, repo.length() - 2));
+                }
+            } else if(!owners) {
+                repos.add(repo);
+            }
+        }
+        return repos;
+    }
+
+    /**
+     * Split a comma-separated list, ignoring blank elements.
+     * @param list List.
+     * @return Trimmed elements.
+     */
+    private static List<String> split(final String list) {
+        final List<String> elements = new ArrayList<>();
+        if(list != null) {
+            for(final String element : list.split(",")) {
+                if(!element.trim().isEmpty()) {
+                    elements.add(element.trim());
+                }
+            }
+        }
+        return Collections.unmodifiableList(elements);
+    }
+}
@@ -0,0 +1,291 @@
+/*
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of mention-notifications-ejb nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.github;
+
+import java.util.BitSet;
+import java.util.Calendar;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * When an account is checked: either at an interval (e.g. "15s", "10m",
+ * "2h", "500ms"; a plain number means minutes) or at the times given by
+ * a cron expression with the usual 5 fields: minute, hour, day of month,
+ * month and day of week (0 or 7 is Sunday). The fields accept *, lists,
+ * ranges and steps (e.g. "*&#47;5 9-17 * * 1-5"). The cron times are in the
+ * server's time zone.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 2.1.0
+ */
+public final class Schedule {
+
+    /**
+     * Pattern of an interval.
+     */
+    private static final Pattern INTERVAL = Pattern.compile("(\\d+)(ms|s|m|h)?");
+
+    /**
+     * How far (minutes) to look for the next time matching a cron.
+     */
+    private static final int HORIZON = 5 * 366 * 24 * 60;
+
+    /**
+     * The interval (millis) or 0 if it's a cron.
+     */
+    private final long interval;
+
+    /**
+     * Minutes, hours, days of month, months and days of week of the cron.
+     */
+    private final BitSet[] fields;
+
+    /**
+     * Is the day of month restricted?
+     */
+    private final boolean monthdays;
+
+    /**
+     * Is the day of week restricted?
+     */
+    private final boolean weekdays;
+
+    /**
+     * Ctor.
+     * @param spec Interval or cron expression.
+     * @throws IllegalArgumentException If the spec is not valid or it is
+     *  a cron which never matches (e.g. "0 0 31 2 *").
+     */
+    public Schedule(final String spec) {
+        final Matcher interval = Schedule.INTERVAL.matcher(spec.trim());
+        if(interval.matches()) {
+            final long amount = Long.parseLong(interval.group(1));
+            final String unit = interval.group(2);
+            if("ms".equals(unit)) {
+                this.interval = amount;
+            } else if("s".equals(unit)) {
+                this.interval = amount * 1000L;
+            } else if("h".equals(unit)) {
+                this.interval = amount * 60L * 60L * 1000L;
+            } else {
+                this.interval = amount * 60L * 1000L;
+            }
+            if(this.interval <= 0) {
+                throw new IllegalArgumentException(
+                    "The interval should be positive: " + spec
+                );
+            }
+            this.fields = null;
+            this.monthdays = false;
+            this.weekdays = false;
+        } else {
+            final String[] parts = spec.trim().split("\\s+");
+            if(parts.length != 5) {
+                throw new IllegalArgumentException(
+                    "Neither an interval nor a cron expression: " + spec
+                );
+            }
+            this.interval = 0;
+            this.fields = new BitSet[] {
+                Schedule.field(parts[0], 0, 59),
+                Schedule.field(parts[1], 0, 23),
+                Schedule.field(parts[2], 1, 31),
+                Schedule.field(parts[3], 1, 12),
+                Schedule.field(parts[4], 0, 7),
+            };
+            if(this.fields[4].get(7)) {
+                this.fields[4].set(0);
+            }
+            this.monthdays = !"*".equals(parts[2]);
+            this.weekdays = !"*".equals(parts[4]);
+            try {
+                this.match(System.currentTimeMillis());
+            } catch (IllegalStateException ex) {
+                throw new IllegalArgumentException(
+                    "The cron never matches: " + spec, ex
+                );
+            }
+        }
+    }
+
+    /**
+     * How much the checks of different accounts should be spread.
+     * @param jitter Spread (millis) of the cron checks.
+     * @return The interval, or the given jitter if it's a cron.
+     */
+    public long spread(final long jitter) {
+        final long spread;
+        if(this.interval > 0) {
+            spread = this.interval;
+        } else {
+            spread = jitter;
+        }
+        return spread;
+    }
+
+    /**
+     * When the first check should be.
+     * @param now Current time (millis).
+     * @param offset The account's offset (millis), less than the spread.
+     * @return Time (millis).
+     */
+    public long first(final long now, final long offset) {
+        final long first;
+        if(this.interval > 0) {
+            first = now + offset;
+        } else {
+            first = this.match(now) + offset;
+        }
+        return first;
+    }
+
+    /**
+     * When the next check should be, after one which just finished.
+     * @param now Current time (millis).
+     * @param offset The account's offset (millis), less than the spread.
+     * @return Time (millis).
+     */
+    public long next(final long now, final long offset) {
+        final long next;
+        if(this.interval > 0) {
+            next = now + this.interval;
+        } else {
+            next = this.match(now - offset) + offset;
+        }
+        return next;
+    }
+
+    /**
+     * First minute after the given time matching the cron.
+     * @param now Time (millis).
+     * @return Time (millis).
+     */
+    private long match(final long now) {
+        final Calendar time = Calendar.getInstance();
+        time.setTimeInMillis(now);
+        time.set(Calendar.SECOND, 0);
+        time.set(Calendar.MILLISECOND, 0);
+        time.add(Calendar.MINUTE, 1);
+        int minutes = 0;
+        long match = -1;
+        while(match < 0) {
+            if(minutes >= Schedule.HORIZON) {
+                throw new IllegalStateException("The cron never matches.");
+            }
+            if(!this.fields[3].get(time.get(Calendar.MONTH) + 1) || !this.day(time)) {
+                final int left = 24 * 60 - time.get(Calendar.HOUR_OF_DAY) * 60
+                    - time.get(Calendar.MINUTE);
+                time.add(Calendar.MINUTE, left);
+                minutes = minutes + left;
+            } else if(!this.fields[1].get(time.get(Calendar.HOUR_OF_DAY))) {
+                final int left = 60 - time.get(Calendar.MINUTE);
+                time.add(Calendar.MINUTE, left);
+                minutes = minutes + left;
+            } else if(!this.fields[0].get(time.get(Calendar.MINUTE))) {
+                time.add(Calendar.MINUTE, 1);
+                minutes = minutes + 1;
+            } else {
+                match = time.getTimeInMillis();
+            }
+        }
+        return match;
+    }
+
+    /**
+     * Does the day match the cron? If both the day of month and the day
+     * of week are restricted, either of them has to match (as in cron).
+     * @param time Time.
+     * @return True if it matches.
+     */
+    private boolean day(final Calendar time) {
+        final boolean month = this.fields[2].get(time.get(Calendar.DAY_OF_MONTH));
+        final boolean week = this.fields[4].get(time.get(Calendar.DAY_OF_WEEK) - 1);
+        final boolean day;
+        if(this.monthdays && this.weekdays) {
+            day = month || week;
+        } else {
+            day = month && week;
+        }
+        return day;
+    }
+
+    /**
+     * Values of a cron field.
+     * @param field The field (e.g. "*", "1,15", "9-17", "*&#47;5").
+     * @param min Minimum value.
+     * @param max Maximum value.
+     * @return Values.
+     */
+    private static BitSet field(final String field, final int min, final int max) {
+        final BitSet values = new BitSet(max + 1);
+        for(final String part : field.split(",")) {
+            final String[] step = part.split("/");
+            int from = min;
+            int to = max;
+            if(!"*".equals(step[0])) {
+                final String[] range = step[0].split("-");
+                from = Schedule.number(range[0], min, max);
+                if(range.length == 2) {
+                    to = Schedule.number(range[1], min, max);
+                } else if(step.length == 1) {
+                    to = from;
+                }
+            }
+            int by = 1;
+            if(step.length == 2) {
+                by = Schedule.number(step[1], 1, max);
+            }
+            if(from > to || step.length > 2) {
+                throw new IllegalArgumentException("Invalid cron field: " + field);
+            }
+            for(int value = from; value <= to; value += by) {
+                values.set(value);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Number in a cron field.
+     * @param number The number.
+     * @param min Minimum value.
+     * @param max Maximum value.
+     * @return Number.
+     */
+    private static int number(final String number, final int min, final int max) {
+        final int value;
+        try {
+            value = Integer.parseInt(number);
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Invalid cron value: " + number, ex);
+        }
+        if(value < min || value > max) {
+            throw new IllegalArgumentException(
+                "Cron value " + value + " is not between " + min + " and " + max
+            );
+        }
+        return value;
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of mention-notifications-ejb nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.github;
+
+import java.io.IOException;
+import java.util.Set;
+
+/**
+ * This node's share of the accounts, when several nodes check the same
+ * accounts. Every node renews its membership lease ("node/" + name) in the
+ * shared Leases; the live nodes are those whose leases did not expire,
+ * and the accounts are spread among them on a consistent hash Ring. When a
+ * node dies, its lease expires and its accounts move to the other nodes.
+ * <br><br>
+ * The nodes may see different members for a short while (e.g. right after
+ * one joined), so, before checking an account, the owner also has to take
+ * the account's lease ("account/" + key): the previous owner keeps it
+ * until it sees that it no longer owns the account (and releases it) or
+ * until it expires. This way, an account is never checked by two nodes
+ * at the same time.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 2.1.0
+ */
+public final class Shard {
+
+    /**
+     * Shared leases.
+     */
+    private final Leases leases;
+
+    /**
+     * Name of this node.
+     */
+    private final String node;
+
+    /**
+     * How long (millis) the leases last; a dead node's accounts are taken
+     * over after at most this long.
+     */
+    private final long ttl;
+
+    /**
+     * Live nodes.
+     */
+    private Ring ring;
+
+    /**
+     * When (millis) the membership was last renewed.
+     */
+    private long renewed;
+
+    /**
+     * Ctor.
+     * @param leases Shared leases.
+     * @param node Name of this node (unique in the cluster, no spaces).
+     * @param ttl How long (millis) the leases last. It should be
+     *  a few times longer than the interval between checks.
+     */
+    public Shard(final Leases leases, final String node, final long ttl) {
+        this.leases = leases;
+        this.node = node;
+        this.ttl = ttl;
+    }
+
+    /**
+     * Does this node check the given account now?
+     * @param account Key of the account.
+     * @param now Current time (millis).
+     * @return True if this node owns the account and holds its lease.
+     * @throws IOException If the leases cannot be read or written.
+     */
+    public boolean owns(final String account, final long now) throws IOException {
+        final String lease = "account/" + account;
+        final boolean owns;
+        if(this.node.equals(this.ring(now).owner(account))) {
+            owns = this.leases.acquire(lease, this.node, now, this.ttl);
+        } else {
+            this.leases.release(lease, this.node);
+            owns = false;
+        }
+        return owns;
+    }
+
+    /**
+     * Ring of the live nodes. The membership lease is renewed (and the
+     * live nodes read again) once every third of the ttl, so all the
+     * accounts checked in one round see the same ring.
+     * @param now Current time (millis).
+     * @return Ring.
+     * @throws IOException If the leases cannot be read or written.
+     */
+    private synchronized Ring ring(final long now) throws IOException {
+        if(this.ring == null || now - this.renewed >= this.ttl / 3) {
+            this.leases.acquire("node/" + this.node, this.node, now, this.ttl);
+            final Set<String> live = this.leases.holders("node/", now);
+            live.add(this.node);
+            this.ring = new Ring(live);
+            this.renewed = now;
+        }
+        return this.ring;
+    }
+}
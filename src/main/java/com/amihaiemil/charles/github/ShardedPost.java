@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of mention-notifications-ejb nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.github;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Post of an account which is sent only if the account belongs to this
+ * node's Shard. When the account moves to this node, its stored state
+ * (deliveries, cursor, outbox, on the volume shared with the other nodes)
+ * is read again before the first send, so this node continues where the
+ * previous owner stopped.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 2.1.0
+ */
+public final class ShardedPost implements Post {
+
+    /**
+     * Logger.
+     */
+    private static final Logger log = LoggerFactory.getLogger(ShardedPost.class.getName());
+
+    /**
+     * Original Post.
+     */
+    private final Post origin;
+
+    /**
+     * This node's share of the accounts.
+     */
+    private final Shard shard;
+
+    /**
+     * Key of the account.
+     */
+    private final String account;
+
+    /**
+     * Stored state of the account.
+     */
+    private final Collection<Stored> state;
+
+    /**
+     * Did this node own the account at the last send?
+     */
+    private boolean owned;
+
+    /**
+     * Ctor.
+     * @param origin Original Post.
+     * @param shard This node's share of the accounts.
+     * @param account Key of the account.
+     */
+    public ShardedPost(final Post origin, final Shard shard, final String account) {
+        this(origin, shard, account, Collections.<Stored>emptyList());
+    }
+
+    /**
+     * Ctor.
+     * @param origin Original Post.
+     * @param shard This node's share of the accounts.
+     * @param account Key of the account.
+     * @param state Stored state of the account, read again when the
+     *  account moves to this node.
+     */
+    public ShardedPost(
+        final Post origin, final Shard shard, final String account,
+        final Collection<Stored> state
+    ) {
+        this.origin = origin;
+        this.shard = shard;
+        this.account = account;
+        this.state = new ArrayList<>(state);
+    }
+
+    @Override
+    public void send() throws IOException {
+        if(this.shard.owns(this.account, System.currentTimeMillis())) {
+            this.takeOver();
+            this.origin.send();
+        } else {
+            synchronized (this) {
+                this.owned = false;
+            }
+            log.debug("Account " + this.account + " is checked by another node.");
+        }
+    }
+
+    /**
+     * Read the account's stored state again, if this node didn't own the
+     * account at the last send. If it cannot be read, the account is not
+     * sent (it is tried again at the next send).
+     * @throws IOException If the state cannot be read.
+     */
+    private synchronized void takeOver() throws IOException {
+        if(!this.owned) {
+            for(final Stored stored : this.state) {
+                stored.reload();
+            }
+            if(!this.state.isEmpty()) {
+                log.info("Took over account " + this.account + ", its state was read again.");
+            }
+            this.owned = true;
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of mention-notifications-ejb nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.github;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.json.Json;
+import javax.json.stream.JsonParser;
+import javax.json.stream.JsonParser.Event;
+
+/**
+ * A page of Github notifications, read with a streaming JsonParser
+ * straight into {@link Notification} objects. Only the fields we actually
+ * use are read: id, updated_at, reason, subject.url, subject.latest_comment_url and
+ * repository.full_name. Everything else (mostly links) is skipped as it
+ * is parsed, without building any JsonObject or JsonArray for it.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 2.1.0
+ */
+public final class SlimPage {
+
+    /**
+     * Json array of notifications.
+     */
+    private final InputStream json;
+
+    /**
+     * Ctor.
+     * @param json Json array of notifications, as received from Github.
+     */
+    public SlimPage(final InputStream json) {
+        this.json = json;
+    }
+
+    /**
+     * Read the notifications.
+     * @return List of notifications.
+     */
+    public List<Notification> notifications() {
+        final List<Notification> notifications = new ArrayList<>();
+        final JsonParser parser = Json.createParser(this.json);
+        try {
+            while(parser.hasNext()) {
+                final Event event = parser.next();
+                if(event == Event.START_OBJECT) {
+                    notifications.add(this.notification(parser));
+                } else if(event == Event.END_ARRAY) {
+                    break;
+                }
+            }
+        } finally {
+            parser.close();
+        }
+        return notifications;
+    }
+
+    /**
+     * Read one notification. The parser must be right after the
+     * notification's START_OBJECT event; it will be left right after the
+     * matching END_OBJECT.
+     * @param parser Json parser.
+     * @return Notification.
+     */
+    private Notification notification(final JsonParser parser) {
+        String id = null;
+        String updated = null;
+        String reason = null;
+        String url = null;
+        String latest = null;
+        String repo = null;
+        String key = null;
+        String parent = null;
+        int depth = 1;
+        while(depth > 0) {
+            final Event event = parser.next();
+            switch (event) {
+                case KEY_NAME:
+                    key = parser.getString();
+                    break;
+                case START_OBJECT:
+                    if(depth == 1) {
+                        parent = key;
+                    }
+                    depth++;
+                    break;
+                case START_ARRAY:
+                    if(depth == 1) {
+                        parent = null;
+                    }
+                    depth++;
+                    break;
+                case END_OBJECT:
+                case END_ARRAY:
+                    depth--;
+                    break;
+                case VALUE_STRING:
+                    if(depth == 1 && "reason".equals(key)) {
+                        reason = parser.getString();
+                    } else if(depth == 1 && "id".equals(key)) {
+                        id = parser.getString();
+                    } else if(depth == 1 && "updated_at".equals(key)) {
+                        updated = parser.getString();
+                    } else if(depth == 2 && "subject".equals(parent)) {
+                        if("url".equals(key)) {
+                            url = parser.getString();
+                        } else if("latest_comment_url".equals(key)) {
+                            latest = parser.getString();
+                        }
+                    } else if(depth == 2 && "repository".equals(parent)
+                        && "full_name".equals(key)) {
+                        repo = parser.getString();
+                    }
+                    break;
+                case VALUE_NUMBER:
+                    if(depth == 1 && "id".equals(key)) {
+                        id = parser.getString();
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        return new Notification(id, updated, reason, repo, url, latest);
+    }
+}
@@ -28,8 +28,6 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
-import javax.json.JsonObject;
-
 /**
  * Smart notifications. If there are no new notifications for a few
  * checks in a row, it will skip a few next checks, thus saving bandwidth
@@ -43,7 +41,7 @@ import javax.json.JsonObject;
  *  hard-coded to 3 empty Checks. It should configurable via the system
  *  property skip.empty.notifications.
  */
-public final class SmartNotifications implements Notifications {
+public final class SmartNotifications implements Notifications, Polling {
 
     /**
      * Original notifications to use.
@@ -58,12 +56,12 @@ public final class SmartNotifications implements Notifications {
     /**
      * Nr of consecutive empty checks.
      */
-    private int empty = 0;
+    private volatile int empty = 0;
 
     /**
      * Skip this fetch, or not?
      */
-    private boolean skip = false;
+    private volatile boolean skip = false;
 
     /**
      * Ctor.
@@ -74,8 +72,8 @@ public final class SmartNotifications implements Notifications {
     }
     
     @Override
-    public List<JsonObject> fetch() throws IOException {
-        List<JsonObject> notifications = new ArrayList<>();
+    public List<Notification> fetch() throws IOException {
+        List<Notification> notifications = new ArrayList<>();
         if(!this.skip) {
             if(this.allowedEmpty == 0) {
                 this.allowedEmpty = 3;
@@ -99,4 +97,25 @@ public final class SmartNotifications implements Notifications {
         this.original.markAsRead();        
     }
 
+    @Override
+    public void markAsRead(final List<Notification> notifications)
+        throws IOException {
+        this.original.markAsRead(notifications);
+    }
+
+    @Override
+    public int empty() {
+        return this.empty;
+    }
+
+    @Override
+    public boolean skipping() {
+        return this.skip;
+    }
+
+    @Override
+    public long next() {
+        return 0;
+    }
+
 }
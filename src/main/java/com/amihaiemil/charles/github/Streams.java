@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of mention-notifications-ejb nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.github;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads request and response bodies into memory, for the wires (which
+ * may have to send a body again) and the webhook (which has to check its
+ * signature before parsing it).
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 2.1.0
+ */
+final class Streams {
+
+    /**
+     * Hidden ctor.
+     */
+    private Streams() {
+    }
+
+    /**
+     * Read the whole stream.
+     * @param content Stream.
+     * @return Bytes.
+     * @throws IOException If something goes wrong.
+     */
+    static byte[] read(final InputStream content) throws IOException {
+        return Streams.read(content, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Read the stream, unless it is too large. Reading stops as soon as
+     * the limit is exceeded.
+     * @param content Stream.
+     * @param max Maximum number of bytes.
+     * @return Bytes or null if there are more than max.
+     * @throws IOException If something goes wrong.
+     */
+    static byte[] read(final InputStream content, final int max) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[4096];
+        int read = content.read(buffer);
+        while(read >= 0 && out.size() <= max) {
+            out.write(buffer, 0, read);
+            read = content.read(buffer);
+        }
+        byte[] bytes = null;
+        if(out.size() <= max) {
+            bytes = out.toByteArray();
+        }
+        return bytes;
+    }
+}
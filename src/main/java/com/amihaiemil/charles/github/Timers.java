@@ -0,0 +1,340 @@
+/*
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of mention-notifications-ejb nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.github;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * One timer per account: each Post is sent on its own Schedule (that of a
+ * ScheduledPost, or the default one), on a ScheduledExecutorService. The
+ * accounts are spread with jitter: each gets a random offset, within its
+ * interval or, for cron schedules, within the given jitter, so they don't
+ * all hit Github and the endpoints in the same second. A Post is never
+ * sent again before its previous send finished; a slow or failing account
+ * only delays itself. The timers are kept by the scheduled Post (the
+ * origin of a ScheduledPost), so a Post whose Schedule changes keeps its
+ * timer, with the new Schedule. A PacedPost without its own Schedule is
+ * sent again when its Polling says (e.g. following Github's
+ * X-Poll-Interval), sooner or later than the default Schedule; the
+ * default Schedule only applies when the Polling doesn't say.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 2.1.0
+ */
+public final class Timers {
+
+    /**
+     * Logger.
+     */
+    private static final Logger log = LoggerFactory.getLogger(Timers.class.getName());
+
+    /**
+     * Scheduler running the Posts.
+     */
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * Schedule of the Posts which don't have their own.
+     */
+    private final Schedule fallback;
+
+    /**
+     * Spread (millis) of the cron schedules.
+     */
+    private final long jitter;
+
+    /**
+     * Random offsets.
+     */
+    private final Random random;
+
+    /**
+     * Timers, by scheduled Post.
+     */
+    private final Map<Post, Timer> timers = new HashMap<>();
+
+    /**
+     * Ctor.
+     * @param scheduler Scheduler running the Posts.
+     * @param fallback Schedule of the Posts which don't have their own.
+     * @param jitter Spread (millis) of the cron schedules.
+     */
+    public Timers(
+        final ScheduledExecutorService scheduler,
+        final Schedule fallback, final long jitter
+    ) {
+        this(scheduler, fallback, jitter, new Random());
+    }
+
+    /**
+     * Ctor.
+     * @param scheduler Scheduler running the Posts.
+     * @param fallback Schedule of the Posts which don't have their own.
+     * @param jitter Spread (millis) of the cron schedules.
+     * @param random Random offsets.
+     */
+    public Timers(
+        final ScheduledExecutorService scheduler,
+        final Schedule fallback, final long jitter, final Random random
+    ) {
+        this.scheduler = scheduler;
+        this.fallback = fallback;
+        this.jitter = jitter;
+        this.random = random;
+    }
+
+    /**
+     * Time the given Posts: new ones are scheduled, those which are no
+     * longer given are stopped (a send in progress is not interrupted),
+     * those with a new Schedule are rescheduled and the others keep their
+     * timers. A Post which cannot be scheduled is logged and skipped (or
+     * keeps its previous Schedule); it doesn't affect the others.
+     * @param posts Posts.
+     */
+    public synchronized void update(final Post[] posts) {
+        final Map<Post, Timer> timers = new HashMap<>();
+        for(int idx = 0; idx < posts.length; idx++) {
+            final Post post = posts[idx];
+            Post origin = post;
+            Schedule schedule = this.fallback;
+            if(post instanceof ScheduledPost) {
+                origin = ((ScheduledPost) post).origin();
+                schedule = ((ScheduledPost) post).schedule();
+            }
+            Timer timer = this.timers.remove(origin);
+            try {
+                if(timer == null) {
+                    timer = new Timer(origin, idx);
+                    timer.time(post, schedule, this.offset(schedule));
+                } else if(timer.timed() != post) {
+                    timer.time(post, schedule, this.offset(schedule));
+                }
+            } catch (IllegalStateException | IllegalArgumentException
+                | RejectedExecutionException ex) {
+                log.error("Could not schedule Post #" + idx + ", skipping it.", ex);
+            }
+            if(timer != null && timer.timed() != null) {
+                timers.put(origin, timer);
+            }
+        }
+        for(final Timer removed : this.timers.values()) {
+            removed.stop();
+        }
+        this.timers.clear();
+        this.timers.putAll(timers);
+    }
+
+    /**
+     * Stop all the timers.
+     */
+    public synchronized void stop() {
+        for(final Timer timer : this.timers.values()) {
+            timer.stop();
+        }
+        this.timers.clear();
+    }
+
+    /**
+     * Random offset of a Post, within the spread of its Schedule.
+     * @param schedule Schedule.
+     * @return Offset (millis).
+     */
+    private long offset(final Schedule schedule) {
+        return (long) (this.random.nextDouble() * schedule.spread(this.jitter));
+    }
+
+    /**
+     * Timer of one Post.
+     */
+    private final class Timer {
+
+        /**
+         * Post to send.
+         */
+        private final Post post;
+
+        /**
+         * Index of the Post, for logging.
+         */
+        private final int idx;
+
+        /**
+         * The Post as it was given to be timed (e.g. a ScheduledPost);
+         * null until it is timed.
+         */
+        private Post timed;
+
+        /**
+         * When it is sent.
+         */
+        private Schedule schedule;
+
+        /**
+         * The Post's offset (millis).
+         */
+        private long offset;
+
+        /**
+         * Next send.
+         */
+        private ScheduledFuture<?> next;
+
+        /**
+         * Generation of the next send; a send scheduled before the last
+         * (re)schedule doesn't run.
+         */
+        private long generation;
+
+        /**
+         * Is the Post being sent?
+         */
+        private boolean running;
+
+        /**
+         * Was it stopped?
+         */
+        private boolean stopped;
+
+        /**
+         * Ctor.
+         * @param post Post to send.
+         * @param idx Index of the Post, for logging.
+         */
+        Timer(final Post post, final int idx) {
+            this.post = post;
+            this.idx = idx;
+        }
+
+        /**
+         * The Post as it was given to be timed.
+         * @return Post or null if it was not timed yet.
+         */
+        synchronized Post timed() {
+            return this.timed;
+        }
+
+        /**
+         * Send the Post on the given Schedule. If it is being sent now, the
+         * new Schedule applies after the send; otherwise, the pending send
+         * is replaced by the first one of the new Schedule.
+         * @param given The Post as it was given.
+         * @param sched When it is sent.
+         * @param shift The Post's offset (millis).
+         * @throws IllegalStateException If the Schedule has no next time.
+         */
+        synchronized void time(final Post given, final Schedule sched, final long shift) {
+            final long now = System.currentTimeMillis();
+            final long first = sched.first(now, shift);
+            this.timed = given;
+            this.schedule = sched;
+            this.offset = shift;
+            if(!this.running) {
+                if(this.next != null) {
+                    this.next.cancel(false);
+                }
+                this.at(first - now);
+            }
+        }
+
+        /**
+         * Don't send it anymore.
+         */
+        synchronized void stop() {
+            this.stopped = true;
+            if(this.next != null) {
+                this.next.cancel(false);
+            }
+        }
+
+        /**
+         * Send the Post, unless the send is stale or the timer stopped,
+         * and schedule the next send.
+         * @param generation Generation of the send.
+         */
+        void run(final long generation) {
+            synchronized (this) {
+                if(this.stopped || generation != this.generation) {
+                    return;
+                }
+                this.running = true;
+            }
+            try {
+                this.post.send();
+            } catch (IOException e) {
+                log.error("IOException when checking or sending notifications of Post #" + this.idx + ": ", e);
+            } catch (AssertionError | RuntimeException err) {
+                log.error("Unexpected error when checking or sending notifications of Post #" + this.idx + ": ", err);
+            } finally {
+                synchronized (this) {
+                    this.running = false;
+                    final long now = System.currentTimeMillis();
+                    long due = 0;
+                    if(this.timed instanceof PacedPost) {
+                        due = ((PacedPost) this.timed).next();
+                    }
+                    try {
+                        if(due > now) {
+                            this.at(due - now);
+                        } else {
+                            this.at(this.schedule.next(now, this.offset) - now);
+                        }
+                    } catch (IllegalStateException | RejectedExecutionException ex) {
+                        log.error("Post #" + this.idx + " has no next check.", ex);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Schedule the next send, unless stopped.
+         * @param delay Delay (millis).
+         */
+        private void at(final long delay) {
+            if(!this.stopped) {
+                this.generation = this.generation + 1;
+                final long current = this.generation;
+                this.next = Timers.this.scheduler.schedule(
+                    new Runnable() {
+                        @Override
+                        public void run() {
+                            Timer.this.run(current);
+                        }
+                    },
+                    Math.max(0, delay), TimeUnit.MILLISECONDS
+                );
+            }
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of mention-notifications-ejb nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.github;
+
+import com.jcabi.http.Request;
+import com.jcabi.http.request.JdkRequest;
+import com.jcabi.http.wire.TrustedWire;
+
+/**
+ * How the http requests are sent.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 2.1.0
+ */
+public interface Transport {
+
+    /**
+     * A new request to the given uri.
+     * @param uri Uri.
+     * @return Request.
+     */
+    Request request(String uri);
+
+    /**
+     * Requests sent with HttpURLConnection, a new connection each time.
+     */
+    final class Jdk implements Transport {
+
+        @Override
+        public Request request(final String uri) {
+            return new JdkRequest(uri);
+        }
+    }
+
+    /**
+     * Requests which time out. Without timeouts, a host which does not
+     * answer would block the checking thread forever, so a small pool of
+     * threads could not keep up with many accounts: a cancelled check
+     * does not interrupt a blocked socket read, but a timeout does.
+     */
+    final class Timed implements Transport {
+
+        /**
+         * Original transport.
+         */
+        private final Transport origin;
+
+        /**
+         * Connect timeout, in milliseconds.
+         */
+        private final int connect;
+
+        /**
+         * Read timeout, in milliseconds.
+         */
+        private final int read;
+
+        /**
+         * Ctor.
+         * @param origin Original transport.
+         * @param connect Connect timeout, in milliseconds.
+         * @param read Read timeout, in milliseconds.
+         */
+        public Timed(final Transport origin, final int connect, final int read) {
+            this.origin = origin;
+            this.connect = connect;
+            this.read = read;
+        }
+
+        @Override
+        public Request request(final String uri) {
+            return this.origin.request(uri).timeout(this.connect, this.read);
+        }
+    }
+
+    /**
+     * Requests which trust any certificate (e.g. of a self-signed
+     * endpoint), through jcabi's TrustedWire. That wire swaps the JVM-wide
+     * default TLS socket factory under a global lock for every request, so
+     * use it only with the {@link Jdk} transport; an {@link HttpPool}
+     * trusts the endpoints with its own TLS connections instead.
+     */
+    final class Trusted implements Transport {
+
+        /**
+         * Original transport.
+         */
+        private final Transport origin;
+
+        /**
+         * Ctor.
+         * @param origin Original transport.
+         */
+        public Trusted(final Transport origin) {
+            this.origin = origin;
+        }
+
+        @Override
+        public Request request(final String uri) {
+            return this.origin.request(uri).through(TrustedWire.class);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of mention-notifications-ejb nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.github;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Executor which starts a virtual thread for each task, if the runtime
+ * has them (JDK 21+); otherwise, a fixed pool of platform threads.<br><br>
+ * With virtual threads, every Post gets its own thread, so the blocking
+ * RtNotifications and NtPost can all wait on Github and the endpoints at
+ * the same time, and cancelling a Post which misses the tick's deadline
+ * interrupts its socket operations too.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 2.1.0
+ */
+public final class VirtualThreads {
+
+    /**
+     * Logger.
+     */
+    private static final Logger log = LoggerFactory.getLogger(VirtualThreads.class.getName());
+
+    /**
+     * Size of the fallback pool.
+     */
+    private final int fallback;
+
+    /**
+     * Ctor.
+     * @param fallback Number of platform threads used if the runtime
+     *  has no virtual threads.
+     */
+    public VirtualThreads(final int fallback) {
+        this.fallback = fallback;
+    }
+
+    /**
+     * Does the runtime have virtual threads?
+     * @return True or false.
+     */
+    public static boolean available() {
+        boolean available;
+        try {
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            available = true;
+        } catch (NoSuchMethodException ex) {
+            available = false;
+        }
+        return available;
+    }
+
+    /**
+     * A new executor. It has to be shut down by the caller.
+     * @return ExecutorService.
+     */
+    public ExecutorService executor() {
+        ExecutorService executor;
+        try {
+            executor = (ExecutorService) Executors.class
+                .getMethod("newVirtualThreadPerTaskExecutor")
+                .invoke(null);
+            log.info("Running the Posts on virtual threads.");
+        } catch (NoSuchMethodException | IllegalAccessException
+            | InvocationTargetException ex) {
+            log.warn(
+                "Virtual threads are not available, using a pool of "
+                + this.fallback + " platform threads."
+            );
+            executor = Executors.newFixedThreadPool(this.fallback);
+        }
+        return executor;
+    }
+}
@@ -0,0 +1,276 @@
+/*
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of mention-notifications-ejb nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.github;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidKeyException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.regex.Pattern;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import javax.json.Json;
+import javax.json.JsonException;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Github webhook receiving issue_comment and pull_request_review_comment
+ * events. A created comment which mentions the agent becomes a "mention"
+ * notification (any other comment becomes a "comment" one); they go
+ * through the same Reason as the polled notifications and are sent right
+ * away by the Post, on an executor: Github gives up on a delivery after
+ * 10 seconds, so the event is acknowledged without waiting for the
+ * endpoint.<br><br>
+ * Polling should stay on, at a longer interval, to pick up anything
+ * the webhook missed.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 2.1.0
+ */
+public final class Webhook {
+
+    /**
+     * Logger.
+     */
+    private static final Logger log = LoggerFactory.getLogger(Webhook.class.getName());
+
+    /**
+     * Secret of the webhook.
+     */
+    private final SecretKeySpec secret;
+
+    /**
+     * Pattern matching a mention of the agent.
+     */
+    private final Pattern mention;
+
+    /**
+     * Reason of the notifications we're interested in.
+     */
+    private final Reason reason;
+
+    /**
+     * Where the received notifications are pushed.
+     */
+    private final PushedNotifications pushed;
+
+    /**
+     * Post sending the pushed notifications.
+     */
+    private final Post post;
+
+    /**
+     * Executor sending the pushed notifications.
+     */
+    private final Executor executor;
+
+    /**
+     * Lock of the sends, so the Post sends one event at a time.
+     */
+    private final Object lock = new Object();
+
+    /**
+     * Ctor. The notifications are sent on the thread which receives them.
+     * @param secret Secret of the webhook.
+     * @param login Github username of the agent.
+     * @param reason Reason of the notifications we're interested in.
+     * @param pushed Where the received notifications are pushed.
+     * @param post Post sending the pushed notifications.
+     */
+    public Webhook(
+        final String secret, final String login, final Reason reason,
+        final PushedNotifications pushed, final Post post
+    ) {
+        this(
+            secret, login, reason, pushed, post,
+            new Executor() {
+                @Override
+                public void execute(final Runnable task) {
+                    task.run();
+                }
+            }
+        );
+    }
+
+    /**
+     * Ctor.
+     * @param secret Secret of the webhook.
+     * @param login Github username of the agent.
+     * @param reason Reason of the notifications we're interested in.
+     * @param pushed Where the received notifications are pushed.
+     * @param post Post sending the pushed notifications.
+     * @param executor Executor sending the pushed notifications.
+     */
+    public Webhook(
+        final String secret, final String login, final Reason reason,
+        final PushedNotifications pushed, final Post post,
+        final Executor executor
+    ) {
+        this.secret = new SecretKeySpec(
+            secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"
+        );
+        this.mention = Pattern.compile(
+            "(^|[^\\w])@" + Pattern.quote(login) + "($|[^\\w-])",
+            Pattern.CASE_INSENSITIVE
+        );
+        this.reason = reason;
+        this.pushed = pushed;
+        this.post = post;
+        this.executor = executor;
+    }
+
+    /**
+     * Is the body signed with our secret?
+     * @param body Raw body of the request.
+     * @param signature Value of the X-Hub-Signature-256 header.
+     * @return True or false.
+     */
+    public boolean verify(final byte[] body, final String signature) {
+        boolean valid = false;
+        if(signature != null && signature.startsWith("sha256=")) {
+            try {
+                final Mac mac = Mac.getInstance("HmacSHA256");
+                mac.init(this.secret);
+                valid = MessageDigest.isEqual(
+                    Webhook.hex(mac.doFinal(body)).getBytes(StandardCharsets.US_ASCII),
+                    signature.substring("sha256=".length()).trim()
+                        .toLowerCase().getBytes(StandardCharsets.US_ASCII)
+                );
+            } catch (NoSuchAlgorithmException | InvalidKeyException ex) {
+                throw new IllegalStateException(ex);
+            }
+        }
+        return valid;
+    }
+
+    /**
+     * Receive an event. The body should be verified first. The notifications
+     * are handed to the executor, a failure to send them is only logged
+     * (the polling picks them up later).
+     * @param event Value of the X-GitHub-Event header.
+     * @param body Raw body of the request.
+     * @return Number of notifications to send.
+     */
+    public int receive(final String event, final byte[] body) {
+        final List<Notification> notifications = new ArrayList<>();
+        if("issue_comment".equals(event)
+            || "pull_request_review_comment".equals(event)) {
+            final Notification notification = this.notification(event, body);
+            if(notification != null) {
+                notifications.add(notification);
+            }
+        }
+        final List<Notification> filtered = this.reason.filter(notifications);
+        if(!filtered.isEmpty()) {
+            log.info("Webhook received " + filtered + ", sending...");
+            this.pushed.push(filtered);
+            this.executor.execute(
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        synchronized (Webhook.this.lock) {
+                            try {
+                                Webhook.this.post.send();
+                            } catch (IOException ex) {
+                                log.error("Could not send the notifications received by the webhook", ex);
+                            } catch (AssertionError err) {
+                                log.error("Unexpected status response when sending the notifications received by the webhook", err);
+                            }
+                        }
+                    }
+                }
+            );
+        }
+        return filtered.size();
+    }
+
+    /**
+     * Notification of a comment event.
+     * @param event Event type.
+     * @param body Json payload.
+     * @return Notification or null if the event is not a created comment.
+     *  The event doesn't tell the notification thread, so the notification
+     *  is known by its comment only; the same comment, polled later from
+     *  Github, is recognized as delivered by it.
+     */
+    private Notification notification(final String event, final byte[] body) {
+        Notification notification = null;
+        try (final JsonReader reader = Json.createReader(new ByteArrayInputStream(body))) {
+            final JsonObject payload = reader.readObject();
+            final JsonObject comment = payload.getJsonObject("comment");
+            final JsonObject issue;
+            if("issue_comment".equals(event)) {
+                issue = payload.getJsonObject("issue");
+            } else {
+                issue = payload.getJsonObject("pull_request");
+            }
+            final JsonObject repo = payload.getJsonObject("repository");
+            if("created".equals(payload.getString("action", ""))
+                && comment != null && issue != null && repo != null
+                && comment.containsKey("url")) {
+                final String reason;
+                if(this.mention.matcher(comment.getString("body", "")).find()) {
+                    reason = Notification.Type.MENTION.reason();
+                } else {
+                    reason = Notification.Type.COMMENT.reason();
+                }
+                notification = new Notification(
+                    "0",
+                    comment.getString("updated_at", null),
+                    reason,
+                    repo.getString("full_name", null),
+                    issue.getString("url", null),
+                    comment.getString("url", null)
+                );
+            }
+        } catch (JsonException | ClassCastException ex) {
+            log.warn("Unexpected " + event + " payload, ignoring it.", ex);
+        }
+        return notification;
+    }
+
+    /**
+     * Hex representation of the bytes.
+     * @param bytes Bytes.
+     * @return Lowercase hex string.
+     */
+    private static String hex(final byte[] bytes) {
+        final StringBuilder hex = new StringBuilder();
+        for(final byte value : bytes) {
+            hex.append(String.format("%02x", value));
+        }
+        return hex.toString();
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of mention-notifications-ejb nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.github;
+
+import java.io.IOException;
+
+import javax.ejb.EJB;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Servlet receiving the Github webhook. It is not registered
+ * automatically; if you include this jar in your .war, map it in your
+ * web.xml (e.g. to /github/webhook/*) and configure the webhook.* system
+ * properties. Each account's Github webhook points to
+ * /github/webhook/{key}, where key is the account's key (as in its
+ * metrics); /github/webhook goes to the default account (webhook.account).
+ * The webhook comes from the GithubNotificationsCheck EJB, so it shares
+ * the account's deliveries and outbox with the polling. A
+ * verified event is answered with 202 right away, the notifications are
+ * sent afterwards, on the webhook's executor.
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 2.1.0
+ */
+public class WebhookServlet extends HttpServlet {
+
+    /**
+     * Serial version.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Logger.
+     */
+    private static final Logger log = LoggerFactory.getLogger(WebhookServlet.class.getName());
+
+    /**
+     * Maximum size of a payload; Github sends at most 25MB, but comment
+     * events are much smaller.
+     */
+    private static final int MAX_BODY = 1024 * 1024;
+
+    /**
+     * The webhook.
+     */
+    private transient Webhook webhook;
+
+    /**
+     * The checker, owning the accounts.
+     */
+    @EJB
+    private transient GithubNotificationsCheck check;
+
+    /**
+     * Default ctor, the webhooks come from the GithubNotificationsCheck EJB,
+     * one per account.
+     */
+    public WebhookServlet() {
+        this(null);
+    }
+
+    /**
+     * Ctor.
+     * @param webhook The webhook.
+     */
+    public WebhookServlet(final Webhook webhook) {
+        this.webhook = webhook;
+    }
+
+    @Override
+    protected void doPost(
+        final HttpServletRequest req, final HttpServletResponse resp
+    ) throws IOException {
+        Webhook hook = this.webhook;
+        if(hook == null) {
+            hook = this.check.webhook(WebhookServlet.account(req));
+        }
+        final byte[] body = Streams.read(req.getInputStream(), MAX_BODY);
+        if(hook == null) {
+            log.warn("Webhook payload for an unknown account, rejecting it.");
+            resp.sendError(HttpServletResponse.SC_NOT_FOUND);
+        } else if(body == null) {
+            resp.sendError(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE);
+        } else if(!hook.verify(body, req.getHeader("X-Hub-Signature-256"))) {
+            log.warn("Webhook payload with an invalid signature, rejecting it.");
+            resp.sendError(HttpServletResponse.SC_UNAUTHORIZED);
+        } else {
+            hook.receive(req.getHeader("X-GitHub-Event"), body);
+            resp.setStatus(HttpServletResponse.SC_ACCEPTED);
+        }
+    }
+
+    /**
+     * Key of the account the event is delivered to: the last segment of
+     * the url (e.g. /github/webhook/{key}), or empty for the default one.
+     * @param req Request.
+     * @return Key of the account, possibly empty.
+     */
+    private static String account(final HttpServletRequest req) {
+        String account = "";
+        final String path = req.getPathInfo();
+        if(path != null) {
+            account = path.replaceAll("^/+|/+$", "");
+        }
+        return account;
+    }
+}
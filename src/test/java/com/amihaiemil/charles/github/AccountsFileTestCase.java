@@ -0,0 +1,243 @@
+/*
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of mention-notifications-ejb nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.github;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.arrayWithSize;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for {@link AccountsFile}
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 2.1.0
+ */
+public final class AccountsFileTestCase {
+
+    /**
+     * Temporary folder.
+     */
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Accounts file.
+     */
+    private Path file;
+
+    /**
+     * Set accounts.file, so FromSystem doesn't need github.auth.tokens.
+     */
+    @Before
+    public void accountsFile() {
+        this.file = this.folder.getRoot().toPath().resolve("accounts");
+        System.setProperty("accounts.file", this.file.toString());
+    }
+
+    /**
+     * Clear accounts.file.
+     */
+    @After
+    public void clear() {
+        System.clearProperty("accounts.file");
+    }
+
+    /**
+     * AccountsFile reads the accounts and keeps their Posts between calls.
+     * @throws IOException If something goes wrong.
+     */
+    @Test
+    public void readsAccounts() throws IOException {
+        this.write("# bots\ntoken1 http://localhost/1\n\n  token2\thttp://localhost/2 \n");
+        final AccountsFile accounts = new AccountsFile(this.file, new FromSystem());
+        try {
+            final Post[] posts = accounts.posts();
+            assertThat(posts, arrayWithSize(2));
+            final Post[] again = accounts.posts();
+            assertThat(again[0], sameInstance(posts[0]));
+            assertThat(again[1], sameInstance(posts[1]));
+        } finally {
+            accounts.close();
+        }
+    }
+
+    /**
+     * The webhook finds its account in the accounts file, by the
+     * account's key.
+     * @throws IOException If something goes wrong.
+     */
+    @Test
+    public void servesWebhooksOfListedAccounts() throws IOException {
+        this.write("token1 http://localhost/1\ntoken2 http://localhost/2\n");
+        System.setProperty("webhook.secret", "secret");
+        System.setProperty("webhook.login", "charlesmike");
+        final FromSystem system = new FromSystem();
+        final AccountsFile accounts = new AccountsFile(this.file, system);
+        try {
+            final String key = FromSystem.key("token2");
+            assertThat(accounts.accounts().get(key), is(new String[] {"token2", "http://localhost/2"}));
+            final Webhook webhook = system.webhook(accounts, key);
+            assertThat(webhook, notNullValue());
+            assertThat(system.webhook(accounts, key), sameInstance(webhook));
+            assertThat(system.webhook(accounts, ""), notNullValue());
+            assertThat(system.webhook(accounts, FromSystem.key("token3")), nullValue());
+        } finally {
+            accounts.close();
+            system.close();
+            System.clearProperty("webhook.secret");
+            System.clearProperty("webhook.login");
+        }
+    }
+
+    /**
+     * AccountsFile picks up the changes of the file, keeping the Posts of
+     * the unchanged accounts.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void reloadsChangedFile() throws Exception {
+        this.write("token1 http://localhost/1\ntoken2 http://localhost/2\n");
+        final AccountsFile accounts = new AccountsFile(this.file, new FromSystem());
+        try {
+            final Post[] posts = accounts.posts();
+            this.write(
+                "token1 http://localhost/1\ntoken2 http://localhost/22\n"
+                + "token3 http://localhost/3\n"
+            );
+            final Post[] reloaded = this.reloaded(accounts, 3);
+            assertThat(reloaded[0], sameInstance(posts[0]));
+            assertThat(reloaded[1], not(sameInstance(posts[1])));
+            this.write("token3 http://localhost/3\n");
+            final Post[] removed = this.reloaded(accounts, 1);
+            assertThat(removed[0], sameInstance(reloaded[2]));
+        } finally {
+            accounts.close();
+        }
+    }
+
+    /**
+     * AccountsFile gives the accounts with a schedule as ScheduledPosts.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void readsSchedules() throws Exception {
+        this.write("token1 http://localhost/1 15s\ntoken2 http://localhost/2\n");
+        final AccountsFile accounts = new AccountsFile(this.file, new FromSystem());
+        try {
+            final Post[] posts = accounts.posts();
+            assertThat(posts[0], instanceOf(ScheduledPost.class));
+            assertThat(posts[1], not(instanceOf(ScheduledPost.class)));
+            this.write(
+                "token1 http://localhost/1 */5 * * * *\ntoken2 http://localhost/2\n"
+                + "token3 http://localhost/3\n"
+            );
+            final Post[] reloaded = this.reloaded(accounts, 3);
+            assertThat(reloaded[0], instanceOf(ScheduledPost.class));
+            assertThat(reloaded[0], not(sameInstance(posts[0])));
+            assertThat(reloaded[1], sameInstance(posts[1]));
+        } finally {
+            accounts.close();
+        }
+    }
+
+    /**
+     * AccountsFile keeps the accounts it had if the file is malformed.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void keepsAccountsIfMalformed() throws Exception {
+        this.write("token1 http://localhost/1\n");
+        final AccountsFile accounts = new AccountsFile(this.file, new FromSystem());
+        try {
+            final Post[] posts = accounts.posts();
+            this.write("token1\n");
+            final long end = System.currentTimeMillis() + 3000L;
+            while(System.currentTimeMillis() < end) {
+                assertThat(accounts.posts()[0], sameInstance(posts[0]));
+                Thread.sleep(100L);
+            }
+        } finally {
+            accounts.close();
+        }
+    }
+
+    /**
+     * AccountsFile rejects a token listed on two lines, even with
+     * different endpoints.
+     * @throws Exception If something goes wrong.
+     */
+    @Test (expected = IllegalArgumentException.class)
+    public void rejectsRepeatedTokens() throws Exception {
+        this.write("token1 http://localhost/1\ntoken1 http://localhost/2\n");
+        new AccountsFile(this.file, new FromSystem()).close();
+    }
+
+    /**
+     * Replace the file, the way an editor or a deployment script would.
+     * @param accounts Content.
+     * @throws IOException If something goes wrong.
+     */
+    private void write(final String accounts) throws IOException {
+        final Path temp = this.folder.newFile().toPath();
+        Files.write(temp, accounts.getBytes(StandardCharsets.UTF_8));
+        Files.move(temp, this.file, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Wait (at most 10 seconds) until the accounts are reloaded.
+     * @param accounts Accounts.
+     * @param size Expected number of accounts.
+     * @return Posts.
+     * @throws InterruptedException If interrupted.
+     */
+    private Post[] reloaded(final AccountsFile accounts, final int size)
+        throws InterruptedException {
+        final long end = System.currentTimeMillis() + 10000L;
+        Post[] posts = accounts.posts();
+        while(posts.length != size && System.currentTimeMillis() < end) {
+            Thread.sleep(100L);
+            posts = accounts.posts();
+        }
+        assertThat(posts.length, is(size));
+        return posts;
+    }
+}
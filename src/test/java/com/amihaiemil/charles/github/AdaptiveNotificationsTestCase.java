@@ -0,0 +1,136 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of mention-notifications-ejb nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.github;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+
+import org.junit.Test;
+
+import com.jcabi.http.mock.MkAnswer;
+import com.jcabi.http.mock.MkContainer;
+import com.jcabi.http.mock.MkGrizzlyContainer;
+
+/**
+ * Unit tests for {@link AdaptiveNotifications}
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 2.1.0
+ */
+@SuppressWarnings("resource")
+public final class AdaptiveNotificationsTestCase {
+
+    /**
+     * AdaptiveNotifications doesn't poll again before the
+     * X-Poll-Interval passed.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void waitsForPollInterval() throws Exception {
+        int port = this.port();
+        MkContainer server = new MkGrizzlyContainer()
+            .next(new MkAnswer.Simple("[]").withHeader("X-Poll-Interval", "60"))
+            .start(port);
+        try {
+            Notifications adaptive = new AdaptiveNotifications(
+                new RtNotifications(
+                    new Reason.Fake(), "fake_token", "http://localhost:"+port+"/"
+                )
+            );
+            for(int i=0;i<5;i++) {
+                assertTrue(adaptive.fetch().isEmpty());
+            }
+            assertTrue(server.queries() == 1);
+        } finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * AdaptiveNotifications polls at every check if Github allows it.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void pollsBusyAccount() throws Exception {
+        int port = this.port();
+        MkContainer server = new MkGrizzlyContainer()
+            .next(
+                new MkAnswer.Simple(
+                    "[" + this.notification("amihaiemil/first", 1) + "]"
+                ).withHeader("X-Poll-Interval", "0")
+            )
+            .next(
+                new MkAnswer.Simple(
+                    "[" + this.notification("amihaiemil/second", 2) + "]"
+                ).withHeader("X-Poll-Interval", "0")
+            )
+            .next(new MkAnswer.Simple("[]").withHeader("X-Poll-Interval", "0"))
+            .next(new MkAnswer.Simple("[]").withHeader("X-Poll-Interval", "0"))
+            .start(port);
+        try {
+            Notifications adaptive = new AdaptiveNotifications(
+                new RtNotifications(
+                    new Reason.Fake(), "fake_token", "http://localhost:"+port+"/"
+                )
+            );
+            assertTrue(adaptive.fetch().size() == 1);
+            assertTrue(adaptive.fetch().size() == 1);
+            assertTrue(adaptive.fetch().isEmpty());
+            assertTrue(adaptive.fetch().isEmpty());
+            assertTrue(server.queries() == 4);
+        } finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * A notification, as Github sends it.
+     * @param repo Full name of the repository.
+     * @param issue Issue number.
+     * @return Json notification.
+     */
+    private String notification(final String repo, final int issue) {
+        return "{\"id\":\"" + issue + "\",\"unread\":true,\"reason\":\"mention\","
+            + "\"updated_at\":\"2017-03-18T09:22:31Z\",\"subject\":{\"title\":\"Test\","
+            + "\"url\":\"https://api.github.com/repos/" + repo + "/issues/" + issue + "\","
+            + "\"latest_comment_url\":\"https://api.github.com/repos/" + repo
+            + "/issues/comments/1\",\"type\":\"Issue\"},\"repository\":{\"id\":1,"
+            + "\"full_name\":\"" + repo + "\",\"owner\":{\"login\":\"amihaiemil\"}},"
+            + "\"url\":\"https://api.github.com/notifications/threads/" + issue + "\"}";
+    }
+
+    /**
+     * Find a free port.
+     * @return A free port.
+     * @throws IOException If something goes wrong.
+     */
+    private int port() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of mention-notifications-ejb nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.github;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.jcabi.http.Response;
+
+/**
+ * Unit tests for {@link Backoff}
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 2.1.0
+ */
+public final class BackoffTestCase {
+
+    /**
+     * Backoff knows which statuses are worth retrying.
+     */
+    @Test
+    public void classifiesStatuses() {
+        final Backoff backoff = new Backoff(3, 100, 1000);
+        assertThat(backoff.retryable(503), is(true));
+        assertThat(backoff.retryable(429), is(true));
+        assertThat(backoff.retryable(500), is(true));
+        assertThat(backoff.retryable(200), is(false));
+        assertThat(backoff.retryable(401), is(false));
+        assertThat(backoff.retryable(404), is(false));
+    }
+
+    /**
+     * Backoff waits exponentially longer, with jitter, up to the maximum.
+     */
+    @Test
+    public void growsExponentiallyWithJitter() {
+        final Backoff backoff = new Backoff(10, 100, 1000, new Random(1));
+        for(int attempt = 1; attempt <= 10; attempt++) {
+            final long delay = backoff.delay(attempt, null);
+            assertThat(delay, greaterThanOrEqualTo(0L));
+            assertThat(
+                delay,
+                lessThanOrEqualTo(Math.min(1000L, 100L << (attempt - 1)))
+            );
+        }
+    }
+
+    /**
+     * Backoff honors Retry-After, unless it is longer than the maximum.
+     */
+    @Test
+    public void honorsRetryAfter() {
+        final Backoff backoff = new Backoff(3, 100, 5000);
+        assertThat(backoff.delay(1, this.response("Retry-After", "2")), is(2000L));
+        assertThat(backoff.delay(1, this.response("retry-after", "60")), is(-1L));
+        assertThat(
+            backoff.delay(1, this.response("Retry-After", "Wed, 21 Oct 2015 07:28:00 GMT")),
+            is(0L)
+        );
+    }
+
+    /**
+     * Backoff always tries at least once.
+     */
+    @Test
+    public void triesAtLeastOnce() {
+        assertThat(new Backoff(0, 100, 1000).attempts(), is(1));
+        assertThat(Backoff.NONE.attempts(), is(1));
+    }
+
+    /**
+     * Mock a response with the given header.
+     * @param name Header name.
+     * @param value Header value.
+     * @return Response.
+     */
+    private Response response(final String name, final String value) {
+        final Map<String, List<String>> headers = Collections.singletonMap(
+            name, Arrays.asList(value)
+        );
+        final Response response = mock(Response.class);
+        when(response.headers()).thenReturn(headers);
+        return response;
+    }
+}
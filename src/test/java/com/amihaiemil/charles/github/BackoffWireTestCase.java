@@ -0,0 +1,208 @@
+/*
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of mention-notifications-ejb nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.github;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.jcabi.http.Request;
+import com.jcabi.http.mock.MkAnswer;
+import com.jcabi.http.mock.MkContainer;
+import com.jcabi.http.mock.MkGrizzlyContainer;
+import com.jcabi.http.request.JdkRequest;
+
+/**
+ * Unit tests for {@link BackoffWire}
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 2.1.0
+ */
+@SuppressWarnings("resource")
+public final class BackoffWireTestCase {
+
+    /**
+     * BackoffWire retries a retryable status, sending the same body again.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void retriesUnavailable() throws Exception {
+        int port = this.port();
+        MkContainer server = new MkGrizzlyContainer()
+            .next(new MkAnswer.Simple(HttpURLConnection.HTTP_UNAVAILABLE))
+            .next(new MkAnswer.Simple(HttpURLConnection.HTTP_OK))
+            .start(port);
+        try {
+            final int status = new JdkRequest("http://localhost:" + port + "/")
+                .method(Request.POST).body().set("[1,2,3]").back()
+                .through(BackoffWire.class, new Backoff(3, 10, 100))
+                .fetch().status();
+            assertThat(status, is(HttpURLConnection.HTTP_OK));
+            assertThat(server.take().body(), is("[1,2,3]"));
+            assertThat(server.take().body(), is("[1,2,3]"));
+        } finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * BackoffWire gives up after the last attempt and passes on its response.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void givesUpAfterLastAttempt() throws Exception {
+        int port = this.port();
+        MkContainer server = new MkGrizzlyContainer()
+            .next(new MkAnswer.Simple(HttpURLConnection.HTTP_BAD_GATEWAY))
+            .next(new MkAnswer.Simple(HttpURLConnection.HTTP_BAD_GATEWAY))
+            .next(new MkAnswer.Simple(HttpURLConnection.HTTP_OK))
+            .start(port);
+        try {
+            final int status = new JdkRequest("http://localhost:" + port + "/")
+                .through(BackoffWire.class, new Backoff(2, 10, 100))
+                .fetch().status();
+            assertThat(status, is(HttpURLConnection.HTTP_BAD_GATEWAY));
+        } finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * BackoffWire does not retry a status which is not retryable.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void doesntRetryClientErrors() throws Exception {
+        int port = this.port();
+        MkContainer server = new MkGrizzlyContainer()
+            .next(new MkAnswer.Simple(HttpURLConnection.HTTP_UNAUTHORIZED))
+            .next(new MkAnswer.Simple(HttpURLConnection.HTTP_OK))
+            .start(port);
+        try {
+            final int status = new JdkRequest("http://localhost:" + port + "/")
+                .through(BackoffWire.class, new Backoff(3, 10, 100))
+                .fetch().status();
+            assertThat(status, is(HttpURLConnection.HTTP_UNAUTHORIZED));
+        } finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * BackoffWire rethrows the connection failure of the last attempt.
+     * @throws Exception If something goes wrong.
+     */
+    @Test (expected = IOException.class)
+    public void rethrowsConnectionFailure() throws Exception {
+        new JdkRequest("http://localhost:" + this.port() + "/")
+            .through(BackoffWire.class, new Backoff(2, 10, 100))
+            .fetch();
+    }
+
+    /**
+     * BackoffWire does not retry a POST whose response timed out, since
+     * the server may have received it already.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void doesntRetryPostReadTimeout() throws Exception {
+        assertThat(this.attempts(Request.POST), is(1));
+    }
+
+    /**
+     * BackoffWire retries a GET whose response timed out.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void retriesGetReadTimeout() throws Exception {
+        assertThat(this.attempts(Request.GET), is(2));
+    }
+
+    /**
+     * Send a request, with 2 attempts, to a server which accepts the
+     * connections but never answers.
+     * @param method HTTP method.
+     * @return Number of connections the server accepted.
+     * @throws Exception If something goes wrong.
+     */
+    private int attempts(final String method) throws Exception {
+        final List<Socket> accepted = new ArrayList<>();
+        boolean failed = false;
+        try (final ServerSocket server = new ServerSocket(0)) {
+            new Thread(
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            while(true) {
+                                final Socket socket = server.accept();
+                                synchronized (accepted) {
+                                    accepted.add(socket);
+                                }
+                            }
+                        } catch (IOException ex) {
+                            return;
+                        }
+                    }
+                }
+            ).start();
+            try {
+                new JdkRequest("http://localhost:" + server.getLocalPort() + "/")
+                    .method(method).body().set("[1,2,3]").back()
+                    .timeout(1000, 200)
+                    .through(BackoffWire.class, new Backoff(2, 10, 100))
+                    .fetch();
+            } catch (IOException ex) {
+                failed = true;
+            }
+        }
+        assertThat(failed, is(true));
+        synchronized (accepted) {
+            for(final Socket socket : accepted) {
+                socket.close();
+            }
+            return accepted.size();
+        }
+    }
+
+    /**
+     * Find a free port.
+     * @return A free port.
+     * @throws IOException If something goes wrong.
+     */
+    private int port() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of mention-notifications-ejb nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.github;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import java.util.HashMap;
+import java.util.List;
+
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.jcabi.http.Response;
+
+/**
+ * Unit tests for {@link BudgetedNotifications}
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 2.1.0
+ */
+public final class BudgetedNotificationsTestCase {
+
+    /**
+     * BudgetedNotifications polls while the rate limit allows it.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void pollsWithinBudget() throws Exception {
+        final Notifications notifications = new BudgetedNotifications(
+            new Notifications.FakeNotificationsWithMentions(), new RateLimit(500)
+        );
+        assertThat(notifications.fetch().size(), is(4));
+    }
+
+    /**
+     * BudgetedNotifications skips the poll when the rate limit is paused.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void skipsWhenPaused() throws Exception {
+        final RateLimit budget = new RateLimit(500);
+        final Response limited = Mockito.mock(Response.class);
+        Mockito.when(limited.status()).thenReturn(429);
+        Mockito.when(limited.headers()).thenReturn(new HashMap<String, List<String>>());
+        budget.update(limited, System.currentTimeMillis());
+        final Notifications origin = Mockito.mock(Notifications.class);
+        final Notifications notifications = new BudgetedNotifications(origin, budget);
+        assertThat(notifications.fetch().isEmpty(), is(true));
+        Mockito.verify(origin, Mockito.never()).fetch();
+        assertThat(budget.getSkipped(), is(1L));
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of mention-notifications-ejb nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.github;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for {@link FileCursor}
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 2.1.0
+ */
+public final class FileCursorTestCase {
+
+    /**
+     * Temporary folder.
+     */
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * FileCursor remembers where it was after it is re-created
+     * (e.g. after a restart).
+     * @throws IOException If something goes wrong.
+     */
+    @Test
+    public void survivesRestart() throws IOException {
+        final Path file = this.folder.getRoot().toPath().resolve("cursor");
+        final Cursor cursor = new FileCursor(file);
+        assertThat(cursor.since(), is(0L));
+        cursor.advance(1489828951000L);
+        assertThat(
+            new String(Files.readAllBytes(file), StandardCharsets.UTF_8),
+            is("2017-03-18T09:22:31Z")
+        );
+        assertThat(new FileCursor(file).since(), is(1489828951000L));
+    }
+
+    /**
+     * FileCursor never moves back.
+     * @throws IOException If something goes wrong.
+     */
+    @Test
+    public void doesntMoveBack() throws IOException {
+        final Path file = this.folder.getRoot().toPath().resolve("cursor");
+        final Cursor cursor = new FileCursor(file);
+        cursor.advance(1489828951000L);
+        cursor.advance(1489828950000L);
+        assertThat(cursor.since(), is(1489828951000L));
+        assertThat(new FileCursor(file).since(), is(1489828951000L));
+    }
+
+    /**
+     * FileCursor starts from the beginning if the file is unreadable.
+     * @throws IOException If something goes wrong.
+     */
+    @Test
+    public void ignoresUnreadableFile() throws IOException {
+        final Path file = this.folder.getRoot().toPath().resolve("cursor");
+        Files.write(file, "yesterday".getBytes(StandardCharsets.UTF_8));
+        assertThat(new FileCursor(file).since(), is(0L));
+    }
+}
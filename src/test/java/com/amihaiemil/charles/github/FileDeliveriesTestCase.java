@@ -0,0 +1,117 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of mention-notifications-ejb nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.github;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.amihaiemil.charles.github.Notification.Type;
+
+/**
+ * Unit tests for {@link FileDeliveries}
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 2.1.0
+ */
+public final class FileDeliveriesTestCase {
+
+    /**
+     * Temporary folder.
+     */
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * FileDeliveries remembers the deliveries after it is re-created
+     * (e.g. after a restart).
+     * @throws IOException If something goes wrong.
+     */
+    @Test
+    public void survivesRestart() throws IOException {
+        final Path file = this.folder.getRoot().toPath().resolve("deliveries");
+        new FileDeliveries(file, 10).add(
+            Arrays.asList(this.notification(1L, 1000L), this.notification(2L, 1000L))
+        );
+        final Deliveries reloaded = new FileDeliveries(file, 10);
+        assertThat(reloaded.delivered(this.notification(1L, 1000L)), is(true));
+        assertThat(reloaded.delivered(this.notification(2L, 1000L)), is(true));
+        assertThat(reloaded.delivered(this.notification(2L, 2000L)), is(false));
+        assertThat(reloaded.delivered(this.notification(3L, 1000L)), is(false));
+    }
+
+    /**
+     * FileDeliveries ignores a record which was only partly written.
+     * @throws IOException If something goes wrong.
+     */
+    @Test
+    public void ignoresTornRecord() throws IOException {
+        final Path file = this.folder.getRoot().toPath().resolve("deliveries");
+        new FileDeliveries(file, 10).add(Arrays.asList(this.notification(1L, 1L)));
+        Files.write(file, new byte[] {1, 2, 3}, StandardOpenOption.APPEND);
+        final Deliveries reloaded = new FileDeliveries(file, 10);
+        assertThat(reloaded.delivered(this.notification(1L, 1L)), is(true));
+        assertThat(Files.size(file), is(16L));
+    }
+
+    /**
+     * FileDeliveries compacts the file when it grows over twice the capacity.
+     * @throws IOException If something goes wrong.
+     */
+    @Test
+    public void compactsFile() throws IOException {
+        final Path file = this.folder.getRoot().toPath().resolve("deliveries");
+        final Deliveries deliveries = new FileDeliveries(file, 2);
+        for(long thread = 1; thread <= 5; thread++) {
+            deliveries.add(Arrays.asList(this.notification(thread, 1L)));
+        }
+        assertThat(Files.size(file), is(32L));
+        final Deliveries reloaded = new FileDeliveries(file, 2);
+        assertThat(reloaded.delivered(this.notification(1L, 1L)), is(false));
+        assertThat(reloaded.delivered(this.notification(4L, 1L)), is(true));
+        assertThat(reloaded.delivered(this.notification(5L, 1L)), is(true));
+    }
+
+    /**
+     * A mention notification.
+     * @param thread Thread id.
+     * @param updated Update time.
+     * @return Notification.
+     */
+    private Notification notification(final long thread, final long updated) {
+        return new Notification(
+            thread, updated, Type.MENTION, "amihaiemil/charles", 1, true
+        );
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of mention-notifications-ejb nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.github;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for {@link FileLeases}
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 2.1.0
+ */
+public final class FileLeasesTestCase {
+
+    /**
+     * Temporary folder.
+     */
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * A lease cannot be taken by another node until it expires.
+     * @throws IOException If something goes wrong.
+     */
+    @Test
+    public void takesLeaseAfterExpiry() throws IOException {
+        final Path file = this.folder.getRoot().toPath().resolve("leases");
+        final Leases first = new FileLeases(file);
+        final Leases second = new FileLeases(file);
+        assertThat(first.acquire("account/a", "node1", 1000L, 500L), is(true));
+        assertThat(second.acquire("account/a", "node2", 1400L, 500L), is(false));
+        assertThat(first.acquire("account/a", "node1", 1400L, 500L), is(true));
+        assertThat(second.acquire("account/a", "node2", 1800L, 500L), is(false));
+        assertThat(second.acquire("account/a", "node2", 1900L, 500L), is(true));
+        assertThat(first.holders("account/", 1900L), contains("node2"));
+    }
+
+    /**
+     * A released lease can be taken right away, but only its holder can
+     * release it.
+     * @throws IOException If something goes wrong.
+     */
+    @Test
+    public void releasesLease() throws IOException {
+        final Leases leases = new FileLeases(
+            this.folder.getRoot().toPath().resolve("leases")
+        );
+        leases.acquire("account/a", "node1", 1000L, 500L);
+        leases.release("account/a", "node2");
+        assertThat(leases.acquire("account/a", "node2", 1100L, 500L), is(false));
+        leases.release("account/a", "node1");
+        assertThat(leases.acquire("account/a", "node2", 1100L, 500L), is(true));
+    }
+
+    /**
+     * Only the holders of the leases which didn't expire are returned.
+     * @throws IOException If something goes wrong.
+     */
+    @Test
+    public void listsLiveHolders() throws IOException {
+        final Leases leases = new FileLeases(
+            this.folder.getRoot().toPath().resolve("leases")
+        );
+        assertThat(leases.holders("node/", 1000L), is(empty()));
+        leases.acquire("node/node1", "node1", 1000L, 500L);
+        leases.acquire("node/node2", "node2", 1200L, 500L);
+        leases.acquire("account/a", "node3", 1200L, 500L);
+        assertThat(
+            leases.holders("node/", 1400L), containsInAnyOrder("node1", "node2")
+        );
+        assertThat(leases.holders("node/", 1600L), contains("node2"));
+    }
+}
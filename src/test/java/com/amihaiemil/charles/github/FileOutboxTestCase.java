@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of mention-notifications-ejb nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.github;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.amihaiemil.charles.github.Notification.Type;
+
+/**
+ * Unit tests for {@link FileOutbox}
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 2.1.0
+ */
+public final class FileOutboxTestCase {
+
+    /**
+     * Temporary folder.
+     */
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * FileOutbox keeps the parcels, oldest first, until they are
+     * acknowledged, even after it is re-created (e.g. after a crash).
+     * @throws IOException If something goes wrong.
+     */
+    @Test
+    public void keepsParcelsUntilAcknowledged() throws IOException {
+        final Path file = this.folder.getRoot().toPath().resolve("outbox");
+        final Outbox outbox = new FileOutbox(file);
+        outbox.add(this.json("first"), Arrays.asList(this.notification(1L, 1000L)));
+        outbox.add(this.json("second"), Arrays.asList(this.notification(2L, 1000L)));
+        outbox.ack(outbox.next());
+        final Outbox reloaded = new FileOutbox(file);
+        final Outbox.Parcel parcel = reloaded.next();
+        assertThat(new String(parcel.json(), StandardCharsets.UTF_8), is("[\"second\"]"));
+        assertThat(parcel.notifications(), is(Arrays.asList(this.notification(2L, 1000L))));
+        assertThat(parcel.notifications().get(0).repo(), is("amihaiemil/charles"));
+        assertThat(parcel.notifications().get(0).issue(), is(7));
+        reloaded.ack(parcel);
+        assertThat(reloaded.next(), nullValue());
+        assertThat(new FileOutbox(file).next(), nullValue());
+        assertThat(Files.size(file), is(0L));
+    }
+
+    /**
+     * FileOutbox knows which notifications are queued.
+     * @throws IOException If something goes wrong.
+     */
+    @Test
+    public void knowsQueuedNotifications() throws IOException {
+        final Outbox outbox = new FileOutbox(
+            this.folder.getRoot().toPath().resolve("outbox")
+        );
+        outbox.add(this.json("one"), Arrays.asList(this.notification(1L, 1000L)));
+        assertThat(outbox.queued(this.notification(1L, 1000L)), is(true));
+        assertThat(outbox.queued(this.notification(1L, 2000L)), is(false));
+        assertThat(outbox.queued(this.notification(2L, 1000L)), is(false));
+        outbox.ack(outbox.next());
+        assertThat(outbox.queued(this.notification(1L, 1000L)), is(false));
+    }
+
+    /**
+     * FileOutbox is drained by one drainer at a time.
+     * @throws IOException If something goes wrong.
+     */
+    @Test
+    public void claimsForOneDrainer() throws IOException {
+        final Outbox outbox = new FileOutbox(
+            this.folder.getRoot().toPath().resolve("outbox")
+        );
+        assertThat(outbox.claim(), is(true));
+        assertThat(outbox.claim(), is(false));
+        outbox.release();
+        assertThat(outbox.claim(), is(true));
+    }
+
+    /**
+     * FileOutbox ignores a record which was only partly written.
+     * @throws IOException If something goes wrong.
+     */
+    @Test
+    public void ignoresTornRecord() throws IOException {
+        final Path file = this.folder.getRoot().toPath().resolve("outbox");
+        new FileOutbox(file).add(
+            this.json("one"), Arrays.asList(this.notification(1L, 1L))
+        );
+        final long size = Files.size(file);
+        Files.write(file, new byte[] {0, 0, 0, 9, 1, 2}, StandardOpenOption.APPEND);
+        final Outbox reloaded = new FileOutbox(file);
+        assertThat(reloaded.next().notifications().size(), is(1));
+        assertThat(Files.size(file), is(size));
+    }
+
+    /**
+     * Packed json.
+     * @param text Text in it.
+     * @return Bytes.
+     */
+    private byte[] json(final String text) {
+        return ("[\"" + text + "\"]").getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * A mention notification.
+     * @param thread Thread id.
+     * @param updated Update time.
+     * @return Notification.
+     */
+    private Notification notification(final long thread, final long updated) {
+        return new Notification(
+            thread, updated, Type.MENTION, "amihaiemil/charles", 7, true
+        );
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of mention-notifications-ejb nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.github;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for {@link FromSystem}
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 2.1.0
+ */
+public final class FromSystemTestCase {
+
+    /**
+     * Temporary folder.
+     */
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Clear the accounts.
+     */
+    @After
+    public void clear() {
+        System.clearProperty("github.auth.tokens");
+        System.clearProperty("post.endpoints");
+        System.clearProperty("checks.cluster.leases");
+        System.clearProperty("notifications.since.dir");
+    }
+
+    /**
+     * FromSystem rejects a token given twice, even with different
+     * endpoints.
+     */
+    @Test (expected = IllegalStateException.class)
+    public void rejectsRepeatedTokens() {
+        System.setProperty("github.auth.tokens", "token1;token2; token1");
+        System.setProperty(
+            "post.endpoints",
+            "http://localhost/1;http://localhost/2;http://localhost/3"
+        );
+        new FromSystem();
+    }
+
+    /**
+     * FromSystem doesn't shard the accounts unless their deliveries and
+     * cursors are kept on the volume of the leases, for the nodes taking
+     * them over.
+     */
+    @Test (expected = IllegalStateException.class)
+    public void requiresSharedStateInCluster() {
+        System.setProperty("github.auth.tokens", "token1");
+        System.setProperty("post.endpoints", "http://localhost/1");
+        System.setProperty(
+            "checks.cluster.leases",
+            this.folder.getRoot().toPath().resolve("leases").toString()
+        );
+        System.setProperty(
+            "notifications.since.dir",
+            this.folder.getRoot().toPath().resolve("since").toString()
+        );
+        new FromSystem();
+    }
+}
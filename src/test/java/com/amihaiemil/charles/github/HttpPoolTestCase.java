@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of mention-notifications-ejb nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.github;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import com.jcabi.http.Request;
+import com.jcabi.http.Response;
+import com.jcabi.http.mock.MkAnswer;
+import com.jcabi.http.mock.MkContainer;
+import com.jcabi.http.mock.MkGrizzlyContainer;
+import com.jcabi.http.mock.MkQuery;
+
+/**
+ * Unit tests for {@link HttpPool}
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 2.1.0
+ */
+@SuppressWarnings("resource")
+public final class HttpPoolTestCase {
+
+    /**
+     * HttpPool sends the requests and reads the responses.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void sendsRequests() throws Exception {
+        int port = this.port();
+        MkContainer server = new MkGrizzlyContainer()
+            .next(
+                new MkAnswer.Simple(HttpURLConnection.HTTP_OK, "[]")
+                    .withHeader("X-Poll-Interval", "60")
+            )
+            .start(port);
+        try (final HttpPool pool = new HttpPool(2, 2)) {
+            final Response response = pool.request("http://localhost:" + port + "/")
+                .header("Authorization", "token 123")
+                .method(Request.PUT).body().set("{}").back()
+                .fetch();
+            assertThat(response.status(), is(HttpURLConnection.HTTP_OK));
+            assertThat(response.body(), is("[]"));
+            assertThat(
+                response.headers().get("X-Poll-Interval").get(0), is("60")
+            );
+            final MkQuery request = server.take();
+            assertThat(request.method(), is(Request.PUT));
+            assertThat(request.body(), is("{}"));
+            assertThat(request.headers().get("Authorization").get(0), is("token 123"));
+        } finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * HttpPool keeps the connection alive and reuses it.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void reusesConnections() throws Exception {
+        int port = this.port();
+        MkContainer server = new MkGrizzlyContainer()
+            .next(new MkAnswer.Simple(HttpURLConnection.HTTP_OK, "one"))
+            .next(new MkAnswer.Simple(HttpURLConnection.HTTP_OK, "two"))
+            .next(new MkAnswer.Simple(HttpURLConnection.HTTP_OK, "three"))
+            .start(port);
+        try (final HttpPool pool = new HttpPool(5, 5)) {
+            for(int idx = 0; idx < 3; idx++) {
+                pool.request("http://localhost:" + port + "/").fetch();
+            }
+            assertThat(pool.getRequests(), is(3L));
+            assertThat(pool.getLeased(), is(0));
+            assertThat(pool.getAvailable(), is(1));
+            assertThat(pool.getMax(), is(5));
+            assertThat(pool.getOpened(), is(1L));
+        } finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * HttpPool lets many accounts poll at the same time over a few
+     * shared connections.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void sharesConnectionsBetweenAccounts() throws Exception {
+        final int accounts = 8;
+        int port = this.port();
+        MkContainer server = new MkGrizzlyContainer();
+        for(int idx = 0; idx < accounts; idx++) {
+            server = server.next(new MkAnswer.Simple(HttpURLConnection.HTTP_OK, "[]"));
+        }
+        server.start(port);
+        final ExecutorService threads = Executors.newFixedThreadPool(accounts);
+        try (final HttpPool pool = new HttpPool(2, 2)) {
+            final List<Future<List<Notification>>> polls = new ArrayList<>();
+            for(int idx = 0; idx < accounts; idx++) {
+                final Notifications notifications = new RtNotifications(
+                    new Mention(), Backoff.NONE, pool,
+                    "token " + idx, "http://localhost:" + port + "/"
+                );
+                polls.add(
+                    threads.submit(
+                        new Callable<List<Notification>>() {
+                            @Override
+                            public List<Notification> call() throws Exception {
+                                return notifications.fetch();
+                            }
+                        }
+                    )
+                );
+            }
+            for(final Future<List<Notification>> poll : polls) {
+                assertThat(poll.get().isEmpty(), is(true));
+            }
+            assertThat(pool.getRequests(), is((long) accounts));
+            assertThat(pool.getOpened(), lessThanOrEqualTo(2L));
+        } finally {
+            threads.shutdownNow();
+            server.stop();
+        }
+    }
+
+    /**
+     * Find a free port.
+     * @return A free port.
+     * @throws IOException If something goes wrong.
+     */
+    private int port() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
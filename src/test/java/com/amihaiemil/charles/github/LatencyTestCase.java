@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of mention-notifications-ejb nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.github;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link Latency}
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 2.1.0
+ */
+public final class LatencyTestCase {
+
+    /**
+     * Latency is empty before anything is recorded.
+     */
+    @Test
+    public void startsEmpty() {
+        final Latency latency = new Latency();
+        assertThat(latency.getCount(), is(0L));
+        assertThat(latency.getMeanMillis(), is(0.0));
+        assertThat(latency.getP99Millis(), is(0L));
+    }
+
+    /**
+     * Latency approximates the percentiles by the upper bound
+     * of their bucket.
+     */
+    @Test
+    public void approximatesPercentiles() {
+        final Latency latency = new Latency();
+        for(int idx = 0; idx < 98; idx++) {
+            latency.record(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+        latency.record(TimeUnit.MILLISECONDS.toNanos(300));
+        latency.record(TimeUnit.MILLISECONDS.toNanos(3000));
+        assertThat(latency.getCount(), is(100L));
+        assertThat(latency.getP50Millis(), is(15L));
+        assertThat(latency.getP99Millis(), is(511L));
+        assertThat(latency.getMaxMillis(), is(3000.0));
+        assertThat(latency.getMeanMillis(), is(42.8));
+    }
+}
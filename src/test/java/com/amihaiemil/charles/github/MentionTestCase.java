@@ -29,8 +29,6 @@ import static org.junit.Assert.assertTrue;
 import java.io.IOException;
 import java.util.List;
 
-import javax.json.JsonObject;
-
 import org.junit.Test;
 
 /**
@@ -47,7 +45,7 @@ public final class MentionTestCase {
      */
     @Test
     public void worksWithEmptyList() throws IOException {
-        final List<JsonObject> filtered = new Mention().filter(
+        final List<Notification> filtered = new Mention().filter(
             new Notifications.FakeEmptyNotifications().fetch()
         );
         assertTrue(filtered.isEmpty());
@@ -59,7 +57,7 @@ public final class MentionTestCase {
      */
     @Test
     public void returnsEmptyList() throws IOException {
-    	final List<JsonObject> filtered = new Mention().filter(
+    	final List<Notification> filtered = new Mention().filter(
             new Notifications.FakeOtherNotifications().fetch()
         );
         assertTrue(filtered.isEmpty());
@@ -71,7 +69,7 @@ public final class MentionTestCase {
      */
     @Test
     public void returnsGoodNotifications() throws IOException {
-        final List<JsonObject> filtered = new Mention().filter(
+        final List<Notification> filtered = new Mention().filter(
             new Notifications.FakeNotificationsWithMentions().fetch()
         );
         assertTrue(filtered.size() == 2);
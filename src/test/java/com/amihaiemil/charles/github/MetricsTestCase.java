@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of mention-notifications-ejb nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.github;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+
+import java.lang.management.ManagementFactory;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
+import org.junit.Test;
+
+import com.jcabi.http.mock.MkAnswer;
+import com.jcabi.http.mock.MkContainer;
+import com.jcabi.http.mock.MkGrizzlyContainer;
+
+/**
+ * Unit tests for {@link Metrics}
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 2.1.0
+ */
+@SuppressWarnings("resource")
+public final class MetricsTestCase {
+
+    /**
+     * Metrics keeps one AccountMetrics per account and publishes
+     * it through JMX.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void publishesAccounts() throws Exception {
+        final Metrics metrics = new Metrics();
+        final AccountMetrics account = metrics.account("test-account");
+        assertThat(metrics.account("test-account"), sameInstance(account));
+        assertThat(metrics.accounts().size(), is(1));
+        account.sent(3);
+        account.getPost().record(5000000L);
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        final ObjectName name = new ObjectName(
+            "com.amihaiemil.charles:type=Account,account=test-account"
+        );
+        assertThat((Long) server.getAttribute(name, "Sent"), is(3L));
+        assertThat(
+            (Long) ((CompositeData) server.getAttribute(name, "Post")).get("count"),
+            is(1L)
+        );
+    }
+
+    /**
+     * Metrics publishes the statistics of a connection pool through JMX.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void publishesPools() throws Exception {
+        try (HttpPool pool = new HttpPool(5, 2)) {
+            new Metrics().pool(pool, "test-pool");
+            final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            final ObjectName name = new ObjectName(
+                "com.amihaiemil.charles:type=HttpPool,name=test-pool"
+            );
+            assertThat((Integer) server.getAttribute(name, "Max"), is(5));
+            assertThat((Integer) server.getAttribute(name, "Leased"), is(0));
+            assertThat((Long) server.getAttribute(name, "Requests"), is(0L));
+        }
+    }
+
+    /**
+     * The metrics follow the notifications through the whole pipeline.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void followsThePipeline() throws Exception {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        MkContainer server = new MkGrizzlyContainer()
+            .next(new MkAnswer.Simple(HttpURLConnection.HTTP_OK))
+            .next(new MkAnswer.Simple(HttpURLConnection.HTTP_INTERNAL_ERROR))
+            .start(port);
+        try {
+            final AccountMetrics metrics = new AccountMetrics();
+            final SmartNotifications smart = new SmartNotifications(
+                new Notifications.FakeNotificationsWithMentions()
+            );
+            metrics.watch(smart);
+            final Post post = new NtPost(
+                smart, new RecentDeliveries(10), 3, Integer.MAX_VALUE,
+                Backoff.NONE, new Transport.Jdk(), metrics,
+                "fake_token", "http://localhost:" + port + "/"
+            );
+            try {
+                post.send();
+            } catch (AssertionError expected) {
+                assertThat(metrics.getSent(), is(3L));
+                assertThat(metrics.getFailed(), is(1L));
+                assertThat(metrics.getPack().getCount(), is(1L));
+                assertThat(metrics.getPost().getCount(), is(2L));
+                assertThat(metrics.getMillisSinceLastDelivery() >= 0, is(true));
+                assertThat(metrics.getEmptyChecks(), is(0));
+                assertThat(metrics.isSkippingChecks(), is(false));
+            }
+        } finally {
+            server.stop();
+        }
+    }
+}
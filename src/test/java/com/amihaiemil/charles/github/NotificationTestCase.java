@@ -0,0 +1,100 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of mention-notifications-ejb nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.github;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link Notification}
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 2.1.0
+ */
+public final class NotificationTestCase {
+
+    /**
+     * Notification can be built from the fields Github sends.
+     */
+    @Test
+    public void readsWireFields() {
+        final Notification notification = new Notification(
+            "230400425", "2017-03-18T09:22:31Z", "review_requested", "amihaiemil/charles",
+            "https://api.github.com/repos/amihaiemil/charles/pulls/21",
+            "https://api.github.com/repos/amihaiemil/charles/issues/comments/3"
+        );
+        MatcherAssert.assertThat(notification.thread(), Matchers.is(230400425L));
+        MatcherAssert.assertThat(
+            notification.updated(), Matchers.is(1489828951000L)
+        );
+        MatcherAssert.assertThat(
+            notification.type(),
+            Matchers.is(Notification.Type.REVIEW_REQUESTED)
+        );
+        MatcherAssert.assertThat(
+            notification.repo(), Matchers.equalTo("amihaiemil/charles")
+        );
+        MatcherAssert.assertThat(notification.issue(), Matchers.is(21));
+        MatcherAssert.assertThat(notification.newComment(), Matchers.is(true));
+        MatcherAssert.assertThat(notification.comment(), Matchers.is(3L));
+    }
+
+    /**
+     * Notification tolerates subjects which are not issues, unknown reasons
+     * and missing latest comment urls.
+     */
+    @Test
+    public void toleratesOddSubjects() {
+        final Notification notification = new Notification(
+            "7", "yesterday", "some_new_reason", "amihaiemil/charles",
+            "https://api.github.com/repos/amihaiemil/charles/commits/a1b2c3",
+            null
+        );
+        MatcherAssert.assertThat(
+            notification.type(), Matchers.is(Notification.Type.OTHER)
+        );
+        MatcherAssert.assertThat(notification.issue(), Matchers.is(0));
+        MatcherAssert.assertThat(notification.updated(), Matchers.is(0L));
+        MatcherAssert.assertThat(notification.newComment(), Matchers.is(false));
+        MatcherAssert.assertThat(notification.comment(), Matchers.is(0L));
+    }
+
+    /**
+     * Notifications from the same repository share the repository name.
+     */
+    @Test
+    public void sharesRepoNames() {
+        final Notification first = new Notification(
+            "1", null, "mention", new String("amihaiemil/charles"), "/issues/1", "/c/1"
+        );
+        final Notification second = new Notification(
+            "2", null, "mention", new String("amihaiemil/charles"), "/issues/2", "/c/2"
+        );
+        MatcherAssert.assertThat(
+            first.repo(), Matchers.sameInstance(second.repo())
+        );
+    }
+}
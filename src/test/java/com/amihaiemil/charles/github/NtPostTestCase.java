@@ -24,19 +24,31 @@
  */
 package com.amihaiemil.charles.github;
 
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.net.HttpURLConnection;
 import java.net.ServerSocket;
+import java.util.List;
+import java.util.concurrent.Executor;
 
 import javax.json.Json;
 import javax.json.JsonArray;
 import javax.json.JsonObject;
 import javax.ws.rs.core.HttpHeaders;
 
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import com.jcabi.http.mock.MkAnswer;
 import com.jcabi.http.mock.MkContainer;
@@ -52,6 +64,12 @@ import com.jcabi.http.mock.MkQuery;
 @SuppressWarnings("resource")
 public final class NtPostTestCase {
 
+    /**
+     * Temporary folder.
+     */
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
     /**
      * NtPost  can send notifications successfully.
      * @throws Exception If something goes wrong.
@@ -99,6 +117,112 @@ public final class NtPostTestCase {
         ntp.send();
     }
     
+    /**
+     * NtPost does not send notifications which were delivered before,
+     * it only marks them as read (FakeErrorOnMarkRead throws ISE there).
+     * @throws Exception If something goes wrong.
+     */
+    @Test (expected = IllegalStateException.class)
+    public void doesntSendDeliveredNotifications() throws Exception {
+        Notifications notifications = new Notifications.FakeErrorOnMarkRead();
+        Deliveries deliveries = new RecentDeliveries(10);
+        deliveries.add(notifications.fetch());
+        Post ntp = new NtPost(
+            notifications, deliveries, "fake_token", "http://localhost:1/"
+        );
+        ntp.send();
+    }
+
+    /**
+     * NtPost sends the notifications in chunks, each packed the same as
+     * a whole parcel.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void sendsNotificationsInChunks() throws Exception {
+        int port = this.port();
+        MkContainer server = new MkGrizzlyContainer()
+            .next(new MkAnswer.Simple(HttpURLConnection.HTTP_OK))
+            .next(new MkAnswer.Simple(HttpURLConnection.HTTP_OK))
+            .start(port);
+        try {
+            Notifications notifications = new Notifications.FakeNotificationsWithMentions();
+            Post ntp = new NtPost(
+                notifications, new RecentDeliveries(10), 3, Integer.MAX_VALUE,
+                "fake_token", "http://localhost:"+port+"/"
+            );
+            ntp.send();
+            final List<Notification> fetched = notifications.fetch();
+            assertThat(
+                server.take().body(),
+                is(NtPost.pack(fetched.subList(0, 3)).toString())
+            );
+            assertThat(
+                server.take().body(),
+                is(NtPost.pack(fetched.subList(3, 4)).toString())
+            );
+        } finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * NtPost bounds the chunks by their size in bytes.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void boundsChunksByBytes() throws Exception {
+        int port = this.port();
+        MkContainer server = new MkGrizzlyContainer()
+            .next(new MkAnswer.Simple(HttpURLConnection.HTTP_OK))
+            .next(new MkAnswer.Simple(HttpURLConnection.HTTP_OK))
+            .start(port);
+        try {
+            Notifications notifications = new Notifications.FakeOtherNotifications();
+            Post ntp = new NtPost(
+                notifications, new RecentDeliveries(10), 10, 120,
+                "fake_token", "http://localhost:"+port+"/"
+            );
+            ntp.send();
+            JsonArray first = this.parcel(server.take());
+            JsonArray second = this.parcel(server.take());
+            assertThat(first.size(), is(2));
+            assertThat(second.size(), is(1));
+            assertTrue(first.toString().getBytes("UTF-8").length <= 120);
+        } finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * NtPost remembers the chunks which were delivered, but does not
+     * mark the notifications as read if a later chunk fails.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void doesntMarkAsReadIfAChunkFails() throws Exception {
+        int port = this.port();
+        MkContainer server = new MkGrizzlyContainer()
+            .next(new MkAnswer.Simple(HttpURLConnection.HTTP_OK))
+            .next(new MkAnswer.Simple(HttpURLConnection.HTTP_UNAUTHORIZED))
+            .start(port);
+        try {
+            Notifications notifications = new Notifications.FakeErrorOnMarkRead();
+            Deliveries deliveries = new RecentDeliveries(10);
+            Post ntp = new NtPost(
+                notifications, deliveries, 2, Integer.MAX_VALUE,
+                "fake_token", "http://localhost:"+port+"/"
+            );
+            ntp.send();
+            List<Notification> fetched = notifications.fetch();
+            assertTrue(deliveries.delivered(fetched.get(0)));
+            assertTrue(deliveries.delivered(fetched.get(1)));
+            assertFalse(deliveries.delivered(fetched.get(2)));
+        } finally {
+            server.stop();
+        }
+    }
+
     /**
      * NtPost handles unauthorized response.
      * @throws Exception If something goes wrong.
@@ -147,6 +271,107 @@ public final class NtPostTestCase {
         }
     }
     
+    /**
+     * With an outbox, NtPost delivers the parcels through the drainer and
+     * marks the notifications as read once the outbox is empty.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void deliversThroughOutbox() throws Exception {
+        int port = this.port();
+        MkContainer server = new MkGrizzlyContainer()
+            .next(new MkAnswer.Simple(HttpURLConnection.HTTP_OK))
+            .next(new MkAnswer.Simple(HttpURLConnection.HTTP_OK))
+            .start(port);
+        try {
+            final List<Notification> fetched =
+                new Notifications.FakeOtherNotifications().fetch();
+            final Notifications notifications = mock(Notifications.class);
+            when(notifications.fetch()).thenReturn(fetched);
+            final Outbox outbox = new FileOutbox(
+                this.folder.getRoot().toPath().resolve("outbox")
+            );
+            final Deliveries deliveries = new RecentDeliveries(10);
+            Post ntp = new NtPost(
+                notifications, deliveries, 2, Integer.MAX_VALUE,
+                Backoff.NONE, new Transport.Jdk(), new AccountMetrics(),
+                outbox, this.direct(), "fake_token", "http://localhost:"+port+"/"
+            );
+            ntp.send();
+            assertThat(this.parcel(server.take()).size(), is(2));
+            assertThat(this.parcel(server.take()).size(), is(1));
+            assertThat(outbox.next() == null, is(true));
+            assertTrue(deliveries.delivered(fetched.get(2)));
+            verify(notifications).markAsRead(fetched);
+        } finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * With an outbox, NtPost keeps the parcel if the endpoint doesn't
+     * accept it and sends it again, without packing the same notifications
+     * again, on the next check. It marks them as read only afterwards.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void retriesParcelFromOutbox() throws Exception {
+        int port = this.port();
+        MkContainer server = new MkGrizzlyContainer()
+            .next(new MkAnswer.Simple(HttpURLConnection.HTTP_UNAUTHORIZED))
+            .next(new MkAnswer.Simple(HttpURLConnection.HTTP_OK))
+            .start(port);
+        try {
+            final List<Notification> fetched =
+                new Notifications.FakeOtherNotifications().fetch();
+            final Notifications notifications = mock(Notifications.class);
+            when(notifications.fetch()).thenReturn(fetched);
+            final Outbox outbox = new FileOutbox(
+                this.folder.getRoot().toPath().resolve("outbox")
+            );
+            Post ntp = new NtPost(
+                notifications, new RecentDeliveries(10),
+                Integer.MAX_VALUE, Integer.MAX_VALUE,
+                Backoff.NONE, new Transport.Jdk(), new AccountMetrics(),
+                outbox, this.direct(), "fake_token", "http://localhost:"+port+"/"
+            );
+            ntp.send();
+            verify(notifications, never()).markAsRead(fetched);
+            assertThat(outbox.next().notifications().size(), is(3));
+            ntp.send();
+            assertThat(this.parcel(server.take()).size(), is(3));
+            assertThat(this.parcel(server.take()).size(), is(3));
+            assertThat(outbox.next() == null, is(true));
+            verify(notifications, times(1)).markAsRead(fetched);
+        } finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * Executor which runs the tasks right away, on the calling thread.
+     * @return Executor.
+     */
+    private Executor direct() {
+        return new Executor() {
+            @Override
+            public void execute(final Runnable task) {
+                task.run();
+            }
+        };
+    }
+
+    /**
+     * Read the parcel received by the server.
+     * @param request Received request.
+     * @return JsonArray.
+     */
+    private JsonArray parcel(MkQuery request) {
+        return Json.createReader(
+            new ByteArrayInputStream(request.binary())
+        ).readArray();
+    }
+
     /**
      * Find a free port.
      * @return A free port.
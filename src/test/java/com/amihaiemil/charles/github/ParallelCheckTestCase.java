@@ -0,0 +1,196 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of mention-notifications-ejb nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.github;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link ParallelCheck}
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 2.1.0
+ */
+public final class ParallelCheckTestCase {
+
+    /**
+     * Executor for the tests.
+     */
+    private ExecutorService executor;
+
+    /**
+     * Start the executor.
+     */
+    @Before
+    public void start() {
+        this.executor = Executors.newFixedThreadPool(4);
+    }
+
+    /**
+     * Stop the executor.
+     */
+    @After
+    public void stop() {
+        this.executor.shutdownNow();
+    }
+
+    /**
+     * ParallelCheck sends all the Posts, even if some of them fail.
+     */
+    @Test
+    public void isolatesFailures() {
+        final AtomicInteger sent = new AtomicInteger();
+        final Post[] posts = new Post[] {
+            new Failing(), new Counting(sent), new Failing(), new Counting(sent)
+        };
+        new ParallelCheck(this.executor, 5000).check(posts);
+        MatcherAssert.assertThat(sent.get(), Matchers.is(2));
+    }
+
+    /**
+     * ParallelCheck waits at most the timeout for the Posts, does not wait for
+     * them one after the other and does not resend a Post which is
+     * still running.
+     */
+    @Test
+    public void timesOutSlowPosts() {
+        final AtomicInteger sent = new AtomicInteger();
+        final Post slow = new Slow(sent, 1000);
+        final Post[] posts = new Post[] {
+            slow, new Slow(sent, 300), new Slow(sent, 300), new Slow(sent, 300)
+        };
+        final ParallelCheck check = new ParallelCheck(this.executor, 500);
+        final long start = System.currentTimeMillis();
+        check.check(posts);
+        MatcherAssert.assertThat(
+            System.currentTimeMillis() - start, Matchers.lessThan(900L)
+        );
+        MatcherAssert.assertThat(sent.get(), Matchers.is(3));
+        check.check(posts);
+        MatcherAssert.assertThat(sent.get(), Matchers.is(6));
+    }
+
+    /**
+     * A Post which was still waiting for a thread when the timeout came is
+     * sent at the next check, not skipped forever as "still running".
+     * @throws InterruptedException If interrupted.
+     */
+    @Test
+    public void sendsQueuedPostsNextTime() throws InterruptedException {
+        final ExecutorService single = Executors.newFixedThreadPool(1);
+        try {
+            final AtomicInteger slow = new AtomicInteger();
+            final AtomicInteger queued = new AtomicInteger();
+            final Post counting = new Counting(queued);
+            final ParallelCheck check = new ParallelCheck(single, 200);
+            check.check(new Post[] {new Slow(slow, 600), counting});
+            MatcherAssert.assertThat(queued.get(), Matchers.is(0));
+            Thread.sleep(600);
+            MatcherAssert.assertThat(slow.get(), Matchers.is(1));
+            check.check(new Post[] {counting});
+            MatcherAssert.assertThat(queued.get(), Matchers.is(1));
+        } finally {
+            single.shutdownNow();
+        }
+    }
+
+    /**
+     * Post which always fails.
+     */
+    private static final class Failing implements Post {
+        @Override
+        public void send() throws IOException {
+            throw new IOException("Broken token!");
+        }
+    }
+
+    /**
+     * Post which counts how many times it was sent.
+     */
+    private static final class Counting implements Post {
+
+        /**
+         * Counter.
+         */
+        private final AtomicInteger counter;
+
+        /**
+         * Ctor.
+         * @param counter Counter.
+         */
+        Counting(final AtomicInteger counter) {
+            this.counter = counter;
+        }
+
+        @Override
+        public void send() throws IOException {
+            this.counter.incrementAndGet();
+        }
+    }
+
+    /**
+     * Post which takes some time and ignores interruptions,
+     * like a blocked socket read would.
+     */
+    private static final class Slow implements Post {
+
+        /**
+         * Counter of finished sends.
+         */
+        private final AtomicInteger counter;
+
+        /**
+         * Milliseconds it takes.
+         */
+        private final long millis;
+
+        /**
+         * Ctor.
+         * @param counter Counter of finished sends.
+         * @param millis Milliseconds it takes.
+         */
+        Slow(final AtomicInteger counter, final long millis) {
+            this.counter = counter;
+            this.millis = millis;
+        }
+
+        @Override
+        public void send() throws IOException {
+            final long end = System.currentTimeMillis() + this.millis;
+            while(System.currentTimeMillis() < end) {
+                Thread.yield();
+            }
+            this.counter.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of mention-notifications-ejb nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.github;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.jcabi.http.Response;
+
+/**
+ * Unit tests for {@link RateLimit}
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 2.1.0
+ */
+public final class RateLimitTestCase {
+
+    /**
+     * RateLimit allows polling while nothing is known about the limit.
+     */
+    @Test
+    public void allowsPollingByDefault() {
+        final RateLimit budget = new RateLimit(500);
+        assertThat(budget.poll(1000L), is(true));
+        assertThat(budget.poll(2000L), is(true));
+        assertThat(budget.getSkipped(), is(0L));
+    }
+
+    /**
+     * RateLimit keeps the reserve for the agent's other work.
+     */
+    @Test
+    public void keepsTheReserve() {
+        final RateLimit budget = new RateLimit(500);
+        budget.update(this.response(200, "5000", "500", "3600"), 0L);
+        assertThat(budget.poll(1000L), is(false));
+        assertThat(budget.getSkipped(), is(1L));
+        assertThat(budget.poll(3600L * 1000L), is(true));
+    }
+
+    /**
+     * RateLimit spaces the polls so the remaining requests last
+     * until the window resets.
+     */
+    @Test
+    public void spacesPolls() {
+        final RateLimit budget = new RateLimit(500);
+        budget.update(this.response(200, "5000", "510", "3600"), 0L);
+        assertThat(budget.poll(0L), is(true));
+        assertThat(budget.poll(60L * 1000L), is(false));
+        assertThat(budget.poll(360L * 1000L), is(true));
+    }
+
+    /**
+     * RateLimit pauses after a rate limit error, as long as Github says.
+     */
+    @Test
+    public void pausesAfterRejection() {
+        final RateLimit budget = new RateLimit(0);
+        final Response limited = this.response(429, null, null, null);
+        when(limited.headers()).thenReturn(this.headers("Retry-After", "30"));
+        budget.update(limited, 0L);
+        assertThat(budget.poll(29L * 1000L), is(false));
+        assertThat(budget.poll(30L * 1000L), is(true));
+        budget.update(this.response(403, "5000", "0", "600"), 100L * 1000L);
+        assertThat(budget.poll(599L * 1000L), is(false));
+        assertThat(budget.poll(600L * 1000L), is(true));
+        budget.update(this.response(403, "5000", "4000", "3600"), 700L * 1000L);
+        assertThat(budget.poll(759L * 1000L), is(false));
+        assertThat(budget.poll(760L * 1000L), is(true));
+    }
+
+    /**
+     * Mock a response.
+     * @param status Status.
+     * @param limit X-RateLimit-Limit or null.
+     * @param remaining X-RateLimit-Remaining or null.
+     * @param reset X-RateLimit-Reset or null.
+     * @return Response.
+     */
+    private Response response(
+        final int status, final String limit,
+        final String remaining, final String reset
+    ) {
+        final Map<String, List<String>> headers = new HashMap<>();
+        if(limit != null) {
+            headers.putAll(this.headers("X-RateLimit-Limit", limit));
+            headers.putAll(this.headers("X-RateLimit-Remaining", remaining));
+            headers.putAll(this.headers("X-RateLimit-Reset", reset));
+        }
+        final Response response = mock(Response.class);
+        when(response.status()).thenReturn(status);
+        when(response.headers()).thenReturn(headers);
+        return response;
+    }
+
+    /**
+     * One header.
+     * @param name Name.
+     * @param value Value.
+     * @return Headers.
+     */
+    private Map<String, List<String>> headers(final String name, final String value) {
+        final Map<String, List<String>> headers = new HashMap<>();
+        headers.put(name, Arrays.asList(value));
+        return headers;
+    }
+}
@@ -0,0 +1,85 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of mention-notifications-ejb nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.github;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.amihaiemil.charles.github.Notification.Type;
+
+/**
+ * Unit tests for {@link RecentDeliveries}
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 2.1.0
+ */
+public final class RecentDeliveriesTestCase {
+
+    /**
+     * RecentDeliveries remembers delivered threads, until they are updated.
+     */
+    @Test
+    public void remembersDeliveredThreads() {
+        final RecentDeliveries deliveries = new RecentDeliveries(10);
+        deliveries.add(Arrays.asList(this.notification(1L, 1000L)));
+        assertThat(deliveries.delivered(this.notification(1L, 1000L)), is(true));
+        assertThat(deliveries.delivered(this.notification(1L, 500L)), is(true));
+        assertThat(deliveries.delivered(this.notification(1L, 2000L)), is(false));
+        assertThat(deliveries.delivered(this.notification(2L, 1000L)), is(false));
+    }
+
+    /**
+     * RecentDeliveries forgets the least recently used threads
+     * when it is full.
+     */
+    @Test
+    public void forgetsLeastRecentlyUsed() {
+        final RecentDeliveries deliveries = new RecentDeliveries(2);
+        deliveries.add(
+            Arrays.asList(this.notification(1L, 1L), this.notification(2L, 1L))
+        );
+        assertThat(deliveries.delivered(this.notification(1L, 1L)), is(true));
+        deliveries.add(Arrays.asList(this.notification(3L, 1L)));
+        assertThat(deliveries.delivered(this.notification(1L, 1L)), is(true));
+        assertThat(deliveries.delivered(this.notification(2L, 1L)), is(false));
+        assertThat(deliveries.delivered(this.notification(3L, 1L)), is(true));
+    }
+
+    /**
+     * A mention notification.
+     * @param thread Thread id.
+     * @param updated Update time.
+     * @return Notification.
+     */
+    private Notification notification(final long thread, final long updated) {
+        return new Notification(
+            thread, updated, Type.MENTION, "amihaiemil/charles", 1, true
+        );
+    }
+}
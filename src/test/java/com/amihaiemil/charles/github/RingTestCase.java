@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of mention-notifications-ejb nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.github;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link Ring}
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 2.1.0
+ */
+public final class RingTestCase {
+
+    /**
+     * Ring spreads the keys over all the nodes.
+     */
+    @Test
+    public void spreadsKeys() {
+        final Ring ring = new Ring(Arrays.asList("a", "b", "c"));
+        final Map<String, Integer> counts = new HashMap<>();
+        for(int idx = 0; idx < 3000; idx++) {
+            final String owner = ring.owner("account" + idx);
+            final Integer count = counts.get(owner);
+            counts.put(owner, count == null ? 1 : count + 1);
+        }
+        assertThat(counts.size(), is(3));
+        for(final int count : counts.values()) {
+            assertThat(count, greaterThan(700));
+        }
+    }
+
+    /**
+     * When a node leaves, only its keys move to the other nodes.
+     */
+    @Test
+    public void movesOnlyKeysOfDeadNode() {
+        final Ring all = new Ring(Arrays.asList("a", "b", "c"));
+        final Ring rest = new Ring(Arrays.asList("a", "c"));
+        for(int idx = 0; idx < 1000; idx++) {
+            final String key = "account" + idx;
+            if(!"b".equals(all.owner(key))) {
+                assertThat(rest.owner(key), is(all.owner(key)));
+            }
+        }
+    }
+
+    /**
+     * An empty Ring has no owners.
+     */
+    @Test
+    public void emptyRing() {
+        assertThat(
+            new Ring(Collections.<String>emptyList()).owner("account"),
+            is(nullValue())
+        );
+    }
+}
@@ -34,8 +34,15 @@ import static org.junit.Assert.assertTrue;
 import java.io.IOException;
 import java.net.HttpURLConnection;
 import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
-import javax.json.JsonObject;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.ws.rs.core.HttpHeaders;
 import org.junit.Test;
 
 /**
@@ -55,22 +62,83 @@ public final class RtNotificationsTestCase {
     public void fetchesNotifications() throws Exception {
         int port = this.port();
         MkContainer server = new MkGrizzlyContainer()
-            .next(new MkAnswer.Simple("[{\"notification\":\"first\"},{\"notification\":\"second\"}]")).start(port);
+            .next(
+                new MkAnswer.Simple(
+                    "[" + this.notification("amihaiemil/first", 1) + ","
+                    + this.notification("amihaiemil/second", 2) + "]"
+                )
+            ).start(port);
         try {
             Notifications notifications = new RtNotifications(
                 new Reason.Fake(),
                 "fake_token",
                 "http://localhost:"+port+"/"
             );
-            List<JsonObject> found = notifications.fetch();
+            List<Notification> found = notifications.fetch();
             assertTrue(found.size() == 2);
-            assertTrue(found.get(0).getString("notification").equals("first"));
-            assertTrue(found.get(1).getString("notification").equals("second"));
+            assertTrue(
+                found.get(0).repo()
+                    .equals("amihaiemil/first")
+            );
+            assertTrue(
+                found.get(1).repo()
+                    .equals("amihaiemil/second")
+            );
         } finally {
             server.stop();
         }
     }
     
+    /**
+     * RtNotifications asks for 100 notifications per page and follows
+     * the Link header to fetch all the pages.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void fetchesAllPages() throws Exception {
+        int port = this.port();
+        MkContainer server = new MkGrizzlyContainer()
+            .next(
+                new MkAnswer.Simple(
+                    "[" + this.notification("amihaiemil/first", 1) + ","
+                    + this.notification("amihaiemil/second", 2) + "]"
+                ).withHeader(
+                    "Link",
+                    "<http://localhost:" + port + "/?per_page=100&page=2>; rel=\"next\", "
+                    + "<http://localhost:" + port + "/?per_page=100&page=2>; rel=\"last\""
+                )
+            )
+            .next(
+                new MkAnswer.Simple(
+                    "[" + this.notification("amihaiemil/third", 3) + "]"
+                )
+            )
+            .start(port);
+        try {
+            Notifications notifications = new RtNotifications(
+                new Reason.Fake(),
+                "fake_token",
+                "http://localhost:"+port+"/"
+            );
+            List<Notification> found = notifications.fetch();
+            assertTrue(found.size() == 3);
+            assertTrue(
+                found.get(2).repo()
+                    .equals("amihaiemil/third")
+            );
+            MkQuery first = server.take();
+            assertTrue(first.uri().getQuery().contains("per_page=100"));
+            MkQuery second = server.take();
+            assertTrue(second.uri().getQuery().contains("page=2"));
+            assertTrue(
+                second.headers().get(HttpHeaders.AUTHORIZATION).get(0)
+                    .equals("fake_token")
+            );
+        } finally {
+            server.stop();
+        }
+    }
+
     /**
      * RtNotifications.fetch throws assertion error when the response status is not OK
      * @throws Exception If something goes wrong.
@@ -107,13 +175,132 @@ public final class RtNotificationsTestCase {
                 "fake_token",
                 "http://localhost:"+port+"/"
             );
-            List<JsonObject> found = notifications.fetch();
+            List<Notification> found = notifications.fetch();
             assertTrue(found.size() == 0);
         } finally {
             server.stop();
         }
     }
     
+    /**
+     * RtNotifications sends back the ETag and Last-Modified of an
+     * uninteresting response and does not read anything on 304 Not Modified.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void pollsConditionally() throws Exception {
+        int port = this.port();
+        MkContainer server = new MkGrizzlyContainer()
+            .next(
+                new MkAnswer.Simple("[]")
+                    .withHeader(HttpHeaders.ETAG, "\"abc\"")
+                    .withHeader(
+                        HttpHeaders.LAST_MODIFIED,
+                        "Thu, 05 Jan 2017 10:00:00 GMT"
+                    )
+            )
+            .next(new MkAnswer.Simple(HttpURLConnection.HTTP_NOT_MODIFIED))
+            .start(port);
+        try {
+            RtNotifications notifications = new RtNotifications(
+                new Reason.Fake(),
+                "fake_token",
+                "http://localhost:"+port+"/"
+            );
+            assertTrue(notifications.fetch().isEmpty());
+            assertTrue(notifications.fetch().isEmpty());
+            assertTrue(notifications.notModified() == 1);
+            MkQuery first = server.take();
+            assertTrue(!first.headers().containsKey(HttpHeaders.IF_NONE_MATCH));
+            MkQuery second = server.take();
+            assertTrue(
+                second.headers().get(HttpHeaders.IF_NONE_MATCH).get(0)
+                    .equals("\"abc\"")
+            );
+            assertTrue(
+                second.headers().get(HttpHeaders.IF_MODIFIED_SINCE).get(0)
+                    .equals("Thu, 05 Jan 2017 10:00:00 GMT")
+            );
+        } finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * RtNotifications reads the rate limit from the responses, even
+     * if the request is rejected.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void tracksRateLimit() throws Exception {
+        int port = this.port();
+        MkContainer server = new MkGrizzlyContainer()
+            .next(
+                new MkAnswer.Simple("[]")
+                    .withHeader("X-RateLimit-Limit", "5000")
+                    .withHeader("X-RateLimit-Remaining", "4321")
+                    .withHeader("X-RateLimit-Reset", "1489828951")
+            )
+            .next(
+                new MkAnswer.Simple(HttpURLConnection.HTTP_FORBIDDEN)
+                    .withHeader("X-RateLimit-Remaining", "4320")
+                    .withHeader("Retry-After", "120")
+            )
+            .start(port);
+        try {
+            RateLimit budget = new RateLimit(100);
+            RtNotifications notifications = new RtNotifications(
+                new Reason.Fake(), Backoff.NONE, new Transport.Jdk(), budget,
+                "fake_token", "http://localhost:"+port+"/"
+            );
+            notifications.fetch();
+            assertTrue(budget.getLimit() == 5000);
+            assertTrue(budget.getRemaining() == 4321);
+            assertTrue(budget.getReset() == 1489828951000L);
+            try {
+                notifications.fetch();
+            } catch (AssertionError expected) {
+                assertTrue(budget.getRemaining() == 4320);
+                assertTrue(budget.getBlockedUntil() > System.currentTimeMillis() + 100 * 1000);
+            }
+        } finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * RtNotifications does not poll conditionally after it found
+     * notifications, since they might not have been delivered.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void forgetsETagWhenNotificationsFound() throws Exception {
+        int port = this.port();
+        MkContainer server = new MkGrizzlyContainer()
+            .next(
+                new MkAnswer.Simple(
+                    "[" + this.notification("amihaiemil/first", 1) + "]"
+                ).withHeader(HttpHeaders.ETAG, "\"abc\"")
+            )
+            .next(new MkAnswer.Simple("[]"))
+            .start(port);
+        try {
+            RtNotifications notifications = new RtNotifications(
+                new Reason.Fake(),
+                "fake_token",
+                "http://localhost:"+port+"/"
+            );
+            assertTrue(notifications.fetch().size() == 1);
+            assertTrue(notifications.fetch().isEmpty());
+            server.take();
+            MkQuery second = server.take();
+            assertTrue(!second.headers().containsKey(HttpHeaders.IF_NONE_MATCH));
+            assertTrue(notifications.notModified() == 0);
+        } finally {
+            server.stop();
+        }
+    }
+
     /**
      * RtNotifications can mark notifications as read with OK status response
      * @throws Exception If something goes wrong.
@@ -186,6 +373,180 @@ public final class RtNotificationsTestCase {
         }
     }
 
+    /**
+     * RtNotifications can mark single threads as read, concurrently.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void marksThreadsAsRead() throws Exception {
+        int port = this.port();
+        MkContainer server = new MkGrizzlyContainer()
+            .next(new MkAnswer.Simple(HttpURLConnection.HTTP_RESET))
+            .next(new MkAnswer.Simple(HttpURLConnection.HTTP_RESET))
+            .start(port);
+        final ExecutorService threads = Executors.newFixedThreadPool(2);
+        try (HttpPool pool = new HttpPool(2, 2)) {
+            Notifications notifications = new RtNotifications(
+                new Reason.Fake(), Backoff.NONE, pool, new RateLimit(0),
+                new AccountMetrics(), threads, 2,
+                "fake_token", "http://localhost:" + port + "/notifications"
+            );
+            notifications.markAsRead(
+                Arrays.asList(this.mention(12L), this.mention(34L))
+            );
+            final Set<String> paths = new HashSet<>();
+            for(int idx = 0; idx < 2; idx++) {
+                final MkQuery req = server.take();
+                assertTrue(req.method().equals("PATCH"));
+                paths.add(req.uri().getPath());
+            }
+            assertTrue(
+                paths.equals(
+                    new HashSet<>(
+                        Arrays.asList(
+                            "/notifications/threads/12",
+                            "/notifications/threads/34"
+                        )
+                    )
+                )
+            );
+        } finally {
+            threads.shutdown();
+            server.stop();
+        }
+    }
+
+    /**
+     * RtNotifications marks everything as read by last_read_at if there
+     * are too many threads to mark one by one.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void sweepsManyThreads() throws Exception {
+        int port = this.port();
+        MkContainer server = new MkGrizzlyContainer()
+            .next(new MkAnswer.Simple(HttpURLConnection.HTTP_RESET))
+            .start(port);
+        final ExecutorService threads = Executors.newFixedThreadPool(2);
+        try (HttpPool pool = new HttpPool(2, 2)) {
+            Notifications notifications = new RtNotifications(
+                new Reason.Fake(), Backoff.NONE, pool, new RateLimit(0),
+                new AccountMetrics(), threads, 1,
+                "fake_token", "http://localhost:" + port + "/notifications"
+            );
+            notifications.markAsRead(
+                Arrays.asList(this.mention(12L), this.mention(34L))
+            );
+            MkQuery req = server.take();
+            assertTrue(req.method().equals(Request.PUT));
+            assertTrue(req.uri().getQuery().contains("last_read_at="));
+        } finally {
+            threads.shutdown();
+            server.stop();
+        }
+    }
+
+    /**
+     * RtNotifications marks the other threads as read even if one of them
+     * fails, and then reports the failure.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void reportsThreadsNotMarked() throws Exception {
+        int port = this.port();
+        MkContainer server = new MkGrizzlyContainer()
+            .next(new MkAnswer.Simple(HttpURLConnection.HTTP_RESET))
+            .next(new MkAnswer.Simple(HttpURLConnection.HTTP_NOT_FOUND))
+            .start(port);
+        final ExecutorService threads = Executors.newFixedThreadPool(1);
+        try (HttpPool pool = new HttpPool(2, 2)) {
+            Notifications notifications = new RtNotifications(
+                new Reason.Fake(), Backoff.NONE, pool, new RateLimit(0),
+                new AccountMetrics(), threads, 2,
+                "fake_token", "http://localhost:" + port + "/notifications"
+            );
+            try {
+                notifications.markAsRead(
+                    Arrays.asList(this.mention(12L), this.mention(34L))
+                );
+                assertTrue("IOException expected", false);
+            } catch (IOException ex) {
+                assertTrue(ex.getMessage().contains("1 of 2"));
+            }
+            assertTrue(server.queries() == 2);
+        } finally {
+            threads.shutdown();
+            server.stop();
+        }
+    }
+
+    /**
+     * RtNotifications polls only what was updated after the cursor, which
+     * advances once the notifications are marked as read.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void pollsSinceCursor() throws Exception {
+        int port = this.port();
+        MkContainer server = new MkGrizzlyContainer()
+            .next(
+                new MkAnswer.Simple(
+                    "[" + this.notification("amihaiemil/first", 1) + ","
+                    + this.notification("amihaiemil/second", 2) + "]"
+                )
+            )
+            .next(new MkAnswer.Simple(HttpURLConnection.HTTP_OK))
+            .next(new MkAnswer.Simple("[]"))
+            .start(port);
+        try {
+            final Path file = Files.createTempDirectory("cursor").resolve("cursor");
+            Notifications notifications = new RtNotifications(
+                new Reason.Fake(), Backoff.NONE, new Transport.Jdk(),
+                new RateLimit(0), new AccountMetrics(), null, 0,
+                new FileCursor(file), "fake_token", "http://localhost:" + port + "/"
+            );
+            notifications.markAsRead(notifications.fetch());
+            assertTrue(notifications.fetch().isEmpty());
+            assertTrue(!server.take().uri().getQuery().contains("since="));
+            server.take();
+            assertTrue(
+                server.take().uri().getQuery()
+                    .contains("since=2017-03-18T09:21:31Z")
+            );
+            assertTrue(new FileCursor(file).since() == 1489828951000L);
+        } finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * A mention.
+     * @param thread Id of its thread.
+     * @return Notification.
+     */
+    private Notification mention(final long thread) {
+        return new Notification(
+            thread, 1489828951000L, Notification.Type.MENTION,
+            "amihaiemil/charles", 1, true
+        );
+    }
+
+    /**
+     * A notification, as Github sends it.
+     * @param repo Full name of the repository.
+     * @param issue Issue number.
+     * @return Json notification.
+     */
+    private String notification(final String repo, final int issue) {
+        return "{\"id\":\"" + issue + "\",\"unread\":true,\"reason\":\"mention\","
+            + "\"updated_at\":\"2017-03-18T09:22:31Z\",\"subject\":{\"title\":\"Test\","
+            + "\"url\":\"https://api.github.com/repos/" + repo + "/issues/" + issue + "\","
+            + "\"latest_comment_url\":\"https://api.github.com/repos/" + repo
+            + "/issues/comments/1\",\"type\":\"Issue\"},\"repository\":{\"id\":1,"
+            + "\"full_name\":\"" + repo + "\",\"owner\":{\"login\":\"amihaiemil\"}},"
+            + "\"url\":\"https://api.github.com/notifications/threads/" + issue + "\"}";
+    }
+
     /**
      * Find a free port.
      * @return A free port.
@@ -0,0 +1,132 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of mention-notifications-ejb nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.github;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link Rules}
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 2.1.0
+ */
+public final class RulesTestCase {
+
+    /**
+     * Rules with only the "mention" reason filter like {@link Mention}.
+     * @throws IOException If something goes wrong.
+     */
+    @Test
+    public void filtersLikeMention() throws IOException {
+        final Reason rules = new Rules("mention", "", "");
+        MatcherAssert.assertThat(
+            rules.filter(new Notifications.FakeNotificationsWithMentions().fetch()),
+            Matchers.hasSize(2)
+        );
+        MatcherAssert.assertThat(
+            rules.filter(new Notifications.FakeOtherNotifications().fetch()),
+            Matchers.empty()
+        );
+    }
+
+    /**
+     * Rules can accept more reasons; only mentions need a new comment.
+     */
+    @Test
+    public void acceptsMoreReasons() {
+        final List<Notification> notifications = new ArrayList<>();
+        notifications.add(this.notification("team_mention", "amihaiemil/charles", true));
+        notifications.add(this.notification("team_mention", "amihaiemil/charles", false));
+        notifications.add(this.notification("review_requested", "amihaiemil/charles", false));
+        notifications.add(this.notification("assign", "amihaiemil/charles", false));
+        notifications.add(this.notification("subscribed", "amihaiemil/charles", true));
+        final List<Notification> filtered = new Rules(
+            "mention, team_mention,review_requested,assign", "", ""
+        ).filter(notifications);
+        MatcherAssert.assertThat(filtered, Matchers.hasSize(3));
+        MatcherAssert.assertThat(
+            filtered.get(0).type(), Matchers.is(Notification.Type.TEAM_MENTION)
+        );
+        MatcherAssert.assertThat(
+            filtered.get(2).type(), Matchers.is(Notification.Type.ASSIGN)
+        );
+    }
+
+    /**
+     * Rules can allow and deny repositories, by name or by owner.
+     */
+    @Test
+    public void allowsAndDeniesRepos() {
+        final List<Notification> notifications = new ArrayList<>();
+        notifications.add(this.notification("mention", "amihaiemil/charles", true));
+        notifications.add(this.notification("mention", "amihaiemil/eva", true));
+        notifications.add(this.notification("mention", "opencharles/charles-rest", true));
+        notifications.add(this.notification("mention", "opencharles/secret", true));
+        notifications.add(this.notification("mention", "someone/else", true));
+        final List<Notification> filtered = new Rules(
+            "mention", "amihaiemil/charles, opencharles/*", "opencharles/secret"
+        ).filter(notifications);
+        MatcherAssert.assertThat(filtered, Matchers.hasSize(2));
+        MatcherAssert.assertThat(
+            filtered.get(0).repo(), Matchers.equalTo("amihaiemil/charles")
+        );
+        MatcherAssert.assertThat(
+            filtered.get(1).repo(), Matchers.equalTo("opencharles/charles-rest")
+        );
+        MatcherAssert.assertThat(
+            new Rules("mention", "", "amihaiemil/*").filter(notifications),
+            Matchers.hasSize(3)
+        );
+    }
+
+    /**
+     * Rules complain about unknown reasons.
+     */
+    @Test(expected = IllegalStateException.class)
+    public void rejectsUnknownReason() {
+        new Rules("mention,mentoin", "", "");
+    }
+
+    /**
+     * Build a notification.
+     * @param reason Reason.
+     * @param repo Repository.
+     * @param comment Does it point to a new comment?
+     * @return Notification.
+     */
+    private Notification notification(
+        final String reason, final String repo, final boolean comment
+    ) {
+        return new Notification(
+            1L, 0L, Notification.Type.of(reason), repo, 1, comment
+        );
+    }
+}
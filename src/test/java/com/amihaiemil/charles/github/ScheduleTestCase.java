@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of mention-notifications-ejb nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.github;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import java.util.Calendar;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link Schedule}
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 2.1.0
+ */
+public final class ScheduleTestCase {
+
+    /**
+     * Schedule understands intervals; a plain number is in minutes.
+     */
+    @Test
+    public void readsIntervals() {
+        assertThat(new Schedule("15s").next(1000L, 0L), is(16000L));
+        assertThat(new Schedule("250ms").next(1000L, 0L), is(1250L));
+        assertThat(new Schedule("10m").next(0L, 0L), is(600000L));
+        assertThat(new Schedule("2h").next(0L, 0L), is(7200000L));
+        assertThat(new Schedule("2").next(0L, 0L), is(120000L));
+        assertThat(new Schedule("15s").spread(30000L), is(15000L));
+    }
+
+    /**
+     * The first check at an interval is delayed by the offset, the next
+     * ones are one interval apart.
+     */
+    @Test
+    public void offsetsFirstCheck() {
+        final Schedule schedule = new Schedule("1m");
+        assertThat(schedule.first(1000L, 500L), is(1500L));
+        assertThat(schedule.next(1500L, 500L), is(61500L));
+    }
+
+    /**
+     * Schedule finds the next time matching a cron, plus the offset.
+     */
+    @Test
+    public void readsCron() {
+        final Schedule schedule = new Schedule("*/15 9-17 * * 1-5");
+        assertThat(schedule.spread(30000L), is(30000L));
+        final long next = schedule.next(
+            ScheduleTestCase.time(2017, Calendar.MARCH, 17, 17, 50), 2000L
+        );
+        assertThat(
+            next, is(ScheduleTestCase.time(2017, Calendar.MARCH, 20, 9, 0) + 2000L)
+        );
+        assertThat(
+            schedule.first(ScheduleTestCase.time(2017, Calendar.MARCH, 20, 9, 0), 0L),
+            is(ScheduleTestCase.time(2017, Calendar.MARCH, 20, 9, 15))
+        );
+    }
+
+    /**
+     * If both the day of month and of week are given, either one matches.
+     */
+    @Test
+    public void matchesEitherDay() {
+        final Schedule schedule = new Schedule("0 0 1 * 0");
+        assertThat(
+            schedule.next(ScheduleTestCase.time(2017, Calendar.MARCH, 17, 12, 0), 0L),
+            is(ScheduleTestCase.time(2017, Calendar.MARCH, 19, 0, 0))
+        );
+        assertThat(
+            schedule.next(ScheduleTestCase.time(2017, Calendar.MARCH, 27, 12, 0), 0L),
+            is(ScheduleTestCase.time(2017, Calendar.APRIL, 1, 0, 0))
+        );
+    }
+
+    /**
+     * Invalid schedules are rejected.
+     */
+    @Test
+    public void rejectsInvalid() {
+        for(final String invalid : new String[] {"0s", "abc", "* * *", "61 * * * *", "5-1 * * * *", "0 0 31 2 *"}) {
+            try {
+                new Schedule(invalid);
+                throw new AssertionError("Accepted " + invalid);
+            } catch (IllegalArgumentException ex) {
+                assertThat(ex.getMessage().isEmpty(), is(false));
+            }
+        }
+    }
+
+    /**
+     * Time in the default time zone.
+     * @param year Year.
+     * @param month Month.
+     * @param day Day of month.
+     * @param hour Hour.
+     * @param minute Minute.
+     * @return Millis.
+     */
+    private static long time(
+        final int year, final int month, final int day,
+        final int hour, final int minute
+    ) {
+        final Calendar time = Calendar.getInstance();
+        time.clear();
+        time.set(year, month, day, hour, minute);
+        return time.getTimeInMillis();
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of mention-notifications-ejb nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.github;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.amihaiemil.charles.github.Notification.Type;
+
+/**
+ * Unit tests for {@link Shard} and {@link ShardedPost}
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 2.1.0
+ */
+public final class ShardTestCase {
+
+    /**
+     * Temporary folder, the volume shared by the nodes.
+     */
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Each account is owned by exactly one of the live nodes.
+     * @throws IOException If something goes wrong.
+     */
+    @Test
+    public void ownsEachAccountOnce() throws IOException {
+        final Leases leases = new Leases.InMemory();
+        final Shard first = new Shard(leases, "node1", 6000L);
+        final Shard second = new Shard(leases, "node2", 6000L);
+        first.owns("join", 0L);
+        second.owns("join", 0L);
+        first.owns("join", 2000L);
+        int owned = 0;
+        for(int idx = 0; idx < 100; idx++) {
+            final boolean one = first.owns("account" + idx, 2000L);
+            final boolean two = second.owns("account" + idx, 2000L);
+            assertThat(one ^ two, is(true));
+            if(one) {
+                owned = owned + 1;
+            }
+        }
+        assertThat(owned > 0 && owned < 100, is(true));
+    }
+
+    /**
+     * When a node dies, the others take over its accounts once its
+     * leases expire.
+     * @throws IOException If something goes wrong.
+     */
+    @Test
+    public void takesOverDeadNode() throws IOException {
+        final Leases leases = new Leases.InMemory();
+        final Shard first = new Shard(leases, "node1", 6000L);
+        final Shard second = new Shard(leases, "node2", 6000L);
+        first.owns("join", 0L);
+        second.owns("join", 0L);
+        first.owns("join", 2000L);
+        final List<String> accounts = new ArrayList<>();
+        for(int idx = 0; idx < 100; idx++) {
+            if(second.owns("account" + idx, 2000L)) {
+                accounts.add("account" + idx);
+            }
+        }
+        for(final String account : accounts) {
+            assertThat(first.owns(account, 4000L), is(false));
+        }
+        for(final String account : accounts) {
+            assertThat(first.owns(account, 9000L), is(true));
+        }
+    }
+
+    /**
+     * When a node joins, the previous owner gives up the account and the
+     * new one takes it, without both checking it at the same time.
+     * @throws IOException If something goes wrong.
+     */
+    @Test
+    public void handsOverToNewNode() throws IOException {
+        final Leases leases = new Leases.InMemory();
+        final Shard first = new Shard(leases, "node1", 6000L);
+        for(int idx = 0; idx < 100; idx++) {
+            assertThat(first.owns("account" + idx, 0L), is(true));
+        }
+        final Shard second = new Shard(leases, "node2", 6000L);
+        final List<String> moved = new ArrayList<>();
+        for(int idx = 0; idx < 100; idx++) {
+            if(second.owns("account" + idx, 1000L)) {
+                moved.add("account" + idx);
+            }
+        }
+        assertThat(moved.isEmpty(), is(true));
+        for(int idx = 0; idx < 100; idx++) {
+            if(!first.owns("account" + idx, 2000L)) {
+                moved.add("account" + idx);
+            }
+        }
+        assertThat(moved.isEmpty(), is(false));
+        for(final String account : moved) {
+            assertThat(second.owns(account, 2500L), is(true));
+        }
+    }
+
+    /**
+     * ShardedPost is sent only by the node owning the account.
+     * @throws IOException If something goes wrong.
+     */
+    @Test
+    public void sendsOnlyOwnedAccounts() throws IOException {
+        final Leases leases = new Leases.InMemory();
+        leases.acquire("account/a", "node2", System.currentTimeMillis(), 60000L);
+        final Post taken = mock(Post.class);
+        new ShardedPost(taken, new Shard(leases, "node1", 60000L), "a").send();
+        verify(taken, never()).send();
+        final Post free = mock(Post.class);
+        new ShardedPost(free, new Shard(leases, "node1", 60000L), "b").send();
+        verify(free).send();
+    }
+
+    /**
+     * When an account moves to another node, the new owner reads the
+     * deliveries, cursor and outbox which the previous owner left on the
+     * shared volume, although it had read them before.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void movesStateWithAccount() throws Exception {
+        final Path shared = this.folder.getRoot().toPath();
+        final Leases leases = new Leases.InMemory();
+        final FileDeliveries delivered = new FileDeliveries(shared.resolve("deliveries-a"), 10);
+        final FileCursor cursor = new FileCursor(shared.resolve("cursor-a"));
+        final FileOutbox outbox = new FileOutbox(shared.resolve("outbox-a"));
+        final FileDeliveries taken = new FileDeliveries(shared.resolve("deliveries-a"), 10);
+        final FileCursor since = new FileCursor(shared.resolve("cursor-a"));
+        final FileOutbox queued = new FileOutbox(shared.resolve("outbox-a"));
+        final Post first = mock(Post.class);
+        new ShardedPost(
+            first, new Shard(leases, "node1", 200L), "a",
+            Arrays.<Stored>asList(delivered, cursor, outbox)
+        ).send();
+        verify(first).send();
+        final Notification sent = new Notification(1L, 1000L, Type.MENTION, "amihaiemil/charles", 1, true);
+        final Notification pending = new Notification(2L, 2000L, Type.MENTION, "amihaiemil/charles", 2, true);
+        delivered.add(Arrays.asList(sent));
+        cursor.advance(2000L);
+        outbox.add("[]".getBytes(StandardCharsets.UTF_8), Arrays.asList(pending));
+        assertThat(taken.delivered(sent), is(false));
+        Thread.sleep(400L);
+        final Post second = mock(Post.class);
+        new ShardedPost(
+            second, new Shard(leases, "node2", 200L), "a",
+            Arrays.<Stored>asList(taken, since, queued)
+        ).send();
+        verify(second).send();
+        assertThat(taken.delivered(sent), is(true));
+        assertThat(since.since(), is(2000L));
+        assertThat(queued.queued(pending), is(true));
+        assertThat(queued.next().notifications().size(), is(1));
+    }
+}
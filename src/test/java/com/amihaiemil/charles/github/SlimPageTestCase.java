@@ -0,0 +1,93 @@
+/**
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of mention-notifications-ejb nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.github;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link SlimPage}
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 2.1.0
+ */
+public final class SlimPageTestCase {
+
+    /**
+     * SlimPage reads the notifications, with the fields we need.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void readsNotifications() throws Exception {
+        try (
+            final InputStream json = this.getClass()
+                .getResourceAsStream("/notifications.json")
+        ) {
+            final List<Notification> page = new SlimPage(json).notifications();
+            MatcherAssert.assertThat(page, Matchers.hasSize(3));
+            final Notification first = page.get(0);
+            MatcherAssert.assertThat(first.thread(), Matchers.is(230400425L));
+            MatcherAssert.assertThat(
+                first.type(), Matchers.is(Notification.Type.MENTION)
+            );
+            MatcherAssert.assertThat(
+                first.repo(), Matchers.equalTo("amihaiemil/charles")
+            );
+            MatcherAssert.assertThat(first.issue(), Matchers.is(167));
+            MatcherAssert.assertThat(first.newComment(), Matchers.is(true));
+            final Notification second = page.get(1);
+            MatcherAssert.assertThat(
+                second.type(), Matchers.is(Notification.Type.SUBSCRIBED)
+            );
+            MatcherAssert.assertThat(
+                second.repo(),
+                Matchers.equalTo("opencharles/mention-notifications-ejb")
+            );
+            MatcherAssert.assertThat(second.newComment(), Matchers.is(false));
+            final Notification third = page.get(2);
+            MatcherAssert.assertThat(third.issue(), Matchers.is(9));
+            MatcherAssert.assertThat(third.newComment(), Matchers.is(false));
+        }
+    }
+
+    /**
+     * SlimPage can read an empty page.
+     */
+    @Test
+    public void readsEmptyPage() {
+        MatcherAssert.assertThat(
+            new SlimPage(
+                new ByteArrayInputStream("[]".getBytes(StandardCharsets.UTF_8))
+            ).notifications(),
+            Matchers.empty()
+        );
+    }
+}
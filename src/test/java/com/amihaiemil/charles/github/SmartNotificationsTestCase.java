@@ -29,9 +29,6 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
-import javax.json.Json;
-import javax.json.JsonObject;
-
 import org.hamcrest.MatcherAssert;
 import org.hamcrest.Matchers;
 import org.junit.Test;
@@ -52,15 +49,18 @@ public final class SmartNotificationsTestCase {
      */
     @Test
     public void skipsThreeChecksAfterThreeEmptyChecks() throws IOException {
-        List<JsonObject> found = new ArrayList<>();
+        List<Notification> found = new ArrayList<>();
         found.add(
-            Json.createObjectBuilder().add("found", "testnotification").build()
+            new Notification(
+                "1", "2017-03-18T09:22:31Z", "mention", "amihaiemil/testnotification",
+                "/url/here/1", "/comment/url/2"
+            )
         );
         Notifications three = Mockito.mock(Notifications.class);
         Mockito.when(three.fetch())
-            .thenReturn(new ArrayList<JsonObject>())
-            .thenReturn(new ArrayList<JsonObject>())
-            .thenReturn(new ArrayList<JsonObject>())
+            .thenReturn(new ArrayList<Notification>())
+            .thenReturn(new ArrayList<Notification>())
+            .thenReturn(new ArrayList<Notification>())
             .thenReturn(found);
         Notifications smart = new SmartNotifications(three);
         for(int i=0;i<6;i++) {
@@ -68,11 +68,11 @@ public final class SmartNotificationsTestCase {
                 smart.fetch(), Matchers.is(Matchers.empty())
             );
         }
-        List<JsonObject> fetched = smart.fetch();
+        List<Notification> fetched = smart.fetch();
         MatcherAssert.assertThat(fetched.size(), Matchers.is(1));
         MatcherAssert.assertThat(
-            fetched.get(0).getString("found"),
-            Matchers.equalTo("testnotification")
+            fetched.get(0).repo(),
+            Matchers.equalTo("amihaiemil/testnotification")
         );
         Mockito.verify(three, Mockito.times(4)).fetch();
     }
@@ -84,14 +84,17 @@ public final class SmartNotificationsTestCase {
      */
     @Test
     public void doesntSkipAfterTwoEmptyChecks() throws IOException {
-        List<JsonObject> found = new ArrayList<>();
+        List<Notification> found = new ArrayList<>();
         found.add(
-            Json.createObjectBuilder().add("found", "testnotification").build()
+            new Notification(
+                "1", "2017-03-18T09:22:31Z", "mention", "amihaiemil/testnotification",
+                "/url/here/1", "/comment/url/2"
+            )
         );
         Notifications three = Mockito.mock(Notifications.class);
         Mockito.when(three.fetch())
-            .thenReturn(new ArrayList<JsonObject>())
-            .thenReturn(new ArrayList<JsonObject>())
+            .thenReturn(new ArrayList<Notification>())
+            .thenReturn(new ArrayList<Notification>())
             .thenReturn(found);
         Notifications smart = new SmartNotifications(three);
         MatcherAssert.assertThat(
@@ -0,0 +1,281 @@
+/*
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of mention-notifications-ejb nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.github;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link Timers}
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 2.1.0
+ */
+public final class TimersTestCase {
+
+    /**
+     * Each Post is sent on its own Schedule.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void sendsOnOwnSchedules() throws Exception {
+        final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2);
+        try {
+            final Timers timers = new Timers(scheduler, new Schedule("1h"), 0L);
+            final Counted fast = new Counted();
+            final Counted slow = new Counted();
+            final Counted fallback = new Counted();
+            timers.update(
+                new Post[] {
+                    new ScheduledPost(fast, new Schedule("20ms")),
+                    new ScheduledPost(slow, new Schedule("400ms")),
+                    fallback,
+                }
+            );
+            Thread.sleep(1000L);
+            timers.stop();
+            assertThat(fast.count.get(), greaterThan(15));
+            assertThat(slow.count.get(), greaterThan(0));
+            assertThat(slow.count.get(), lessThan(4));
+            assertThat(fallback.count.get(), is(0));
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * A Post which is no longer given is no longer sent, while the others
+     * keep their timers.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void stopsRemovedPosts() throws Exception {
+        final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2);
+        try {
+            final Timers timers = new Timers(scheduler, new Schedule("20ms"), 0L);
+            final Counted kept = new Counted();
+            final Counted removed = new Counted();
+            timers.update(new Post[] {kept, removed});
+            Thread.sleep(200L);
+            timers.update(new Post[] {kept});
+            Thread.sleep(100L);
+            final int before = removed.count.get();
+            final int kepts = kept.count.get();
+            Thread.sleep(300L);
+            assertThat(removed.count.get(), is(before));
+            assertThat(kept.count.get(), greaterThan(kepts));
+            timers.stop();
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * The first sends are spread within the interval.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void spreadsFirstSends() throws Exception {
+        final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2);
+        try {
+            final Timers timers = new Timers(
+                scheduler, new Schedule("10s"), 0L, new Random(1)
+            );
+            final Post[] posts = new Post[20];
+            for(int idx = 0; idx < posts.length; idx++) {
+                posts[idx] = new Counted();
+            }
+            timers.update(posts);
+            Thread.sleep(2000L);
+            timers.stop();
+            int sent = 0;
+            for(final Post post : posts) {
+                sent = sent + ((Counted) post).count.get();
+            }
+            assertThat(sent, greaterThan(0));
+            assertThat(sent, lessThan(posts.length));
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * A Post whose Schedule changes keeps its timer: it is never sent
+     * on two threads at the same time.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void reschedulesWithoutOverlap() throws Exception {
+        final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(4);
+        try {
+            final Timers timers = new Timers(scheduler, new Schedule("1h"), 0L);
+            final Slow slow = new Slow();
+            for(int idx = 0; idx < 20; idx++) {
+                timers.update(
+                    new Post[] {
+                        new ScheduledPost(slow, new Schedule((idx % 3 + 1) + "ms")),
+                    }
+                );
+                Thread.sleep(25L);
+            }
+            timers.stop();
+            assertThat(slow.sends.get(), greaterThan(3));
+            assertThat(slow.overlaps.get(), is(0));
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * A PacedPost without its own Schedule is sent again when its Polling
+     * says, even sooner than the default Schedule; when the Polling doesn't
+     * say, the default Schedule applies.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void sendsPacedPostsWhenPollingSays() throws Exception {
+        final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2);
+        try {
+            final Timers timers = new Timers(scheduler, new Schedule("300ms"), 0L);
+            final Counted paced = new Counted();
+            final Counted unpaced = new Counted();
+            timers.update(
+                new Post[] {
+                    new PacedPost(paced, new Pace(20L)),
+                    new PacedPost(unpaced, new Pace(0L)),
+                }
+            );
+            Thread.sleep(1000L);
+            timers.stop();
+            assertThat(paced.count.get(), greaterThan(10));
+            assertThat(unpaced.count.get(), greaterThan(0));
+            assertThat(unpaced.count.get(), lessThan(5));
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Polling which always wants the next poll after the same delay.
+     */
+    private static final class Pace implements Polling {
+
+        /**
+         * Delay (millis); 0 means it doesn't say.
+         */
+        private final long delay;
+
+        /**
+         * Ctor.
+         * @param delay Delay (millis); 0 means it doesn't say.
+         */
+        Pace(final long delay) {
+            this.delay = delay;
+        }
+
+        @Override
+        public int empty() {
+            return 0;
+        }
+
+        @Override
+        public boolean skipping() {
+            return false;
+        }
+
+        @Override
+        public long next() {
+            long next = 0;
+            if(this.delay > 0) {
+                next = System.currentTimeMillis() + this.delay;
+            }
+            return next;
+        }
+    }
+
+    /**
+     * Post which takes a while and counts its overlapping sends.
+     */
+    private static final class Slow implements Post {
+
+        /**
+         * Sends.
+         */
+        private final AtomicInteger sends = new AtomicInteger();
+
+        /**
+         * Sends which started while another one was running.
+         */
+        private final AtomicInteger overlaps = new AtomicInteger();
+
+        /**
+         * Sends running now.
+         */
+        private final AtomicInteger running = new AtomicInteger();
+
+        @Override
+        public void send() throws IOException {
+            if(this.running.incrementAndGet() > 1) {
+                this.overlaps.incrementAndGet();
+            }
+            try {
+                Thread.sleep(40L);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            } finally {
+                this.running.decrementAndGet();
+                this.sends.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Post counting its sends; the failing ones too.
+     */
+    private static final class Counted implements Post {
+
+        /**
+         * Sends.
+         */
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public void send() throws IOException {
+            if(this.count.incrementAndGet() % 2 == 0) {
+                throw new IOException("Every second send fails.");
+            }
+        }
+    }
+}
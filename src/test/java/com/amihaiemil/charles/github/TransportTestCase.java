@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of mention-notifications-ejb nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.github;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+
+import org.junit.Test;
+
+import com.jcabi.http.mock.MkAnswer;
+import com.jcabi.http.mock.MkContainer;
+import com.jcabi.http.mock.MkGrizzlyContainer;
+
+/**
+ * Unit tests for {@link Transport}
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 2.1.0
+ */
+public final class TransportTestCase {
+
+    /**
+     * Transport.Timed gives up on a host which does not answer.
+     * @throws Exception If something goes wrong.
+     */
+    @Test (timeout = 10000, expected = IOException.class)
+    public void timesOutSilentHost() throws Exception {
+        try (final ServerSocket silent = new ServerSocket(0)) {
+            new Transport.Timed(new Transport.Jdk(), 1000, 200)
+                .request("http://localhost:" + silent.getLocalPort() + "/")
+                .fetch();
+        }
+    }
+
+    /**
+     * Transport.Timed also works with the pooled transport.
+     * @throws Exception If something goes wrong.
+     */
+    @Test (timeout = 10000, expected = IOException.class)
+    public void timesOutSilentHostWhenPooled() throws Exception {
+        try (
+            final ServerSocket silent = new ServerSocket(0);
+            final HttpPool pool = new HttpPool(2, 2)
+        ) {
+            new Transport.Timed(pool, 1000, 200)
+                .request("http://localhost:" + silent.getLocalPort() + "/")
+                .fetch();
+        }
+    }
+
+    /**
+     * Transport.Trusted sends the requests of the original transport.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void sendsTrustedRequests() throws Exception {
+        final MkContainer server = new MkGrizzlyContainer()
+            .next(new MkAnswer.Simple(HttpURLConnection.HTTP_OK))
+            .start();
+        try {
+            assertThat(
+                new Transport.Trusted(new Transport.Jdk())
+                    .request(server.home().toString())
+                    .fetch().status(),
+                is(HttpURLConnection.HTTP_OK)
+            );
+        } finally {
+            server.stop();
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of mention-notifications-ejb nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.github;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.Assume;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link VirtualThreads}
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 2.1.0
+ */
+public final class VirtualThreadsTestCase {
+
+    /**
+     * VirtualThreads falls back to a fixed pool of platform threads
+     * if the runtime has no virtual threads.
+     */
+    @Test
+    public void fallsBackToPlatformThreads() {
+        Assume.assumeFalse(VirtualThreads.available());
+        final ExecutorService executor = new VirtualThreads(3).executor();
+        try {
+            MatcherAssert.assertThat(
+                ((ThreadPoolExecutor) executor).getMaximumPoolSize(),
+                Matchers.is(3)
+            );
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * VirtualThreads can check many blocking Posts within one tick.
+     */
+    @Test
+    public void checksManyBlockingPosts() {
+        final AtomicInteger sent = new AtomicInteger();
+        final Post[] posts = new Post[50];
+        for(int idx = 0; idx < posts.length; idx++) {
+            posts[idx] = new Post() {
+                @Override
+                public void send() throws IOException {
+                    try {
+                        Thread.sleep(200);
+                        sent.incrementAndGet();
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            };
+        }
+        final ExecutorService executor = new VirtualThreads(posts.length).executor();
+        try {
+            new ParallelCheck(executor, 5000).check(posts);
+            MatcherAssert.assertThat(sent.get(), Matchers.is(posts.length));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,304 @@
+/*
+ * Copyright (c) 2016-2017, Mihai Emil Andronache
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  1)Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *  2)Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *  3)Neither the name of mention-notifications-ejb nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.amihaiemil.charles.github;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import javax.json.Json;
+
+import org.junit.Test;
+
+import com.jcabi.http.mock.MkAnswer;
+import com.jcabi.http.mock.MkContainer;
+import com.jcabi.http.mock.MkGrizzlyContainer;
+
+/**
+ * Unit tests for {@link Webhook}
+ * @author Mihai Andronache (amihaiemil@gmail.com)
+ * @version $Id$
+ * @since 2.1.0
+ */
+public final class WebhookTestCase {
+
+    /**
+     * Webhook verifies the signature of the payload (example from
+     * Github's documentation).
+     */
+    @Test
+    public void verifiesSignature() {
+        final Webhook webhook = new Webhook(
+            "It's a Secret to Everybody", "charlesmike", new Mention(),
+            new PushedNotifications(), new Collected(new PushedNotifications())
+        );
+        final byte[] body = "Hello, World!".getBytes(StandardCharsets.UTF_8);
+        assertThat(
+            webhook.verify(
+                body,
+                "sha256=757107ea0eb2509fc211221cce984b8a37570b6d7586c22c46f4379c8b043e17"
+            ),
+            is(true)
+        );
+        assertThat(
+            webhook.verify(
+                body,
+                "sha256=657107ea0eb2509fc211221cce984b8a37570b6d7586c22c46f4379c8b043e17"
+            ),
+            is(false)
+        );
+        assertThat(webhook.verify(body, null), is(false));
+        assertThat(webhook.verify(body, "sha1=abc"), is(false));
+    }
+
+    /**
+     * Webhook sends the comments which mention the agent.
+     * @throws IOException If something goes wrong.
+     */
+    @Test
+    public void sendsMentions() throws IOException {
+        final PushedNotifications pushed = new PushedNotifications();
+        final Collected post = new Collected(pushed);
+        final Webhook webhook = new Webhook(
+            "secret", "charlesmike", new Mention(), pushed, post
+        );
+        assertThat(
+            webhook.receive(
+                "issue_comment",
+                this.payload("issue", "issues/12", "Hey @charlesmike, run it!")
+            ),
+            is(1)
+        );
+        assertThat(
+            webhook.receive(
+                "pull_request_review_comment",
+                this.payload("pull_request", "pulls/7", "@CharlesMike look here")
+            ),
+            is(1)
+        );
+        assertThat(post.sent.size(), is(2));
+        assertThat(post.sent.get(0).repo(), is("amihaiemil/charles"));
+        assertThat(post.sent.get(0).issue(), is(12));
+        assertThat(post.sent.get(1).issue(), is(7));
+    }
+
+    /**
+     * Webhook hands the sending to its executor, so receiving an event
+     * doesn't wait for the endpoint.
+     */
+    @Test
+    public void sendsOnExecutor() {
+        final PushedNotifications pushed = new PushedNotifications();
+        final Collected post = new Collected(pushed);
+        final List<Runnable> tasks = new ArrayList<>();
+        final Webhook webhook = new Webhook(
+            "secret", "charlesmike", new Mention(), pushed, post,
+            new Executor() {
+                @Override
+                public void execute(final Runnable task) {
+                    tasks.add(task);
+                }
+            }
+        );
+        assertThat(
+            webhook.receive(
+                "issue_comment",
+                this.payload("issue", "issues/12", "Hey @charlesmike, run it!")
+            ),
+            is(1)
+        );
+        assertThat(post.sent.size(), is(0));
+        assertThat(tasks.size(), is(1));
+        tasks.get(0).run();
+        assertThat(post.sent.size(), is(1));
+    }
+
+    /**
+     * Webhook ignores comments which don't mention the agent
+     * and other events.
+     * @throws IOException If something goes wrong.
+     */
+    @Test
+    public void ignoresOtherComments() throws IOException {
+        final PushedNotifications pushed = new PushedNotifications();
+        final Collected post = new Collected(pushed);
+        final Webhook webhook = new Webhook(
+            "secret", "charlesmike", new Mention(), pushed, post
+        );
+        assertThat(
+            webhook.receive(
+                "issue_comment",
+                this.payload("issue", "issues/12", "Hey @charlesmikes!")
+            ),
+            is(0)
+        );
+        assertThat(
+            webhook.receive(
+                "issues", this.payload("issue", "issues/12", "@charlesmike")
+            ),
+            is(0)
+        );
+        assertThat(
+            webhook.receive(
+                "issue_comment", "{\"action\":\"created\"}".getBytes(StandardCharsets.UTF_8)
+            ),
+            is(0)
+        );
+        assertThat(
+            webhook.receive(
+                "issue_comment", "not json".getBytes(StandardCharsets.UTF_8)
+            ),
+            is(0)
+        );
+        assertThat(post.sent.isEmpty(), is(true));
+    }
+
+    /**
+     * A mention which is pushed by the webhook and then polled from Github
+     * (or the other way around) is delivered only once, since both Posts
+     * of the account share its deliveries.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void deliversPushedAndPolledMentionOnce() throws Exception {
+        final MkContainer receiver = new MkGrizzlyContainer()
+            .next(new MkAnswer.Simple(HttpURLConnection.HTTP_OK))
+            .next(new MkAnswer.Simple(HttpURLConnection.HTTP_OK))
+            .start();
+        try {
+            final String endpoint = receiver.home().toString();
+            final Deliveries deliveries = new RecentDeliveries(10);
+            final PushedNotifications pushed = new PushedNotifications();
+            final Webhook webhook = new Webhook(
+                "secret", "charlesmike", new Mention(), pushed,
+                new NtPost(pushed, deliveries, "token", endpoint)
+            );
+            final Notifications polled = mock(Notifications.class);
+            final String api = "https://api.github.com/repos/amihaiemil/charles/";
+            when(polled.fetch()).thenReturn(
+                Arrays.asList(
+                    new Notification(
+                        "555", "2017-03-18T09:22:33Z", "mention",
+                        "amihaiemil/charles", api + "issues/12",
+                        api + "issues/comments/287450123"
+                    )
+                )
+            );
+            final Post polling = new NtPost(polled, deliveries, "token", endpoint);
+            webhook.receive(
+                "issue_comment",
+                this.payload("issue", "issues/12", "Hey @charlesmike, run it!")
+            );
+            polling.send();
+            assertThat(receiver.queries(), is(1));
+            when(polled.fetch()).thenReturn(
+                Arrays.asList(
+                    new Notification(
+                        "556", "2017-03-18T09:25:00Z", "mention",
+                        "amihaiemil/charles", api + "issues/13",
+                        api + "issues/comments/287450777"
+                    )
+                )
+            );
+            polling.send();
+            assertThat(receiver.queries(), is(2));
+            webhook.receive(
+                "issue_comment",
+                new String(
+                    this.payload("issue", "issues/13", "@charlesmike"),
+                    StandardCharsets.UTF_8
+                ).replace("287450123", "287450777").getBytes(StandardCharsets.UTF_8)
+            );
+            assertThat(receiver.queries(), is(2));
+        } finally {
+            receiver.stop();
+        }
+    }
+
+    /**
+     * Payload of a created comment.
+     * @param type Type of the commented item (issue or pull_request).
+     * @param path Path of the item (e.g. issues/12).
+     * @param text Text of the comment.
+     * @return Json bytes.
+     */
+    private byte[] payload(final String type, final String path, final String text) {
+        final String api = "https://api.github.com/repos/amihaiemil/charles/";
+        return Json.createObjectBuilder()
+            .add("action", "created")
+            .add(type, Json.createObjectBuilder().add("url", api + path))
+            .add(
+                "comment",
+                Json.createObjectBuilder()
+                    .add("id", 287450123)
+                    .add("url", api + "issues/comments/287450123")
+                    .add("body", text)
+                    .add("updated_at", "2017-03-18T09:22:31Z")
+            )
+            .add(
+                "repository",
+                Json.createObjectBuilder().add("full_name", "amihaiemil/charles")
+            )
+            .build().toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Post which collects the pushed notifications.
+     */
+    private static final class Collected implements Post {
+
+        /**
+         * Sent notifications.
+         */
+        private final List<Notification> sent = new ArrayList<>();
+
+        /**
+         * Pushed notifications.
+         */
+        private final PushedNotifications pushed;
+
+        /**
+         * Ctor.
+         * @param pushed Pushed notifications.
+         */
+        Collected(final PushedNotifications pushed) {
+            this.pushed = pushed;
+        }
+
+        @Override
+        public void send() {
+            this.sent.addAll(this.pushed.fetch());
+        }
+    }
+}